@@ -1,165 +1,155 @@
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.collections.*;
+import javafx.concurrent.Task;
 import javafx.geometry.*;
 import javafx.scene.*;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.*;
 import javafx.scene.layout.*;
 import javafx.scene.text.Font;
 import javafx.stage.Stage;
 import javafx.stage.Modality;
 import javafx.scene.input.KeyCode;
-import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.beans.property.*;
 import java.awt.Desktop;
 
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import restaurant.coupon.CouponIndex;
+import restaurant.kitchen.Kitchen;
+import restaurant.menu.Catalog;
+import restaurant.menu.Drink;
+import restaurant.menu.Food;
+import restaurant.menu.MenuCatalog;
+import restaurant.menu.MenuItem;
+import restaurant.order.Bill;
+import restaurant.order.CartScript;
+import restaurant.order.Pricing;
+import restaurant.coupon.CouponStore;
+import restaurant.payment.Checkout;
+import restaurant.payment.Wallet;
+import restaurant.payment.WalletLedger;
+import restaurant.receipt.ReceiptArchive;
+import restaurant.receipt.ReceiptJournal;
+import restaurant.util.Metrics;
+import restaurant.util.Startup;
 
 public class KDelightsApp extends Application {
 
     // ---------- Helper & Data Models ----------
-    static String sha256(String s) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] hash = md.digest(s.getBytes(StandardCharsets.UTF_8));
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hash) sb.append(String.format("%02x", b));
-            return sb.toString();
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-
-    private boolean isDrink(String name){
-    if(name == null) return false;
-    name = name.trim().toLowerCase();
-    return List.of("soju","makgeolli","sikhye","omija tea").contains(name);
-}
-
-
-    static class MenuItemModel {
-        String name;
-        int price;
-        String category; 
-        MenuItemModel(String n, int p, String c){ name=n; price=p; category=c; }
-        public String toString(){ return name + " - Rp " + String.format("%,d", price); }
-    }
-
+    // qty/total are properties so a quantity change repaints only its own row
     static class CartLine {
-        MenuItemModel item;
-        Integer qty;
-        CartLine(MenuItemModel it, Integer q){ item = it; qty = q; }
-        public String getName(){ return item.name; }
-        public Integer getQty(){ return qty; }
-        public Integer getPrice(){ return item.price; }
-        public Integer getTotal(){ return item.price * qty; }
-    }
-
-    static class Wallet {
-        String name;
-        long balance;
-        String passwordHash;
-        Wallet(String name, long balance, String plainPwd){
-            this.name = name; this.balance = balance; this.passwordHash = sha256(plainPwd);
-        }
-        boolean verify(String pwd){ return sha256(pwd).equalsIgnoreCase(passwordHash); }
-        boolean canPay(long amt){ return balance >= amt; }
-        void deduct(long amt){ balance -= amt; }
+        final MenuItem item;
+        final IntegerProperty qty = new SimpleIntegerProperty();
+        final LongProperty total = new SimpleLongProperty();
+        CartLine(MenuItem it, int q){ item = it; setQty(q); }
+        void setQty(int q){ qty.set(q); total.set((long) item.getHarga() * q); }
+        public String getName(){ return item.getNama(); }
+        public int getQty(){ return qty.get(); }
+        public int getPrice(){ return item.getHarga(); }
+        public long getTotal(){ return total.get(); }
     }
 
     // ---------- Persistence ----------
     final File couponFile = new File("coupons.txt");
-    Map<String, Long> coupons = new HashMap<>();
-
-    Map<String, Long> loadCoupons(File f){
-        Map<String, Long> map = new HashMap<>();
-        if (!f.exists()) return map;
-        try(BufferedReader r = new BufferedReader(new FileReader(f))){
-            String line;
-            while((line = r.readLine()) != null){
-                line = line.trim();
-                if(line.isEmpty()) continue;
-                String[] parts = line.split(",",2);
-                if(parts.length==2) map.put(parts[0], Long.parseLong(parts[1]));
-            }
-        } catch(Exception e){
-            System.out.println("Warning: failed to read coupons: "+e.getMessage());
-        }
-        return map;
-    }
+    CouponStore coupons;
 
-    void saveCoupon(File f, String hash, long value){
-        try(FileWriter fw = new FileWriter(f,true)){
-            fw.write(hash + "," + value + System.lineSeparator());
-            coupons.put(hash, value);
-        } catch(Exception e){
-            System.out.println("Warning: save coupon failed: "+e.getMessage());
-        }
-    }
-
-    void saveStrukToFile(String text){
-        try(FileWriter fw = new FileWriter("struk.txt", false)){
-            fw.write(text);
-        } catch(Exception e){
-            System.out.println("Warning: save struk failed: "+e.getMessage());
-        }
-    }
+    ReceiptJournal receipts;
+    ReceiptArchive archive;
+    Kitchen kitchen;                       // null when dapur/ could not be opened
+    Checkout checkout;                     // set once the stores are open
 
     // ---------- App Data ----------
-    ObservableList<MenuItemModel> foodList = FXCollections.observableArrayList();
-    ObservableList<MenuItemModel> drinkList = FXCollections.observableArrayList();
+    ObservableList<MenuItem> foodList = FXCollections.observableArrayList();
+    ObservableList<MenuItem> drinkList = FXCollections.observableArrayList();
     ObservableList<CartLine> cart = FXCollections.observableArrayList();
 
-    Wallet[] wallets;
+    WalletLedger ledger;
+    Wallet[] wallets = new Wallet[0];
+
+    // ---------- Startup ----------
+    final Startup startup = new Startup();
+    CompletableFuture<CouponStore> couponsReady;
+    CompletableFuture<WalletLedger> ledgerReady;
+    CompletableFuture<ReceiptJournal> receiptsReady;
+    CompletableFuture<ReceiptArchive> archiveReady;
+    CompletableFuture<Kitchen> kitchenReady;
 
     // ---------- UI Controls ----------
-    ListView<MenuItemModel> lvFoods, lvDrinks;
+    ListView<MenuItem> lvFoods, lvDrinks;
     TableView<CartLine> tvCart;
     Label lblSubtotal, lblDiscount, lblTax, lblService, lblTotal;
-    TextField tfQty, tfCommand;
+    TextField tfQty, tfCommand, tfSearch;
+    MenuItem topHit;                       // best match for the current search
+    static final int SEARCH_LIMIT = 500;
 
     // ---------- Business constants ----------
-    final double TAX_RATE = 0.10;
-    final long SERVICE_FEE = 20_000L;
-
-    // ---------- Utility ----------
-    long computeSubtotal(){
-        long s = 0;
-        for(CartLine c : cart) s += c.getTotal();
-        return s;
+    final long SERVICE_FEE = Pricing.SERVICE_FEE;
+
+    // ---------- Cart model ----------
+    // Lines are keyed by lower-case menu name and the subtotal is adjusted on
+    // every change, so neither adding nor pricing walks the cart.
+    final Map<String, CartLine> cartIndex = new HashMap<>();
+    long cartSubtotal = 0;
+
+    static String cartKey(MenuItem m){ return m.getNama().toLowerCase(Locale.ROOT); }
+
+    void cartAdd(MenuItem m, int qty){
+        CartLine line = cartIndex.get(cartKey(m));
+        if(line != null){
+            line.setQty(Math.addExact(line.getQty(), qty));
+        } else {
+            line = new CartLine(m, qty);
+            cartIndex.put(cartKey(m), line);
+            cart.add(line);
+        }
+        cartSubtotal += (long) line.getPrice() * qty;
+    }
+
+    void cartRemove(int idx){
+        CartLine line = cart.remove(idx);
+        cartIndex.remove(cartKey(line.item));
+        cartSubtotal -= line.getTotal();
+    }
+
+    void cartClear(){
+        cart.clear(); cartIndex.clear(); cartSubtotal = 0;
     }
 
+    long computeSubtotal(){ return cartSubtotal; }
+
     // ---------- App start ----------
     @Override
     public void start(Stage primaryStage) {
-        // Load persisted coupons
-        coupons = loadCoupons(couponFile);
-
-        // Init data (4 foods, 4 drinks)
-        foodList.addAll(
-            new MenuItemModel("Bibimbap", 30000, "Makanan"),
-            new MenuItemModel("Kimchi", 12000, "Makanan"),
-            new MenuItemModel("Tteokbokki", 25000, "Makanan"),
-            new MenuItemModel("Bulgogi", 35000, "Makanan")
-        );
-        drinkList.addAll(
-            new MenuItemModel("Soju", 35000, "Minuman"),
-            new MenuItemModel("Makgeolli", 30000, "Minuman"),
-            new MenuItemModel("Sikhye", 15000, "Minuman"),
-            new MenuItemModel("Omija Tea", 20000, "Minuman")
-        );
+        Metrics.init();
+        // Coupons (imports coupons.txt on first run), wallets, the struk journal, the
+        // struk archive and the kitchen stations load off the FX thread; payment
+        // controls unlock when all are ready
+        couponsReady = startup.async("kupon", () -> CouponStore.openOrImport(new File("kupon").toPath(), couponFile));
+        ledgerReady = startup.async("dompet", () -> WalletLedger.open(new File("dompet").toPath(), Wallet.defaults()));
+        receiptsReady = startup.async("struk", () -> ReceiptJournal.open(new File("struk.txt").toPath()));
+        archiveReady = startup.async("arsip", () -> ReceiptArchive.open(new File("arsip").toPath()));
+        kitchenReady = startup.async("dapur", () -> {
+            // payments still go through without the stations
+            try { return Kitchen.open(new File("dapur").toPath()); }
+            catch(IOException e){ Metrics.failure("io.failures.dapur", "Gagal membuka dapur: " + e.getMessage()); return null; }
+        });
 
-        wallets = new Wallet[]{
-            new Wallet("myaccount", 5_000_000L, "myaccount"),
-            new Wallet("mybank", 12_000_000L, "mybank"),
-            new Wallet("mysecret", 100_000_000L, "mysecret")
-        };
+        // Menu from menu.csv; the lists follow hot reloads of the file
+        try { startup.run("menu", () -> { MenuCatalog.init(new File("menu.csv").toPath(), 2000); return null; }); }
+        catch(Exception e){ Metrics.failure("io.failures.menu", "Gagal membaca menu: " + e.getMessage()); }
+        // search box filters both lists as the user types; Enter adds the top hit
+        tfSearch = new TextField();
+        tfSearch.setPromptText("🔎 Cari menu (nama / kategori)...");
+        tfSearch.textProperty().addListener((o, was, now) -> showCatalog(MenuCatalog.current()));
+        tfSearch.setOnAction(e -> { if(topHit != null){ cartAdd(topHit, 1); refreshSummary(); tfSearch.clear(); } });
+        showCatalog(MenuCatalog.current());
+        MenuCatalog.addListener(c -> Platform.runLater(() -> showCatalog(c)));
+        startup.async("indeks-cari", () -> MenuCatalog.current().search());
 
         // Top: ASCII welcome (multiline)
         Label ascii = new Label(
@@ -186,11 +176,11 @@ public class KDelightsApp extends Application {
         TableColumn<CartLine, String> colName = new TableColumn<>("Menu");
         colName.setCellValueFactory(c -> new ReadOnlyStringWrapper(c.getValue().getName()));
         colName.setPrefWidth(180);
-        TableColumn<CartLine, Integer> colQty = new TableColumn<>("Qty");
-        colQty.setCellValueFactory(new PropertyValueFactory<>("qty"));
+        TableColumn<CartLine, Number> colQty = new TableColumn<>("Qty");
+        colQty.setCellValueFactory(c -> c.getValue().qty);
         colQty.setPrefWidth(60);
         TableColumn<CartLine, Integer> colPrice = new TableColumn<>("Harga");
-        colPrice.setCellValueFactory(new PropertyValueFactory<>("price"));
+        colPrice.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().getPrice()));
         colPrice.setCellFactory(tc -> new TableCell<CartLine,Integer>(){
             @Override protected void updateItem(Integer v, boolean empty){
                 super.updateItem(v, empty);
@@ -198,10 +188,10 @@ public class KDelightsApp extends Application {
             }
         });
         colPrice.setPrefWidth(110);
-        TableColumn<CartLine, Integer> colTotal = new TableColumn<>("Total");
-        colTotal.setCellValueFactory(new PropertyValueFactory<>("total"));
-        colTotal.setCellFactory(tc -> new TableCell<CartLine,Integer>(){
-            @Override protected void updateItem(Integer v, boolean empty){
+        TableColumn<CartLine, Number> colTotal = new TableColumn<>("Total");
+        colTotal.setCellValueFactory(c -> c.getValue().total);
+        colTotal.setCellFactory(tc -> new TableCell<CartLine,Number>(){
+            @Override protected void updateItem(Number v, boolean empty){
                 super.updateItem(v, empty);
                 setText(empty ? null : String.format("Rp %,d", v));
             }
@@ -233,19 +223,28 @@ public class KDelightsApp extends Application {
 
         // Payment controls
         ComboBox<String> cbWallets = new ComboBox<>();
-        for(Wallet w : wallets) cbWallets.getItems().add(w.name + " (Saldo: Rp " + String.format("%,d", w.balance) + ")");
-        cbWallets.getSelectionModel().selectFirst();
+        // the list shows the first wallets only; any other is typed in by name
+        cbWallets.setEditable(true);
+        cbWallets.setPromptText("Pilih atau ketik nama wallet");
+        // other terminals on this machine may have paid from the same wallets
+        cbWallets.setOnShowing(e -> { if(ledger != null && ledger.refresh()) refreshWalletChoices(cbWallets); });
         PasswordField pfPassword = new PasswordField();
         pfPassword.setPromptText("Masukkan kata kunci wallet");
         Button btnPay = new Button("Bayar Sekarang");
         Button btnUseCoupon = new Button("Gunakan Kupon");
-
-        VBox vbPay = new VBox(8, new Label("Metode Pembayaran"), cbWallets, pfPassword, btnPay, btnUseCoupon);
+        btnPay.setDisable(true); btnUseCoupon.setDisable(true);
+        btnRestore = new Button("Pulihkan pesanan gagal");
+        btnRestore.setDisable(true);
+        btnRestore.setOnAction(e -> restoreHeldOrder());
+
+        lblPayStatus = new Label("⏳ Memuat kupon & dompet...");
+        lblPayStatus.setWrapText(true);
+        VBox vbPay = new VBox(8, new Label("Metode Pembayaran"), cbWallets, pfPassword, btnPay, btnUseCoupon, btnRestore, lblPayStatus);
         vbPay.setPadding(new Insets(10));
 
         // Command bar (free text)
         tfCommand = new TextField();
-        tfCommand.setPromptText("Perintah bebas (contoh: add kimchi 2  |  pay  |  remove 1  |  clear )");
+        tfCommand.setPromptText("Perintah (contoh: add bibimbap 2; add \"omija tea\" 3; remove 1; clear; pay <wallet>)");
         tfCommand.setOnKeyPressed(ev -> {
             if(ev.getCode() == KeyCode.ENTER) {
                 handleCommand(tfCommand.getText().trim(), cbWallets, pfPassword);
@@ -259,7 +258,7 @@ public class KDelightsApp extends Application {
         hbCmd.setPadding(new Insets(8));
 
         // Layout assemble
-        VBox left = new VBox(10, vbFoods, vbDrinks);
+        VBox left = new VBox(10, tfSearch, vbFoods, vbDrinks);
         left.setPadding(new Insets(12));
 
         VBox center = new VBox(10, tvCart, hbAdd, vbSummary);
@@ -284,12 +283,20 @@ public class KDelightsApp extends Application {
             td.setContentText("Kupon:");
             Optional<String> res = td.showAndWait();
             res.ifPresent(h -> {
-                if(coupons.containsKey(h.trim())){
-                    long v = coupons.get(h.trim());
-                    // apply coupon to cart by storing it temporarily as discount in UI
-                    applyCouponValue(v);
-                    showAlert(Alert.AlertType.INFORMATION, "Kupon diterima", "Kupon valid. Nilai: Rp " + String.format("%,d", v));
-                } else showAlert(Alert.AlertType.ERROR, "Kupon tidak valid", "Hash kupon tidak ditemukan.");
+                // the lookup may catch up with other terminals' coupon logs: off the FX thread
+                Task<Long> check = new Task<>(){
+                    @Override protected Long call(){ return coupons.get(h.trim()); }
+                };
+                check.setOnSucceeded(ev -> {
+                    long v = check.getValue();
+                    if(v != CouponIndex.NOT_FOUND){
+                        // apply coupon to cart by storing it temporarily as discount in UI
+                        applyCouponValue(v);
+                        showAlert(Alert.AlertType.INFORMATION, "Kupon diterima", "Kupon valid. Nilai: Rp " + String.format("%,d", v));
+                    } else showAlert(Alert.AlertType.ERROR, "Kupon tidak valid", "Hash kupon tidak ditemukan.");
+                });
+                check.setOnFailed(ev -> showAlert(Alert.AlertType.ERROR, "Kupon", "Gagal memeriksa kupon: " + check.getException().getMessage()));
+                paymentPool.submit(check);
             });
         });
 
@@ -298,75 +305,91 @@ public class KDelightsApp extends Application {
         primaryStage.setScene(scene);
         primaryStage.setTitle("K-Delights (Desktop)");
         primaryStage.show();
+        startup.mark("jendela");
 
         // initial refresh
         refreshSummary();
+
+        // readiness gate: unlock payments once the stores are open
+        CompletableFuture.allOf(couponsReady, ledgerReady, receiptsReady, archiveReady, kitchenReady).whenComplete((v, ex) -> Platform.runLater(() -> {
+            if(ex != null){
+                lblPayStatus.setText("❌ Data gagal dimuat");
+                showAlert(Alert.AlertType.ERROR, "Gagal memuat data", ex.getCause() != null ? ex.getCause().getMessage() : ex.getMessage());
+                return;
+            }
+            coupons = couponsReady.join(); ledger = ledgerReady.join(); receipts = receiptsReady.join(); archive = archiveReady.join();
+            kitchen = kitchenReady.join();
+            checkout = new Checkout(ledger, coupons, receipts, archive, kitchen);
+            wallets = ledger.wallets();
+            refreshWalletChoices(cbWallets);
+            btnPay.setDisable(false); btnUseCoupon.setDisable(false);
+            lblPayStatus.setText("");
+            startup.mark("siap");
+        }));
+        startup.reportWhenDone();
     }
 
     // ---------- UI Actions ----------
-    void addSelectedItemToCart(ListView<MenuItemModel> lv){
-        MenuItemModel sel = lv.getSelectionModel().getSelectedItem();
+    // whole menu, or ranked search hits while the search box has text
+    void showCatalog(Catalog c){
+        String q = tfSearch.getText();
+        if(q.isBlank()){
+            foodList.setAll(c.items(Food.KATEGORI));
+            drinkList.setAll(c.items(Drink.KATEGORI));
+            topHit = null;
+            return;
+        }
+        List<MenuItem> hits = c.search().find(q, SEARCH_LIMIT);
+        List<MenuItem> foods = new ArrayList<>(), drinks = new ArrayList<>();
+        for(MenuItem m : hits){
+            if(m.getKategori().equals(Food.KATEGORI)) foods.add(m);
+            else if(m.getKategori().equals(Drink.KATEGORI)) drinks.add(m);
+        }
+        foodList.setAll(foods);
+        drinkList.setAll(drinks);
+        topHit = hits.isEmpty() ? null : hits.get(0);
+    }
+
+    void addSelectedItemToCart(ListView<MenuItem> lv){
+        MenuItem sel = lv.getSelectionModel().getSelectedItem();
         if(sel == null){
             showAlert(Alert.AlertType.WARNING, "Tidak ada item dipilih", "Silakan pilih menu terlebih dahulu.");
             return;
         }
         int q;
         try { q = Math.max(1, Integer.parseInt(tfQty.getText().trim())); } catch(Exception e){ q = 1; }
-        // if same item exists in cart, increase qty
-        for(CartLine line : cart){
-            if(line.item.name.equalsIgnoreCase(sel.name)){
-                line.qty = line.qty + q;
-                tvCart.refresh();
-                refreshSummary();
-                return;
-            }
-        }
-        cart.add(new CartLine(sel, q));
+        // same item already in cart: its qty goes up instead of a new line
+        cartAdd(sel, q);
         refreshSummary();
     }
 
     void refreshSummary(){
-        long subtotal = computeSubtotal();
-        long discount = 0;
-        // discount (10%) if subtotal > 100k
-        if(subtotal > 100_000) discount = Math.round(subtotal * 0.10);
-        double after = subtotal - discount;
-        double tax = after * TAX_RATE;
-        double total = after + tax + SERVICE_FEE;
-        lblSubtotal.setText("Subtotal: Rp " + String.format("%,d", subtotal));
-        lblDiscount.setText("Diskon: Rp " + String.format("%,d", discount));
-        lblTax.setText("Pajak (10%): Rp " + String.format("%,d", Math.round(tax)));
-        lblService.setText("Biaya layanan: Rp " + String.format("%,d", SERVICE_FEE));
-        lblTotal.setText("TOTAL: Rp " + String.format("%,d", Math.round(total)));
+        Pricing.Quote q = Pricing.quote(computeSubtotal());
+        lblSubtotal.setText("Subtotal: Rp " + String.format("%,d", q.subtotal));
+        lblDiscount.setText("Diskon: Rp " + String.format("%,d", q.discount));
+        lblTax.setText("Pajak (10%): Rp " + String.format("%,d", q.tax));
+        lblService.setText("Biaya layanan: Rp " + String.format("%,d", q.serviceFee));
+        lblTotal.setText("TOTAL: Rp " + String.format("%,d", q.total));
     }
 
     void applyCouponValue(long value){
-        // naive: subtract coupon value from final display by writing temporary label change
-        // For simplicity we'll subtract from subtotal when finalizing payment (track as special flag is better)
-        // Here we show a note and adjust labels by reducing subtotal temporarily.
-        // (In production you'd keep a state; keep this simple)
-        long subtotal = computeSubtotal();
-        long discount = 0;
-        if(subtotal > 100_000) discount = Math.round(subtotal * 0.10);
-        double after = subtotal - discount - value;
-        if(after < 0) after = 0;
-        double tax = after * TAX_RATE;
-        double total = after + tax + SERVICE_FEE;
-        lblDiscount.setText("Diskon: Rp " + String.format("%,d", discount) + " (dengan kupon)");
-        lblTotal.setText("TOTAL: Rp " + String.format("%,d", Math.round(total)));
+        // preview only: same rule as payment, coupon comes off the final total
+        Pricing.Quote q = Pricing.quote(computeSubtotal(), value);
+        lblDiscount.setText("Diskon: Rp " + String.format("%,d", q.discount) + " (dengan kupon)");
+        lblTotal.setText("TOTAL: Rp " + String.format("%,d", q.total));
     }
 
     void doPayment(ComboBox<String> cbWallets, PasswordField pfPassword){
+        if(ledger == null){
+            showAlert(Alert.AlertType.INFORMATION, "Belum siap", "Data kupon & dompet masih dimuat. Coba lagi sebentar.");
+            return;
+        }
         if(cart.isEmpty()){
             showAlert(Alert.AlertType.WARNING, "Keranjang kosong", "Tambahkan item terlebih dahulu.");
             return;
         }
-        long subtotal = computeSubtotal();
-        long discount = 0;
-        if(subtotal > 100_000) discount = Math.round(subtotal * 0.10);
-        double after = subtotal - discount;
-        double tax = after * TAX_RATE;
-        long totalPay = Math.round(after + tax + SERVICE_FEE);
+        Pricing.Quote q = Pricing.quote(computeSubtotal());
+        long totalPay = q.total;
 
         // show simple confirmation with possibility for coupon input
         Dialog<ButtonType> dialog = new Dialog<>();
@@ -375,10 +398,10 @@ public class KDelightsApp extends Application {
         VBox vb = new VBox(8);
         vb.setPadding(new Insets(10));
         vb.getChildren().add(new Label("Ringkasan pembayaran:"));
-        vb.getChildren().add(new Label("Subtotal: Rp " + String.format("%,d", subtotal)));
-        if(discount>0) vb.getChildren().add(new Label("Diskon 10%: -Rp " + String.format("%,d", discount)));
-        vb.getChildren().add(new Label("Pajak 10%: Rp " + String.format("%,d", Math.round(tax))));
-        vb.getChildren().add(new Label("Biaya layanan: Rp " + String.format("%,d", SERVICE_FEE)));
+        vb.getChildren().add(new Label("Subtotal: Rp " + String.format("%,d", q.subtotal)));
+        if(q.discount>0) vb.getChildren().add(new Label("Diskon 10%: -Rp " + String.format("%,d", q.discount)));
+        vb.getChildren().add(new Label("Pajak 10%: Rp " + String.format("%,d", q.tax)));
+        vb.getChildren().add(new Label("Biaya layanan: Rp " + String.format("%,d", q.serviceFee)));
         vb.getChildren().add(new Label("TOTAL BAYAR: Rp " + String.format("%,d", totalPay)));
         vb.getChildren().add(new Label("Masukkan kupon jika ada (kosongkan jika tidak):"));
         TextField tfCoupon = new TextField();
@@ -390,23 +413,19 @@ public class KDelightsApp extends Application {
 
         if(!res.isPresent() || res.get() != ButtonType.OK) return;
 
+        // checked and spent by Checkout on the payment thread
         String inputCoupon = tfCoupon.getText().trim();
-        long couponValue = 0;
-        String usedCouponHash = null;
-        if(!inputCoupon.isEmpty()){
-            if(coupons.containsKey(inputCoupon)){
-                couponValue = coupons.get(inputCoupon);
-                usedCouponHash = inputCoupon;
-                totalPay -= couponValue;
-                if(totalPay < 0) totalPay = 0;
-            } else {
-                showAlert(Alert.AlertType.ERROR, "Kupon tidak valid", "Kupon tidak ditemukan. Lanjut tanpa kupon.");
-            }
-        }
+        String coupon = inputCoupon.isEmpty() ? null : inputCoupon;
 
         // choose wallet selection index
         int idx = cbWallets.getSelectionModel().getSelectedIndex();
-        Wallet chosen = wallets[idx];
+        String typed = cbWallets.getEditor().getText();   // the value only commits on Enter or focus loss
+        Wallet chosen = idx >= 0 && idx < wallets.length ? wallets[idx] : typed == null || typed.isBlank() ? null : findWallet(typed);
+        if(chosen == null){
+            if(typed == null || typed.isBlank()) showAlert(Alert.AlertType.WARNING, "Tidak ada wallet dipilih", "Silakan pilih wallet terlebih dahulu.");
+            else showAlert(Alert.AlertType.WARNING, "Wallet tidak ditemukan", "Wallet '" + typed.trim() + "' tidak ada di dompet.");
+            return;
+        }
 
         // verify password dialog
         TextInputDialog pwdDialog = new TextInputDialog();
@@ -414,141 +433,256 @@ public class KDelightsApp extends Application {
         pwdDialog.setHeaderText("Masukkan kata kunci untuk " + chosen.name);
         Optional<String> pwdRes = pwdDialog.showAndWait();
         if(!pwdRes.isPresent()) return;
-        String pwd = pwdRes.get().trim();
-        if(!chosen.verify(pwd)){
-            showAlert(Alert.AlertType.ERROR, "Verifikasi gagal", "Kata kunci salah. Pembayaran dibatalkan.");
-            return;
-        }
 
-        if(!chosen.canPay(totalPay)){
-            showAlert(Alert.AlertType.ERROR, "Saldo tidak cukup", "Saldo pada wallet terpilih tidak mencukupi.");
-            return;
+        // hand the order to the payment pipeline and free the cart for the next customer
+        int n = cart.size();
+        MenuItem[] items = new MenuItem[n];
+        int[] qtys = new int[n];
+        for(int i=0;i<n;i++){ items[i] = cart.get(i).item; qtys[i] = cart.get(i).getQty(); }
+        cartClear();
+        refreshSummary();
+
+        PaymentTask task = new PaymentTask(paymentSeq.incrementAndGet(), new Bill(items, qtys, n), chosen, pwdRes.get().trim(), coupon);
+        task.messageProperty().addListener((o, was, msg) -> lblPayStatus.setText(msg));
+        task.setOnSucceeded(e -> {
+            refreshWalletChoices(cbWallets);
+            showStruk(task.getValue());
+        });
+        task.setOnFailed(e -> {
+            Throwable t = task.getException();
+            String title = t instanceof PaymentFailed ? ((PaymentFailed) t).title : "Pembayaran gagal";
+            lblPayStatus.setText("❌ Pembayaran #" + task.seq + ": " + title);
+            // give the order back so the cashier can retry it, but never into
+            // the next customer's cart: then it waits behind the restore button
+            if(cart.isEmpty()){
+                for(int i=0;i<items.length;i++) cartAdd(items[i], qtys[i]);
+                refreshSummary();
+                showAlert(Alert.AlertType.ERROR, title, t.getMessage() + "\nPesanan dikembalikan ke keranjang.");
+            } else {
+                heldOrders.put(task.seq, new HeldOrder(items, qtys));
+                refreshRestoreButton();
+                showAlert(Alert.AlertType.ERROR, title, t.getMessage() + "\nKeranjang sudah berisi pesanan lain, jadi pesanan #" + task.seq
+                        + " disimpan terpisah. Pulihkan lewat tombol \"" + btnRestore.getText() + "\" setelah keranjang kosong.");
+            }
+        });
+        paymentPool.submit(task);
+    }
+
+    // ---------- Payment pipeline ----------
+    // Verify, debit, coupon and struk run on a virtual thread; progress and the
+    // outcome come back to the FX thread through the Task callbacks.
+    final ExecutorService paymentPool = Executors.newVirtualThreadPerTaskExecutor();
+    final AtomicInteger paymentSeq = new AtomicInteger();
+    Label lblPayStatus;
+
+    static class PaymentFailed extends Exception {
+        final String title;
+        PaymentFailed(String title, String message){ super(message); this.title = title; }
+    }
+
+    class PaymentTask extends Task<String> {
+        final int seq;
+        final Bill bill; final Wallet chosen; final String pwd; final String coupon;
+
+        PaymentTask(int seq, Bill bill, Wallet chosen, String pwd, String coupon){
+            this.seq = seq; this.bill = bill; this.chosen = chosen; this.pwd = pwd; this.coupon = coupon;
         }
 
-        // proceed payment
-        chosen.deduct(totalPay);
-        String transactionHash = sha256(chosen.name + "|" + totalPay + "|" + System.currentTimeMillis());
-
-        // generate 1 coupon for next visit (keep hidden? user requested to display full — we'll display and save)
-        String coupon = generateSingleCoupon();
-        saveCoupon(couponFile, coupon, 50_000L); // default value 50k
-
-        // assemble struk text
-        StringBuilder sb = new StringBuilder();
-        sb.append("====== STRUK K-DELIGHTS ======\n");
-        DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        sb.append("Waktu: ").append(dtf.format(LocalDateTime.now())).append("\n\n");
-        int i=1;
-        for(CartLine cl : cart){
-            sb.append(String.format("%d) %s x%d -> Rp %,d\n", i++, cl.getName(), cl.getQty(), cl.getTotal()));
-            if(isDrink(cl.getName()) && subtotal > 50_000){ // show promo note for first drink found
-                sb.append("   (Promo: +1 " + cl.getName() + " GRATIS!)\n");
+        void step(String what){ updateMessage("⏳ Pembayaran #" + seq + ": " + what); }
+
+        @Override protected String call() throws Exception {
+            step("verifikasi " + chosen.name);
+            // progress follows Checkout's stages
+            Checkout.StageTimer progress = (stage, nanos) -> {
+                switch(stage){
+                    case VERIFY: step("menahan saldo"); break;
+                    case HOLD: step(coupon != null ? "memakai kupon" : "mencatat pembayaran"); break;
+                    case COUPON: step("mencatat pembayaran"); break;
+                    case JOURNAL: step("menyimpan struk"); break;
+                    default: break;
+                }
+            };
+            Checkout.Result r;
+            try { r = checkout.pay(bill, chosen.name, pwd, coupon, progress, Checkout.Layout.DESKTOP); }
+            catch(IOException e){ throw new PaymentFailed("Pembayaran gagal", "Gagal mencatat pembayaran: " + e.getMessage()); }
+            switch(r.status){
+                case VERIFIKASI_GAGAL: throw new PaymentFailed("Verifikasi gagal", "Kata kunci salah. Pembayaran dibatalkan.");
+                case SALDO_KURANG: throw new PaymentFailed("Saldo tidak cukup", "Saldo pada wallet terpilih tidak mencukupi.");
+                case KUPON_TIDAK_VALID: throw new PaymentFailed("Kupon tidak valid", "Kupon tidak ditemukan atau sudah digunakan. Pembayaran dibatalkan.");
+                case WALLET_TIDAK_ADA: throw new PaymentFailed("Wallet tidak ada", "Wallet " + chosen.name + " tidak ditemukan.");
+                default: break;
             }
+            String busy = r.ticketsRefused > 0 ? " ⚠️ dapur penuh, sampaikan pesanan langsung"
+                    : kitchen != null && kitchen.overloaded() ? " ⚠️ antrean dapur penuh" : "";
+            updateMessage("✅ Pembayaran #" + seq + " selesai (" + chosen.name + ", Rp " + String.format("%,d", r.amountToPay) + ")" + busy);
+            return r.struk;
+        }
+    }
+
+    // ---------- Failed orders held aside ----------
+    static class HeldOrder {
+        final MenuItem[] items; final int[] qtys;
+        HeldOrder(MenuItem[] items, int[] qtys){ this.items = items; this.qtys = qtys; }
+        long subtotal(){
+            long s = 0;
+            for(int i=0;i<items.length;i++) s += (long) items[i].getHarga() * qtys[i];
+            return s;
+        }
+    }
+
+    final Map<Integer, HeldOrder> heldOrders = new TreeMap<>();   // by payment number, FX thread only
+    Button btnRestore;
+
+    void refreshRestoreButton(){
+        btnRestore.setText(heldOrders.isEmpty() ? "Pulihkan pesanan gagal" : "Pulihkan pesanan gagal (" + heldOrders.size() + ")");
+        btnRestore.setDisable(heldOrders.isEmpty());
+    }
+
+    // puts one held order back into an empty cart, ready to be paid again
+    void restoreHeldOrder(){
+        if(heldOrders.isEmpty()) return;
+        if(!cart.isEmpty()){
+            showAlert(Alert.AlertType.WARNING, "Keranjang belum kosong", "Selesaikan atau kosongkan pesanan yang sedang dibuat dulu, supaya dua pesanan tidak tergabung dalam satu tagihan.");
+            return;
         }
-        sb.append("--------------------------------\n");
-        sb.append(String.format("Subtotal        : Rp %,d\n", subtotal));
-        if(discount>0) sb.append(String.format("Diskon 10%%      : -Rp %,d\n", discount));
-        if(usedCouponHash != null) sb.append(String.format("Kupon digunakan : -Rp %,d (hash: %s)\n", couponValue, usedCouponHash));
-        sb.append(String.format("Pajak 10%%       : Rp %,d\n", Math.round(tax)));
-        sb.append(String.format("Biaya layanan   : Rp %,d\n", SERVICE_FEE));
-        sb.append("--------------------------------\n");
-        sb.append(String.format("TOTAL BAYAR     : Rp %,d\n", totalPay));
-        sb.append("Dibayar via     : " + chosen.name + "\n");
-        sb.append("Transaksi ID    : " + transactionHash + "\n");
-        sb.append(String.format("Sisa saldo %s : Rp %,d\n", chosen.name, chosen.balance));
-        sb.append("\n🎟 Kupon untuk kunjungan berikutnya (hash):\n");
-        sb.append(coupon + "\n");
-
-        // save struk
-        saveStrukToFile(sb.toString());
-
-
-// show success dialog with struk preview
-TextArea ta = new TextArea(sb.toString());
-ta.setEditable(false);
-ta.setWrapText(true);
-ta.setPrefSize(600, 400);
-Stage st = new Stage();
-st.initModality(Modality.APPLICATION_MODAL);
-st.setTitle("Pembayaran Berhasil - Struk");
-
-// ganti nama vb jadi vbSuccess
-VBox vbSuccess = new VBox(8, new Label("Pembayaran sukses ✅"), ta, new Button("OK"));
-vbSuccess.setPadding(new Insets(8));
-
-Button ok = (Button) vbSuccess.getChildren().get(2);
-ok.setOnAction(ae -> st.close());
-
-st.setScene(new Scene(vbSuccess));
-st.showAndWait();
-        // clear cart after success
-        cart.clear();
+        Map<String, Integer> choices = new LinkedHashMap<>();
+        for(Map.Entry<Integer, HeldOrder> e : heldOrders.entrySet())
+            choices.put("Pembayaran #" + e.getKey() + " (" + e.getValue().items.length + " item, subtotal Rp "
+                    + String.format("%,d", e.getValue().subtotal()) + ")", e.getKey());
+        List<String> labels = new ArrayList<>(choices.keySet());
+        ChoiceDialog<String> cd = new ChoiceDialog<>(labels.get(0), labels);
+        cd.setTitle("Pulihkan pesanan gagal");
+        cd.setHeaderText("Pilih pesanan yang dicoba bayar lagi");
+        Optional<String> pick = cd.showAndWait();
+        if(!pick.isPresent() || !cart.isEmpty()) return;
+        int seq = choices.get(pick.get());
+        HeldOrder o = heldOrders.remove(seq);
+        for(int i=0;i<o.items.length;i++) cartAdd(o.items[i], o.qtys[i]);
         refreshSummary();
+        refreshRestoreButton();
+        lblPayStatus.setText("↩️ Pesanan #" + seq + " kembali ke keranjang; tekan Bayar untuk mencoba lagi.");
     }
 
-    String generateSingleCoupon(){
-        String[] types = {"EMAS","PERUNGU","PERAK","PLATINUM","DIAMOND","SAPPHIRE"};
-        Random rnd = new Random();
-        String type = types[rnd.nextInt(types.length)];
-        String raw = type + System.currentTimeMillis() + rnd.nextInt(9999);
-        return sha256(raw);
+    void refreshWalletChoices(ComboBox<String> cbWallets){
+        int idx = cbWallets.getSelectionModel().getSelectedIndex();
+        String typed = idx < 0 ? cbWallets.getEditor().getText() : null;   // a wallet outside the list stays typed in
+        int sel = Math.max(0, idx);
+        List<String> items = new ArrayList<>(wallets.length);
+        for(Wallet w : wallets) items.add(w.name + " (Saldo: Rp " + String.format("%,d", w.getBalance()) + ")");
+        cbWallets.getItems().setAll(items);
+        if(typed != null && !typed.isBlank()) cbWallets.setValue(typed);
+        else if(sel < items.size()) cbWallets.getSelectionModel().select(sel);
     }
 
-    // Command parser — "free command" support
-    void handleCommand(String cmd, ComboBox<String> cbWallets, PasswordField pfPassword){
-        if(cmd.isBlank()) return;
-        String lc = cmd.toLowerCase();
-        try{
-            if(lc.startsWith("add ")){
-                // format: add <name> <qty>
-                String[] parts = cmd.split("\\s+");
-                if(parts.length >= 2){
-                    String name = parts[1];
-                    int qty = parts.length >= 3 ? Integer.parseInt(parts[2]) : 1;
-                    // find in foods or drinks
-                    for(MenuItemModel m : foodList){
-                        if(m.name.equalsIgnoreCase(name)){
-                            addToCartByName(m, qty); return;
-                        }
-                    }
-                    for(MenuItemModel m : drinkList){
-                        if(m.name.equalsIgnoreCase(name)){
-                            addToCartByName(m, qty); return;
-                        }
-                    }
-                    showAlert(Alert.AlertType.WARNING, "Tidak ditemukan", "Menu '"+name+"' tidak ditemukan.");
-                }
-            } else if(lc.equals("pay")){
-                doPayment(cbWallets, pfPassword);
-            } else if(lc.startsWith("remove ")){
-                // remove <index>  (1-based)
-                String[] p = cmd.split("\\s+");
-                if(p.length >= 2){
-                    int idx = Integer.parseInt(p[1]) - 1;
-                    if(idx >= 0 && idx < cart.size()){
-                        cart.remove(idx);
-                        refreshSummary();
-                    }
-                }
-            } else if(lc.equals("clear")){
-                cart.clear(); refreshSummary();
-            } else if(lc.equals("struk")){
+    // success window is non-modal so the next order can be taken while it is open
+    void showStruk(String strukText){
+        TextArea ta = new TextArea(strukText);
+        ta.setEditable(false);
+        ta.setWrapText(true);
+        ta.setPrefSize(600, 400);
+        Stage st = new Stage();
+        st.setTitle("Pembayaran Berhasil - Struk");
+
+        Button ok = new Button("OK");
+        ok.setOnAction(ae -> st.close());
+        VBox vbSuccess = new VBox(8, new Label("Pembayaran sukses ✅"), ta, ok);
+        vbSuccess.setPadding(new Insets(8));
+
+        st.setScene(new Scene(vbSuccess));
+        st.show();
+    }
+
+    // "struk <transaksi id>" in the command bar: one past struk from the archive
+    void showArchived(String tx){
+        ReceiptArchive.Receipt r = archive == null ? null : archive.get(tx);
+        if(r == null){
+            showAlert(Alert.AlertType.INFORMATION, "Struk", archive == null ? "Arsip struk belum siap." : "Transaksi tidak ditemukan: " + tx);
+            return;
+        }
+        TextArea ta = new TextArea(r.render());
+        ta.setEditable(false);
+        ta.setPrefSize(600, 400);
+        Stage st = new Stage();
+        st.setTitle("Struk " + tx.substring(0, Math.min(12, tx.length())));
+        Button ok = new Button("OK");
+        ok.setOnAction(ae -> st.close());
+        VBox vb = new VBox(8, ta, ok);
+        vb.setPadding(new Insets(8));
+        st.setScene(new Scene(vb));
+        st.show();
+    }
+
+    // Command bar — a script of ';'-separated commands (see CartScript).
+    // The whole script compiles and is checked against a copy of the cart
+    // before anything changes, then the cart edits go in as one batch with a
+    // single summary refresh; pay/struk run after that, in order.
+    void handleCommand(String src, ComboBox<String> cbWallets, PasswordField pfPassword){
+        if(src.isBlank()) return;
+        CartScript script;
+        try {
+            script = CartScript.compile(src, MenuCatalog.current());
+            checkScript(script);
+        } catch(IllegalArgumentException ex){
+            showAlert(Alert.AlertType.WARNING, "Perintah", "Perintah tidak dijalankan: " + ex.getMessage());
+            return;
+        }
+        boolean touched = false;
+        for(CartScript.Command c : script.commands()){
+            switch(c.op){
+                case ADD: cartAdd(c.item, c.qty); touched = true; break;
+                case REMOVE: cartRemove(c.line); touched = true; break;
+                case CLEAR: cartClear(); touched = true; break;
+                default: break;
+            }
+        }
+        if(touched) refreshSummary();
+        for(CartScript.Command c : script.commands()){
+            if(c.op == CartScript.Op.STRUK && c.tx != null){
+                showArchived(c.tx);
+            } else if(c.op == CartScript.Op.STRUK){
                 try{ Desktop.getDesktop().open(new File("struk.txt")); } catch(Exception e){ showAlert(Alert.AlertType.INFORMATION,"Struk","File struk.txt mungkin belum ada atau tidak bisa dibuka."); }
-            } else {
-                showAlert(Alert.AlertType.INFORMATION, "Perintah", "Perintah tidak dikenali: " + cmd);
+            } else if(c.op == CartScript.Op.PAY){
+                if(c.wallet != null && walletIndex(c.wallet) >= 0) cbWallets.getSelectionModel().select(walletIndex(c.wallet));
+                else if(c.wallet != null) cbWallets.setValue(c.wallet.trim());
+                doPayment(cbWallets, pfPassword);
             }
-        } catch(Exception ex){
-            showAlert(Alert.AlertType.ERROR, "Error", "Gagal memproses perintah: " + ex.getMessage());
         }
     }
 
-    void addToCartByName(MenuItemModel m, int qty){
-        for(CartLine cl : cart){
-            if(cl.item.name.equalsIgnoreCase(m.name)){
-                cl.qty = cl.qty + qty; tvCart.refresh(); refreshSummary(); return;
+    // dry run over the cart's line keys: line numbers and wallet names must hold
+    // at the point each command runs, otherwise nothing is applied
+    void checkScript(CartScript script){
+        List<String> lines = new ArrayList<>(cart.size());
+        for(CartLine l : cart) lines.add(cartKey(l.item));
+        for(CartScript.Command c : script.commands()){
+            switch(c.op){
+                case ADD:
+                    if(!lines.contains(cartKey(c.item))) lines.add(cartKey(c.item));
+                    break;
+                case REMOVE:
+                    if(c.line >= lines.size())
+                        throw new IllegalArgumentException("baris " + (c.line + 1) + " tidak ada (posisi " + (c.pos + 1) + ")");
+                    lines.remove(c.line);
+                    break;
+                case CLEAR: lines.clear(); break;
+                case PAY:
+                    if(c.wallet != null && ledger != null && findWallet(c.wallet) == null)
+                        throw new IllegalArgumentException("wallet '" + c.wallet + "' tidak ditemukan (posisi " + (c.pos + 1) + ")");
+                    break;
+                default: break;
             }
         }
-        cart.add(new CartLine(m, qty)); refreshSummary();
+    }
+
+    int walletIndex(String name){
+        for(int i=0;i<wallets.length;i++) if(wallets[i].name.equalsIgnoreCase(name.trim())) return i;
+        return -1;
+    }
+
+    // a listed wallet, or any other in dompet.dat by its exact name (as the CLI does)
+    Wallet findWallet(String name){
+        int i = walletIndex(name);
+        return i >= 0 ? wallets[i] : ledger == null ? null : ledger.wallet(name.trim());
     }
 
     // Utilities
@@ -560,6 +694,25 @@ st.showAndWait();
         a.showAndWait();
     }
 
+    @Override
+    public void stop() throws Exception {
+        // let payments already in flight finish before their stores close
+        paymentPool.shutdown();
+        paymentPool.awaitTermination(30, TimeUnit.SECONDS);
+        closeWhenLoaded(kitchenReady);
+        // stores still loading are waited for so nothing is left half-open
+        closeWhenLoaded(receiptsReady);
+        closeWhenLoaded(archiveReady);
+        closeWhenLoaded(couponsReady);
+        closeWhenLoaded(ledgerReady);
+    }
+
+    void closeWhenLoaded(CompletableFuture<? extends Closeable> store){
+        if(store == null) return;
+        try { Startup.await(store).close(); }
+        catch(Exception e){ /* failed to load, nothing to close */ }
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
@@ -1,116 +1,47 @@
 import java.util.*;
 import java.io.*;
-import java.security.MessageDigest;
-import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
 
-import restaurant.menu.Food;
+import restaurant.menu.Catalog;
 import restaurant.menu.Drink;
+import restaurant.menu.Food;
+import restaurant.menu.MenuCatalog;
+import restaurant.menu.MenuItem;
+import restaurant.coupon.CouponStore;
+import restaurant.kitchen.Kitchen;
+import restaurant.order.Bill;
+import restaurant.order.OrderLines;
+import restaurant.payment.Checkout;
+import restaurant.payment.Wallet;
+import restaurant.payment.WalletLedger;
+import restaurant.receipt.ReceiptArchive;
+import restaurant.receipt.ReceiptJournal;
+import restaurant.util.Metrics;
+import restaurant.util.Startup;
 
 public class Main {
-
-    // --=== [SHA256 Helper] ===--
-    static String sha256(String s) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] hash = md.digest(s.getBytes(StandardCharsets.UTF_8));
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hash) sb.append(String.format("%02x", b));
-            return sb.toString();
-        } catch (Exception e) { throw new RuntimeException(e); }
-    }
-
-    // --=== [Wallet Class] ===--
-    static class Wallet {
-        String name;
-        long balance;
-        String passwordHash;
-        Wallet(String name, long balance, String plainPwd) {
-            this.name = name;
-            this.balance = balance;
-            this.passwordHash = sha256(plainPwd);
-        }
-        boolean verify(String pwd) { return sha256(pwd).equalsIgnoreCase(passwordHash); }
-        boolean canPay(long amt) { return balance >= amt; }
-        void deduct(long amt) { balance -= amt; }
-    }
-
-    // --=== [Load & Save Coupons for customer] ===--
-    static Map<String, Long> loadCoupons(File f) {
-        Map<String, Long> map = new HashMap<>();
-        if (!f.exists()) return map;
-        try (BufferedReader r = new BufferedReader(new FileReader(f))) {
-            String line;
-            while ((line = r.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty()) continue;
-                String[] parts = line.split(",", 2);
-                if (parts.length == 2) map.put(parts[0], Long.parseLong(parts[1]));
-            }
-        } catch (Exception e) { System.out.println("⚠️ Gagal membaca file kupon: " + e.getMessage()); }
-        return map;
-    }
-
-    static void saveCoupon(File f, String hash, long value) {
-        try (FileWriter fw = new FileWriter(f, true)) {
-            fw.write(hash + "," + value + System.lineSeparator());
-        } catch (Exception e) { System.out.println("⚠️ Gagal menyimpan kupon: " + e.getMessage()); }
-    }
-
-    // --=== [Generate Single Random Coupon] ===--
-    static String generateRandomCoupon() {
-        String[] types = {"EMAS", "PERUNGU", "PERAK", "PLATINUM", "DIAMOND", "SAPPHIRE"};
-        Random rnd = new Random();
-        String type = types[rnd.nextInt(types.length)];
-        String raw = type + System.currentTimeMillis() + rnd.nextInt(1000);
-        return sha256(raw);
-    }
-
-    // --=== [Menu Helper] ===--
-    static int getPrice(String name) {
-        if (name == null) return 0;
-        name = name.trim().toLowerCase();
-        switch (name) {
-            case "bibimbap": return 30000;
-            case "kimchi": return 12000;
-            case "tteokbokki": return 25000;
-            case "bulgogi": return 35000;
-            case "soju": return 35000;
-            case "makgeolli": return 30000;
-            case "sikhye": return 15000;
-            case "omija tea": return 20000;
-            default: return 0;
-        }
-    }
-
-    static boolean isDrink(String name) {
-        if (name == null) return false;
-        name = name.trim().toLowerCase();
-        return Arrays.asList("soju","makgeolli","sikhye","omija tea").contains(name);
-    }
+    static final int MENU_PREVIEW = 20;     // longer lists are cut; the rest is reachable via Cari
+    static final int SEARCH_RESULTS = 10;
 
     // --=== [Main Program] ===--
-    public static void main(String[] args) throws IOException, InterruptedException {
+    public static void main(String[] args) throws Exception {
+        // --=== [Startup] ===--
+        // menu and banner first; coupons, wallets and the struk journal load in
+        // the background and are only waited for at payment time
+        Startup startup = new Startup();
+        Metrics.init();
         Scanner sc = new Scanner(System.in);
         File couponFile = new File("coupons.txt");
-        Map<String, Long> coupons = loadCoupons(couponFile);
+        CompletableFuture<CouponStore> couponsReady = startup.async("kupon", () -> CouponStore.openOrImport(new File("kupon").toPath(), couponFile));
+        CompletableFuture<WalletLedger> ledgerReady = startup.async("dompet", () -> WalletLedger.open(new File("dompet").toPath(), Wallet.defaults()));
+        CompletableFuture<ReceiptJournal> receiptsReady = startup.async("struk", () -> ReceiptJournal.open(new File("struk.txt").toPath()));
+        CompletableFuture<ReceiptArchive> archiveReady = startup.async("arsip", () -> ReceiptArchive.open(new File("arsip").toPath()));
 
-        // --=== [Welcome ASCII Art] ===--
-        try { ProcessBuilder pb = new ProcessBuilder("figlet", "Welcome to K-Delights"); Process p = pb.start(); p.waitFor(); } 
-        catch (Exception e) { System.out.println("Figlet tidak tersedia: " + e.getMessage()); }
-
-        Food[] foods = {
-            new Food("Bibimbap", 30000), new Food("Kimchi", 12000), new Food("Tteokbokki", 25000),
-            new Food("Bulgogi", 35000)
-        };
-        Drink[] drinks = {
-            new Drink("Soju", 35000), new Drink("Makgeolli", 30000), new Drink("Sikhye", 15000),
-           new Drink("Omija Tea", 20000)
-        };
-        Wallet[] wallets = {
-            new Wallet("myaccount", 5_000_000L, "myaccount"),
-            new Wallet("mybank", 12_000_000L, "mybank"),
-            new Wallet("mysecret", 100_000_000L, "mysecret")
-        };
+        // menu dari menu.csv (di-reload otomatis saat file berubah)
+        Catalog menu = startup.run("menu", () -> { MenuCatalog.init(new File("menu.csv").toPath(), 2000); return MenuCatalog.current(); });
+        List<MenuItem> foods = menu.items(Food.KATEGORI);
+        List<MenuItem> drinks = menu.items(Drink.KATEGORI);
+        startup.async("indeks-cari", menu::search);
 
         // --=== [Greeting] ===--
 System.out.println(
@@ -123,147 +54,155 @@ System.out.println(
 "                                             restaurant\n"
 );
 
-        System.out.println("1) Saya mau pesan 🍲");
-        System.out.println("2) Saya gak jadi pesen ❌");
-        System.out.print("Pilihan: ");
-        String choice = sc.nextLine().trim();
-        if (!choice.equals("1")) { System.out.println("😎 Terima kasih sudah mampir. Sampai jumpa!"); sc.close(); return; }
+        System.out.println("Welcome to K-Delights!\n");
+        startup.mark("siap");
+        startup.reportWhenDone();
+
+        String choice;
+        while (true) {
+            System.out.println("1) Saya mau pesan 🍲");
+            System.out.println("2) Saya gak jadi pesen ❌");
+            System.out.println("3) Cari struk lama (ID transaksi) 🔎");
+            System.out.print("Pilihan: ");
+            choice = sc.nextLine().trim();
+            if (!choice.equals("3")) break;
+            System.out.print("🔎 ID transaksi: ");
+            String tx = sc.nextLine().trim();
+            ReceiptArchive.Receipt found = Startup.await(archiveReady).get(tx);
+            System.out.println(found == null ? "⚠️ Transaksi tidak ditemukan: " + tx + "\n" : "\n" + found.render());
+        }
+        if (!choice.equals("1")) { System.out.println("😎 Terima kasih sudah mampir. Sampai jumpa!"); shutdown(couponsReady, ledgerReady, receiptsReady, archiveReady); sc.close(); return; }
 
         // --=== [Display Menu] ===--
         System.out.println("\n📜 Menu Makanan:");
-        for (int i = 0; i < foods.length; i++) System.out.printf("%d) %s - Rp %,d\n", i+1, foods[i].getNama(), foods[i].getHarga());
+        printMenu(foods);
         System.out.println("\n🥤 Menu Minuman:");
-        for (int i = 0; i < drinks.length; i++) System.out.printf("%d) %s - Rp %,d\n", i+1, drinks[i].getNama(), drinks[i].getHarga());
+        printMenu(drinks);
 
         // --=== [Order Input Loop] ===--
-        final int MAX = 4;
-        String[] orderNames = new String[MAX];
-        int[] orderQty = new int[MAX];
-        int orders = 0;
+        OrderLines order = new OrderLines();
 
-        while (orders < MAX) {
-            System.out.printf("\n📝 Pesan ke-%d (0 selesai):\n", orders+1);
-            System.out.print("Kategori (1=Makanan,2=Minuman,0=selesai): ");
+        while (true) {
+            System.out.printf("\n📝 Pesan ke-%d (0 selesai):\n", order.size()+1);
+            System.out.print("Kategori (1=Makanan,2=Minuman,3=Cari,0=selesai): ");
             String cat = sc.nextLine().trim();
             if (cat.equals("0")) break;
-            if (!(cat.equals("1") || cat.equals("2"))) { System.out.println("⚠️ Input kategori tidak valid!"); continue; }
-
-            if (cat.equals("1")) {
-                System.out.print("🍲 Masukkan nomor makanan: ");
-                int idx = -1; try { idx=Integer.parseInt(sc.nextLine().trim())-1; } catch(Exception e){ idx=-1; }
-                if(idx<0 || idx>=foods.length){System.out.println("⚠️ Nomor tidak valid."); continue;}
-                System.out.print("Jumlah: "); int q; try { q=Integer.parseInt(sc.nextLine().trim()); } catch(Exception e){q=1;}
-                if(q<1) q=1; orderNames[orders]=foods[idx].getNama(); orderQty[orders]=q;
-                System.out.println("✅ Ditambahkan: "+orderNames[orders]+" x"+q);
+            if (!(cat.equals("1") || cat.equals("2") || cat.equals("3"))) { System.out.println("⚠️ Input kategori tidak valid!"); continue; }
+
+            List<MenuItem> list;
+            if (cat.equals("3")) {
+                System.out.print("🔎 Cari menu (nama / kategori): ");
+                list = menu.search().find(sc.nextLine(), SEARCH_RESULTS);
+                if (list.isEmpty()) { System.out.println("⚠️ Tidak ada menu yang cocok."); continue; }
+                for (int i = 0; i < list.size(); i++) System.out.printf("%d) %s - Rp %,d (%s)\n", i+1, list.get(i).getNama(), list.get(i).getHarga(), list.get(i).getKategori());
+                System.out.print("🍽️ Masukkan nomor menu: ");
             } else {
-                System.out.print("🥤 Masukkan nomor minuman: ");
-                int idx = -1; try { idx=Integer.parseInt(sc.nextLine().trim())-1; } catch(Exception e){ idx=-1; }
-                if(idx<0 || idx>=drinks.length){System.out.println("⚠️ Nomor tidak valid."); continue;}
-                System.out.print("Jumlah: "); int q; try { q=Integer.parseInt(sc.nextLine().trim()); } catch(Exception e){q=1;}
-                if(q<1) q=1; orderNames[orders]=drinks[idx].getNama(); orderQty[orders]=q;
-                System.out.println("✅ Ditambahkan: "+orderNames[orders]+" x"+q);
+                list = cat.equals("1") ? foods : drinks;
+                System.out.print(cat.equals("1") ? "🍲 Masukkan nomor makanan: " : "🥤 Masukkan nomor minuman: ");
             }
-            orders++;
-            if(orders<MAX){ System.out.print("Mau pesan lagi? (y/n): "); String more=sc.nextLine().trim(); if(!more.equalsIgnoreCase("y")) break; }
+            int idx = -1; try { idx=Integer.parseInt(sc.nextLine().trim())-1; } catch(Exception e){ idx=-1; }
+            if(idx<0 || idx>=list.size()){System.out.println("⚠️ Nomor tidak valid."); continue;}
+            System.out.print("Jumlah: "); int q; try { q=Integer.parseInt(sc.nextLine().trim()); } catch(Exception e){q=1;}
+            if(q<1) q=1;
+            MenuItem item=list.get(idx);
+            int line=order.add(item.getId(), q);
+            if(order.qty(line)==q) System.out.println("✅ Ditambahkan: "+item.getNama()+" x"+q);
+            else System.out.println("✅ Ditambahkan: "+item.getNama()+" x"+q+" (total x"+order.qty(line)+")");
+            System.out.print("Mau pesan lagi? (y/n): "); String more=sc.nextLine().trim(); if(!more.equalsIgnoreCase("y")) break;
         }
 
-        if(orders==0){ System.out.println("⚠️ Tidak ada pesanan. Keluar."); sc.close(); return; }
+        if(order.isEmpty()){ System.out.println("⚠️ Tidak ada pesanan. Keluar."); shutdown(couponsReady, ledgerReady, receiptsReady, archiveReady); sc.close(); return; }
 
         // --=== [Subtotal, Discount, Tax, Service] ===--
-        int[] pricePerSlot = new int[orders]; long subtotal=0; boolean hasDrink=false;
-        for(int i=0;i<orders;i++){ pricePerSlot[i]=getPrice(orderNames[i]); long slotTotal=(long)pricePerSlot[i]*orderQty[i]; subtotal+=slotTotal; if(isDrink(orderNames[i])) hasDrink=true; }
-
-        boolean promoApplied=false; String promoDrink=null;
-        if(subtotal>50_000 && hasDrink){ for(int i=0;i<orders;i++){ if(isDrink(orderNames[i]) && orderQty[i]>=1){ promoApplied=true; promoDrink=orderNames[i]; break; } } }
-
-        double discount=0.0; double afterDiscount=subtotal;
-        if(subtotal>100_000){ discount=subtotal*0.10; afterDiscount=subtotal-discount; }
-        double tax=afterDiscount*0.10; double serviceFee=20_000.0; double totalPay=afterDiscount+tax+serviceFee;
+        Bill bill=new Bill(order, menu);
 
         System.out.println("\n🧾 Ringkasan Pesanan:");
-        for(int i=0;i<orders;i++){
-            long slotTotal=(long)pricePerSlot[i]*orderQty[i];
-            System.out.printf("%d) %s x%d -> Rp %,d\n", i+1, orderNames[i], orderQty[i], slotTotal);
-            if(promoApplied && promoDrink!=null && promoDrink.equalsIgnoreCase(orderNames[i])) System.out.println("   (Promo: +1 "+promoDrink+" GRATIS!)");
+        for(int i=0;i<bill.orders;i++){
+            System.out.printf("%d) %s x%d -> Rp %,d\n", i+1, bill.names[i], bill.qty[i], bill.slotTotal(i));
+            if(bill.isPromoSlot(i)) System.out.println("   (Promo: +1 "+bill.promoDrink+" GRATIS!)");
         }
-        System.out.printf("Subtotal        : Rp %,d\n", subtotal);
-        if(discount>0) System.out.printf("Diskon 10%%      : -Rp %,d\n",(long)discount);
-        System.out.printf("Pajak 10%%       : Rp %,d\n",(long)tax);
-        System.out.printf("Biaya layanan   : Rp %,d\n",(long)serviceFee);
-        System.out.printf("TOTAL BAYAR     : Rp %,d\n",(long)totalPay);
+        System.out.printf("Subtotal        : Rp %,d\n", bill.subtotal);
+        if(bill.discount>0) System.out.printf("Diskon 10%%      : -Rp %,d\n",bill.discount);
+        System.out.printf("Pajak 10%%       : Rp %,d\n",bill.tax);
+        System.out.printf("Biaya layanan   : Rp %,d\n",bill.serviceFee);
+        System.out.printf("TOTAL BAYAR     : Rp %,d\n",bill.totalPay);
 
         // --=== [Payment Loop] ===--
-        long amountToPay=(long)Math.round(totalPay);
-        boolean paid=false; Wallet chosen=null;
-        while(!paid){
+        if(!(couponsReady.isDone() && ledgerReady.isDone() && receiptsReady.isDone())) System.out.println("\n⏳ Menunggu data kupon & dompet...");
+        CouponStore coupons = Startup.await(couponsReady);
+        WalletLedger ledger = Startup.await(ledgerReady);
+        ReceiptJournal receipts = Startup.await(receiptsReady);
+        ReceiptArchive archive = Startup.await(archiveReady);
+        Kitchen kitchen = Kitchen.open(new File("dapur").toPath());
+        Checkout checkout = new Checkout(ledger, coupons, receipts, archive, kitchen);
+        Wallet[] wallets = ledger.wallets();
+        boolean paid=false, cancelled=false;
+        while(!paid && !cancelled){
             System.out.println("\n💳 Pilih metode pembayaran:");
-            for(int i=0;i<wallets.length;i++) System.out.printf("%d) %s (Saldo: Rp %,d)\n", i+1, wallets[i].name, wallets[i].balance);
-            System.out.print("Pilih (1-"+wallets.length+") atau 'b' untuk batal: ");
+            for(int i=0;i<wallets.length;i++) System.out.printf("%d) %s (Saldo: Rp %,d)\n", i+1, wallets[i].name, wallets[i].getBalance());
+            System.out.print("Pilih (1-"+wallets.length+"), ketik nama wallet, atau 'b' untuk batal: ");
             String sel=sc.nextLine().trim();
             if(sel.equalsIgnoreCase("b")){System.out.println("⚠️ Pembayaran dibatalkan. Kembali ke menu."); break;}
             int widx=-1; try { widx=Integer.parseInt(sel)-1; } catch(Exception e){ widx=-1; }
-            if(widx<0 || widx>=wallets.length){System.out.println("⚠️ Pilihan tidak valid."); continue;}
-            chosen=wallets[widx];
+            // wallet pelanggan di luar daftar dicari lewat namanya di dompet.dat
+            Wallet chosen = widx>=0 && widx<wallets.length ? wallets[widx] : ledger.wallet(sel);
+            if(chosen==null){System.out.println("⚠️ Pilihan tidak valid."); continue;}
+            if(widx<0) System.out.printf("👛 %s (Saldo: Rp %,d)\n", chosen.name, chosen.getBalance());
 
-            boolean verified=false;
-            while(!verified){
+            // verifikasi, saldo, jurnal, dapur, kupon & struk lewat Checkout (sama dengan aplikasi desktop)
+            while(true){
                 System.out.print("🔑 Masukkan kata kunci untuk "+chosen.name+" (atau 'g' ganti metode): ");
                 String pwd=sc.nextLine().trim();
                 if(pwd.equalsIgnoreCase("g")){ System.out.println("🔄 Ganti metode."); break; }
-                if(!chosen.verify(pwd)){
+                Checkout.Result r;
+                try { r=checkout.pay(bill, chosen.name, pwd, null, null); }
+                catch(IOException e){ System.out.println("⚠️ Gagal mencatat pembayaran, saldo dikembalikan: "+e.getMessage()); break; }
+                if(r.status==Checkout.Status.SUKSES){
+                    paid=true;
+                    if(r.ticketsRefused>0) System.out.println("⚠️ Antrean dapur penuh: pesanan belum sampai ke dapur, sampaikan langsung.");
+                    else System.out.println("🍳 Pesanan diteruskan ke dapur");
+                    System.out.println("\n✅ Pembayaran sukses! Struk tersimpan di struk.txt");
+                    System.out.println("Transaksi ID: "+r.transactionId);
+                    break;
+                }
+                if(r.status==Checkout.Status.VERIFIKASI_GAGAL){
                     System.out.println("❌ Verifikasi gagal. Pilih: 1) coba lagi 2) ganti 3) batal");
                     String opt=sc.nextLine().trim();
                     if(opt.equals("1")) continue;
-                    else if(opt.equals("2")) break;
-                    else{ System.out.println("⚠️ Pembayaran dibatalkan."); break;}
-                } else verified=true;
-            }
-            if(!verified) continue;
-            if(!chosen.canPay(amountToPay)){
-                System.out.println("⚠️ Saldo tidak cukup. Pilih: 1) metode lain 2) batal"); String opt=sc.nextLine().trim();
-                if(opt.equals("1")) continue; else{ System.out.println("⚠️ Pembayaran dibatalkan."); break;}
-            }
-
-            chosen.deduct(amountToPay);
-            String transactionHash=sha256(chosen.name+"|"+amountToPay+"|"+System.currentTimeMillis());
-            paid=true;
-
-            // --=== [Save Struk + Generate 1 Kupon Random] ===--
-            File strukFile=new File("struk.txt");
-            try(FileWriter fw=new FileWriter(strukFile)){
-                fw.write("====== STRUK K-DELIGHTS ======\n");
-                for(int i=0;i<orders;i++){
-                    long slotTotal=(long)pricePerSlot[i]*orderQty[i];
-                    fw.write(String.format("%d) %s x%d -> Rp %,d\n", i+1, orderNames[i], orderQty[i], slotTotal));
-                    if(promoApplied && promoDrink!=null && promoDrink.equalsIgnoreCase(orderNames[i])){
-                        fw.write("   (Promo: +1 "+promoDrink+" GRATIS!)\n");
-                    }
+                    if(!opt.equals("2")){ System.out.println("⚠️ Pembayaran dibatalkan."); cancelled=true; }
+                    break;
                 }
-                fw.write("--------------------------------\n");
-                fw.write(String.format("TOTAL BAYAR     : Rp %,d\n", amountToPay));
-                fw.write("Dibayar via     : "+chosen.name+"\n");
-                fw.write("Transaksi ID    : "+transactionHash+"\n");
-                fw.write(String.format("Sisa saldo %s : Rp %,d\n", chosen.name, chosen.balance));
-
-                // generate 1 kupon per transaksi
-
-
-                String c = generateRandomCoupon(); 
-
-                saveCoupon(couponFile, c, 50_000L);
-                fw.write("🎟 Kupon untuk kunjungan berikutnya:\n");
-                fw.write("Kupon #1: " + c + "\n"); 
-
-            } catch(Exception e){System.out.println("⚠️ Gagal simpan struk: "+e.getMessage());}
-
-            System.out.println("\n✅ Pembayaran sukses! Struk tersimpan di struk.txt");
-            System.out.println("Transaksi ID: "+transactionHash);
+                if(r.status==Checkout.Status.SALDO_KURANG){
+                    System.out.println("⚠️ Saldo tidak cukup. Pilih: 1) metode lain 2) batal"); String opt=sc.nextLine().trim();
+                    if(!opt.equals("1")){ System.out.println("⚠️ Pembayaran dibatalkan."); cancelled=true; }
+                    break;
+                }
+                System.out.println("⚠️ Pilihan tidak valid.");
+                break;
+            }
         }
 
-        System.out.println("\n👋 Terima kasih telah memesan di K-Delights!");
-        try { ProcessBuilder pb = new ProcessBuilder("figlet", "Sampai Jumpa!"); Process p = pb.start(); p.waitFor(); } 
-        catch (Exception e) { System.out.println("Figlet tidak tersedia: " + e.getMessage()); }
+        System.out.println("\n👋 Terima kasih telah memesan di K-Delights! Sampai Jumpa!");
 
+        kitchen.close();
+        receipts.close();
+        archive.close();
+        coupons.close();
+        ledger.close();
         sc.close();
  }
+
+    static void printMenu(List<MenuItem> list) {
+        int shown = Math.min(list.size(), MENU_PREVIEW);
+        for (int i = 0; i < shown; i++) System.out.printf("%d) %s - Rp %,d\n", i+1, list.get(i).getNama(), list.get(i).getHarga());
+        if (shown < list.size()) System.out.printf("... dan %d menu lainnya (pilih 3=Cari)\n", list.size() - shown);
+    }
+
+    // stores that finished loading are closed; one that failed has nothing to close
+    @SafeVarargs
+    static void shutdown(CompletableFuture<? extends Closeable>... stores) {
+        for (CompletableFuture<? extends Closeable> f : stores) {
+            try { Startup.await(f).close(); } catch (Exception e) { /* nothing opened */ }
+        }
+    }
 }
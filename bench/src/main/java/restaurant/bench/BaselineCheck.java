@@ -0,0 +1,78 @@
+package restaurant.bench;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+import restaurant.replay.Json;
+
+// --=== [JMH baseline comparison] ===--
+// Reads two JMH JSON result files (latest run and baseline.json), prints one
+// line per benchmark and exits non-zero when any score is worse than the
+// baseline by more than the tolerance. All benchmarks here are AverageTime,
+// so a higher score is slower. The error columns are only shown: a noisy
+// benchmark needs more forks, not a wider pass, and a run whose forks or
+// iterations differ from the baseline's is flagged beside its score.
+public class BaselineCheck {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Pemakaian: BaselineCheck <results.json> <baseline.json> <report.txt> [toleransi]");
+            System.exit(2);
+        }
+        Path baselineFile = Paths.get(args[1]);
+        double tolerance = args.length > 3 ? Double.parseDouble(args[3]) : 0.25;
+        Map<String, double[]> current = read(Paths.get(args[0]));
+        Map<String, double[]> baseline = Files.exists(baselineFile) ? read(baselineFile) : Map.of();
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-60s %22s %22s %9s  %s\n", "benchmark", "baseline", "sekarang", "selisih", "status"));
+        int regressions = 0;
+        for (Map.Entry<String, double[]> e : current.entrySet()) {
+            double[] now = e.getValue(), base = baseline.get(e.getKey());
+            if (base == null) {
+                report.append(String.format("%-60s %22s %22s %9s  BARU\n", e.getKey(), "-", score(now), "-"));
+                continue;
+            }
+            double delta = (now[0] - base[0]) / base[0];
+            boolean regressed = delta > tolerance;
+            if (regressed) regressions++;
+            report.append(String.format("%-60s %22s %22s %+8.1f%%  %s%s\n", e.getKey(), score(base), score(now), delta * 100,
+                    regressed ? "REGRESI" : "ok", sameRun(now, base) ? "" : " (forks/iterasi beda dari baseline)"));
+        }
+        report.append(String.format("\ntoleransi %.0f%%, %d regresi\n", tolerance * 100, regressions));
+
+        Path out = Paths.get(args[2]);
+        if (out.getParent() != null) Files.createDirectories(out.getParent());
+        Files.writeString(out, report.toString(), StandardCharsets.UTF_8);
+        System.out.print(report);
+        if (regressions > 0) System.exit(1);
+    }
+
+    private static String score(double[] r) { return String.format("%.3f ± %.3f", r[0], r[1]); }
+
+    private static boolean sameRun(double[] a, double[] b) {
+        return a[2] == b[2] && a[3] == b[3] && a[4] == b[4];
+    }
+
+    // benchmark[params] -> {score, error, forks, warmup iterations, measurement iterations}
+    @SuppressWarnings("unchecked")
+    static Map<String, double[]> read(Path file) throws IOException {
+        Map<String, double[]> scores = new TreeMap<>();
+        List<Object> runs = (List<Object>) Json.parse(Files.readString(file, StandardCharsets.UTF_8));
+        for (Object o : runs) {
+            Map<String, Object> run = (Map<String, Object>) o;
+            String key = run.get("benchmark").toString().replace("restaurant.bench.", "");
+            if (run.get("params") instanceof Map) key += new TreeMap<>((Map<String, Object>) run.get("params"));
+            Map<String, Object> metric = (Map<String, Object>) run.get("primaryMetric");
+            double error = metric.get("scoreError") instanceof Number ? ((Number) metric.get("scoreError")).doubleValue() : 0;
+            scores.put(key + " (" + metric.get("scoreUnit") + ")",
+                    new double[]{((Number) metric.get("score")).doubleValue(), Double.isNaN(error) ? 0 : error,
+                            number(run.get("forks")), number(run.get("warmupIterations")), number(run.get("measurementIterations"))});
+        }
+        return scores;
+    }
+
+    private static double number(Object o) { return o instanceof Number ? ((Number) o).doubleValue() : -1; }
+}
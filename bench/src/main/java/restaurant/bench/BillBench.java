@@ -0,0 +1,33 @@
+package restaurant.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import restaurant.menu.Catalog;
+import restaurant.menu.MenuCatalog;
+import restaurant.order.Bill;
+import restaurant.order.OrderLines;
+
+// --=== [Subtotal / discount / tax for a full CLI order] ===--
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class BillBench {
+
+    String[] names = {"Bibimbap", "Soju", "Bulgogi", "Omija Tea"};
+    int[] qty = {2, 1, 3, 2};
+
+    @Benchmark
+    public long bill() { return new Bill(names, qty, names.length).amountToPay(); }
+
+    // catering order: 500 adds over the whole menu, duplicates merged
+    Catalog menu = MenuCatalog.current();
+
+    @Benchmark
+    public long cateringLines() {
+        OrderLines order = new OrderLines();
+        for (int i = 0; i < 500; i++) order.add(i % menu.size(), 1 + (i & 3));
+        return new Bill(order, menu).amountToPay();
+    }
+}
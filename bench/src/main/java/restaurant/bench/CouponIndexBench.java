@@ -0,0 +1,39 @@
+package restaurant.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import restaurant.coupon.CouponIndex;
+import restaurant.util.Hash;
+
+// --=== [Coupon lookup: HashMap vs off-heap index] ===--
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class CouponIndexBench {
+
+    static final int COUPONS = 1_000_000;
+
+    CouponIndex index;
+    String[] hashes;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        index = new CouponIndex(COUPONS);
+        hashes = new String[COUPONS];
+        for (int i = 0; i < COUPONS; i++) {
+            hashes[i] = Hash.sha256("KUPON" + i);
+            index.put(hashes[i], 50_000L);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor { int i; }
+
+    @Benchmark
+    public long get(Cursor c) { return index.get(hashes[c.i++ % COUPONS]); }
+
+    @Benchmark
+    public long miss(Cursor c) { return index.get(Hash.sha256("TYPO" + c.i++)); }
+}
@@ -0,0 +1,41 @@
+package restaurant.bench;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import restaurant.coupon.CouponIndex;
+import restaurant.coupon.Coupons;
+import restaurant.util.Hash;
+
+// --=== [Startup coupon load on 10k / 1M line coupons.txt] ===--
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class CouponLoadBench {
+
+    @Param({"10000", "1000000"})
+    int lines;
+
+    File file;
+
+    @Setup(Level.Trial)
+    public void writeFile() throws IOException {
+        file = Files.createTempFile("coupons-" + lines + "-", ".txt").toFile();
+        try (BufferedWriter w = new BufferedWriter(new FileWriter(file))) {
+            for (int i = 0; i < lines; i++) w.write(Hash.sha256("KUPON" + i) + ",50000" + System.lineSeparator());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() { file.delete(); }
+
+    @Benchmark
+    public Map<String, Long> loadCoupons() { return Coupons.loadCoupons(file); }
+
+    @Benchmark
+    public CouponIndex loadIndex() { return CouponIndex.load(file); }
+}
@@ -0,0 +1,33 @@
+package restaurant.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import restaurant.payment.Payments;
+import restaurant.util.Hash;
+
+// --=== [sha256 on wallet verify / transaction ID inputs] ===--
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class HashBench {
+
+    String password = "myaccount";
+    long amount = 173_450L;
+    long millis = 1_700_000_000_000L;
+    String[] batch = new String[4096];
+
+    @Setup
+    public void fillBatch() { for (int i = 0; i < batch.length; i++) batch[i] = "myaccount|" + amount + "|" + (millis + i); }
+
+    @Benchmark
+    public String sha256() { return Hash.sha256(password); }
+
+    @Benchmark
+    public String transactionId() { return Payments.transactionId(password, amount, millis++); }
+
+    @Benchmark
+    @OperationsPerInvocation(4096)
+    public String[] sha256Batch() { return Hash.sha256All(batch); }
+}
@@ -0,0 +1,33 @@
+package restaurant.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import restaurant.menu.Catalog;
+import restaurant.menu.MenuCatalog;
+import restaurant.order.Menu;
+
+// --=== [Price and drink lookup by name] ===--
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class MenuBench {
+
+    String[] names = {"Bibimbap", "Kimchi", "Tteokbokki", "Bulgogi", "Soju", "Makgeolli", "Sikhye", "Omija Tea", "Ramen"};
+
+    @Benchmark
+    public void getPrice(Blackhole bh) { for (String n : names) bh.consume(Menu.getPrice(n)); }
+
+    @Benchmark
+    public void isDrink(Blackhole bh) { for (String n : names) bh.consume(Menu.isDrink(n)); }
+
+    int[] ids = {0, 1, 2, 3, 4, 5, 6, 7, 8};
+
+    @Benchmark
+    public void priceById(Blackhole bh) {
+        Catalog c = MenuCatalog.current();
+        for (int id : ids) { bh.consume(c.price(id)); bh.consume(c.isDrink(id)); }
+    }
+}
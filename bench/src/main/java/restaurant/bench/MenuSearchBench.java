@@ -0,0 +1,40 @@
+package restaurant.bench;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import restaurant.menu.Catalog;
+import restaurant.menu.Drink;
+import restaurant.menu.Food;
+import restaurant.menu.MenuItem;
+import restaurant.menu.MenuSearch;
+
+// --=== [One keystroke of menu search over a 10k-item catalog] ===--
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class MenuSearchBench {
+
+    @Param({"n", "nasi gor", "sate kambng", "drink es"})
+    String query;
+
+    MenuSearch search;
+
+    @Setup
+    public void setup() {
+        String[] w = {"nasi", "goreng", "ayam", "bakar", "mie", "kuah", "es", "teh", "jeruk", "sate", "kambing", "sapi",
+                      "soto", "betawi", "pedas", "manis", "spesial", "jumbo", "kimchi", "bulgogi", "bibimbap", "omija", "soju"};
+        Random r = new Random(7);
+        List<MenuItem> items = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            String n = w[r.nextInt(w.length)] + " " + w[r.nextInt(w.length)] + " " + w[r.nextInt(w.length)] + " " + i;
+            items.add(r.nextBoolean() ? new Food(n, 10_000) : new Drink(n, 5_000));
+        }
+        search = new Catalog(items).search();
+    }
+
+    @Benchmark
+    public int[] keystroke() { return search.search(query, 500); }
+}
@@ -0,0 +1,60 @@
+package restaurant.bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import restaurant.menu.Catalog;
+import restaurant.menu.MenuCatalog;
+import restaurant.order.Pricing;
+
+// --=== [Batch quote over flat cart arrays] ===--
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class PricingBench {
+
+    @Param({"10000"})
+    int carts;
+
+    int[] cartStart, itemId, qty, price;
+    long[] subtotal, coupon, discount, tax, total;
+
+    @Setup
+    public void setup() {
+        Catalog c = MenuCatalog.current();
+        price = new int[c.size()];
+        for (int i = 0; i < price.length; i++) price[i] = c.price(i);
+        SplittableRandom rnd = new SplittableRandom(9);
+        cartStart = new int[carts + 1];
+        itemId = new int[carts * 4]; qty = new int[carts * 4];
+        int n = 0;
+        for (int i = 0; i < carts; i++) {
+            cartStart[i] = n;
+            for (int k = rnd.nextInt(1, 5); k > 0; k--) { itemId[n] = rnd.nextInt(price.length); qty[n] = rnd.nextInt(1, 6); n++; }
+        }
+        cartStart[carts] = n;
+        subtotal = new long[carts]; coupon = new long[carts];
+        discount = new long[carts]; tax = new long[carts]; total = new long[carts];
+        for (int i = 0; i < carts; i += 7) coupon[i] = 50_000;
+    }
+
+    @Benchmark
+    public long[] quoteBatch() {
+        Pricing.subtotals(cartStart, itemId, qty, price, subtotal, carts);
+        Pricing.quoteBatch(subtotal, coupon, discount, tax, total, carts);
+        return total;
+    }
+
+    @Benchmark
+    public long quoteEach() {
+        long sum = 0;
+        for (int i = 0; i < carts; i++) {
+            long s = 0;
+            for (int j = cartStart[i]; j < cartStart[i + 1]; j++) s += (long) price[itemId[j]] * qty[j];
+            sum += Pricing.quote(s, coupon[i]).total;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,36 @@
+package restaurant.bench;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import restaurant.order.Bill;
+import restaurant.receipt.Struk;
+
+// --=== [Struk text for the CLI and the desktop app] ===--
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class StrukBench {
+
+    static final String TX = "07464b8dbb25701690c6bbe96ad829d4eb9964b601ade5d17181d0ade55db4ca";
+    static final String COUPON = "ee473908504886af82599e756ea2d22ec28117abd3265314548936046294d3c1";
+
+    String[] names = {"Bibimbap", "Soju", "Bulgogi", "Omija Tea"};
+    int[] qty = {2, 1, 3, 2};
+    long[] lineTotal = {60_000, 35_000, 105_000, 40_000};
+    Bill bill = new Bill(names, qty, names.length);
+    LocalDateTime time = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    @Benchmark
+    public String cli() {
+        return Struk.render(bill, bill.amountToPay(), "myaccount", TX, 4_740_400L, null, 0, COUPON);
+    }
+
+    @Benchmark
+    public String desktop() {
+        return Struk.renderDesktop(time, names, qty, lineTotal, names.length, 240_000, 24_000, null, 0,
+                21_600, 20_000, 257_600, "myaccount", TX, 4_742_400L, COUPON);
+    }
+}
@@ -0,0 +1,137 @@
+package restaurant.coupon;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+// --=== [Coupon Bloom filter] ===--
+// Answers "certainly not a coupon" for typos and spent codes without touching
+// the index, which may be a mapped snapshot far bigger than memory. Blocked
+// layout: a key sets 7 bits inside one 64-byte block, so a lookup is a single
+// cache line. Keys are already SHA-256 digests, so their bytes are the hash
+// (bytes 8..15 pick the block, 16..23 the bits; the index uses 0..7).
+//
+// Bits are only ever set, so the filter can answer "maybe" for a coupon that
+// is gone but never "no" for one that is live. The store rebuilds it from the
+// live coupons at every compaction, which is when spent codes drop out. The
+// image is saved next to kupon.snap with the same tag and mapped copy-on-write
+// at startup, like the snapshot.
+public final class CouponFilter {
+
+    static final int BITS_PER_KEY = 10;     // ~1% false positives at capacity
+    private static final int K = 7;
+    private static final int BLOCK_BYTES = 64;
+    private static final int MIN_BLOCKS = 16;
+    private static final int MAX_BLOCKS = 1 << 24;   // 1 GB, one buffer
+
+    private static final VarHandle WORD = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle KEY = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final ByteBuffer bits;
+    private final int blockMask;
+    private final long capacity;
+    private long keys;      // adds that set a new bit; guarded by the store's logLock
+
+    private CouponFilter(ByteBuffer bits, long capacity, long keys) {
+        this.bits = bits;
+        this.blockMask = bits.capacity() / BLOCK_BYTES - 1;
+        this.capacity = capacity;
+        this.keys = keys;
+    }
+
+    public static CouponFilter forCapacity(long expected) {
+        long blocks = MIN_BLOCKS;
+        while (blocks < MAX_BLOCKS && blocks * BLOCK_BYTES * 8 < expected * BITS_PER_KEY) blocks <<= 1;
+        ByteBuffer bits = ByteBuffer.allocateDirect((int) blocks * BLOCK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        return new CouponFilter(bits, blocks * BLOCK_BYTES * 8 / BITS_PER_KEY, 0);
+    }
+
+    // Every live coupon of idx, with room for half as many again before the
+    // false-positive rate climbs.
+    public static CouponFilter of(CouponIndex idx) {
+        CouponFilter f = forCapacity(idx.size() + idx.size() / 2 + 1024);
+        idx.forEachLive(f::add);
+        return f;
+    }
+
+    // --=== [Lookup / add] ===--
+    public boolean mightContain(byte[] digest) {
+        if (digest == null || digest.length != CouponIndex.KEY_BYTES) return false;
+        int base = block(digest);
+        long h = (long) KEY.get(digest, 16);
+        for (int i = 0; i < K; i++, h >>>= 9) {
+            int bit = (int) h & 511;
+            long w = (long) WORD.getAcquire(bits, base + (bit >>> 6) * 8);
+            if ((w & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    // Safe next to lookups; a reader sees the key once all its bits are set.
+    // Adding a key again (replayed records) sets nothing and is not counted.
+    public void add(byte[] digest) {
+        int base = block(digest);
+        long h = (long) KEY.get(digest, 16);
+        boolean fresh = false;
+        for (int i = 0; i < K; i++, h >>>= 9) {
+            int bit = (int) h & 511;
+            long was = (long) WORD.getAndBitwiseOrRelease(bits, base + (bit >>> 6) * 8, 1L << bit);
+            fresh |= (was & (1L << bit)) == 0;
+        }
+        if (fresh) keys++;
+    }
+
+    private int block(byte[] digest) {
+        return ((int) (long) KEY.get(digest, 8) & blockMask) * BLOCK_BYTES;
+    }
+
+    public long capacity() { return capacity; }
+
+    public long keys() { return keys; }
+
+    public long bytes() { return bits.capacity(); }
+
+    // past twice its capacity the filter lets most unknown codes through
+    public boolean overfull() { return keys > 2 * capacity; }
+
+    // --=== [Image file] ===--
+    // Header (64 bytes): magic, bit-array bytes, capacity, keys, caller tag,
+    // followed by the bits.
+    private static final long MAGIC = 0x314d4f4f4c42444bL; // "KDBLOOM1"
+    private static final int HEADER = 64;
+
+    public void write(Path file, long tag) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(MAGIC).putLong(bits.capacity()).putLong(capacity).putLong(keys).putLong(tag).clear();
+            while (header.hasRemaining()) ch.write(header);
+            ByteBuffer src = bits.duplicate().clear();
+            while (src.hasRemaining()) ch.write(src);
+            ch.force(true);
+        }
+    }
+
+    // Maps an image copy-on-write. Returns null when the file is missing,
+    // invalid or was written for another tag.
+    public static CouponFilter map(Path file, long tag) throws IOException {
+        if (!Files.exists(file)) return null;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (ch.size() < HEADER) return null;
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && ch.read(header) >= 0) { }
+            header.flip();
+            if (header.getLong() != MAGIC) return null;
+            long size = header.getLong(), capacity = header.getLong(), keys = header.getLong();
+            if (header.getLong() != tag) return null;
+            long blocks = size / BLOCK_BYTES;
+            if (size % BLOCK_BYTES != 0 || Long.bitCount(blocks) != 1 || blocks > MAX_BLOCKS || ch.size() != HEADER + size) return null;
+            ByteBuffer bits = ch.map(FileChannel.MapMode.PRIVATE, HEADER, size).order(ByteOrder.LITTLE_ENDIAN);
+            return new CouponFilter(bits, capacity, keys);
+        }
+    }
+}
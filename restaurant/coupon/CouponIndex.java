@@ -0,0 +1,329 @@
+package restaurant.coupon;
+
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.function.Consumer;
+
+import restaurant.util.Hash;
+import restaurant.util.Metrics;
+
+// --=== [Off-heap coupon index] ===--
+// Open-addressing table (linear probing) in direct ByteBuffers. One slot is
+// 40 bytes: the 32-byte SHA-256 digest of the coupon followed by one word
+// holding a 2-bit state and the 62-bit value. Lookups and redeems never lock:
+// a slot becomes visible through a release-store of its word, and a redeem is
+// a compare-and-set of LIVE -> REDEEMED, so each coupon is spent once.
+// Inserts and growth are serialized on one lock; a lookup that meets a slot
+// already moved by a growth follows it into the bigger table.
+//
+// The table can be written out as a snapshot image and mapped back
+// copy-on-write, so a restart does not re-insert every coupon.
+public final class CouponIndex {
+
+    public static final long NOT_FOUND = -1L;
+    public static final int KEY_BYTES = 32;
+
+    // little-endian everywhere so snapshot images are portable
+    private static final VarHandle WORD = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle KEY = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final int SLOT_BYTES = KEY_BYTES + 8;
+    private static final int MAX_SEGMENT_SHIFT = 20;   // 1M slots (40 MB) per buffer
+    private static final double MAX_LOAD = 0.75;
+
+    private static final long STATE_MASK = 3L << 62;
+    private static final long VALUE_MASK = ~STATE_MASK;
+    private static final long EMPTY = 0L;
+    private static final long LIVE = 1L << 62;
+    private static final long REDEEMED = 2L << 62;
+    private static final long MOVED = 3L << 62;        // slot copied to a bigger table
+
+    private static final class Table {
+        final ByteBuffer[] segments;
+        final long mask;
+        final int segmentShift;
+        final int segmentMask;
+        volatile Table next;   // the bigger table, set before the first slot is MOVED
+
+        // allocate=false leaves the segments to the caller (mapped snapshot)
+        Table(long capacity, boolean allocate) {
+            mask = capacity - 1;
+            segmentShift = Math.min(Long.numberOfTrailingZeros(capacity), MAX_SEGMENT_SHIFT);
+            segmentMask = (1 << segmentShift) - 1;
+            segments = new ByteBuffer[(int) (capacity >>> segmentShift)];
+            if (!allocate) return;
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = ByteBuffer.allocateDirect(segmentBytes()).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+
+        int segmentBytes() { return (1 << segmentShift) * SLOT_BYTES; }
+
+        long capacity() { return mask + 1; }
+        ByteBuffer segment(long slot) { return segments[(int) (slot >>> segmentShift)]; }
+        int offset(long slot) { return (int) (slot & segmentMask) * SLOT_BYTES; }
+    }
+
+    private volatile Table table;
+    private final Object writeLock = new Object();
+    private long size;  // guarded by writeLock
+    private long snapshotTag = -1;
+
+    public CouponIndex(long expected) {
+        table = new Table(capacityFor(Math.max(expected, 16)), true);
+    }
+
+    private CouponIndex(Table t, long size) {
+        table = t;
+        this.size = size;
+    }
+
+    private static long capacityFor(long entries) {
+        long needed = (long) Math.ceil(entries / MAX_LOAD);
+        return Long.highestOneBit(needed - 1) << 1;
+    }
+
+    // --=== [Lookups] ===--
+    public long get(String hex) { return get(Hash.unhex(hex)); }
+
+    public long get(byte[] digest) {
+        if (digest == null || digest.length != KEY_BYTES) return NOT_FOUND;
+        Table t = table;
+        while (true) {
+            long slot = find(t, digest);
+            if (slot < 0) return NOT_FOUND;
+            long w = (long) WORD.getAcquire(t.segment(slot), t.offset(slot) + KEY_BYTES);
+            if ((w & STATE_MASK) == MOVED) { t = t.next; continue; }
+            return (w & STATE_MASK) == LIVE ? w & VALUE_MASK : NOT_FOUND;
+        }
+    }
+
+    public boolean contains(String hex) { return get(hex) != NOT_FOUND; }
+
+    // --=== [One-time redeem] ===--
+    // Returns the coupon value, or NOT_FOUND when unknown or already redeemed.
+    public long redeem(String hex) { return redeem(Hash.unhex(hex)); }
+
+    public long redeem(byte[] digest) { return swapState(digest, LIVE, REDEEMED); }
+
+    // Undo a redeem whose payment did not go through.
+    public boolean release(String hex) { return release(Hash.unhex(hex)); }
+
+    public boolean release(byte[] digest) { return swapState(digest, REDEEMED, LIVE) != NOT_FOUND; }
+
+    private long swapState(byte[] digest, long from, long to) {
+        if (digest == null || digest.length != KEY_BYTES) return NOT_FOUND;
+        Table t = table;
+        while (true) {
+            long slot = find(t, digest);
+            if (slot < 0) return NOT_FOUND;
+            ByteBuffer seg = t.segment(slot);
+            int at = t.offset(slot) + KEY_BYTES;
+            long w = (long) WORD.getAcquire(seg, at);
+            long state = w & STATE_MASK;
+            if (state == MOVED) { t = t.next; continue; }
+            if (state != from) return NOT_FOUND;
+            if (WORD.compareAndSet(seg, at, w, (w & VALUE_MASK) | to)) return w & VALUE_MASK;
+        }
+    }
+
+    // --=== [Insert] ===--
+    // Adds a coupon or replaces the value of a live one. Returns false for a
+    // malformed hash.
+    public boolean put(String hex, long value) { return put(Hash.unhex(hex), value); }
+
+    public boolean put(byte[] digest, long value) {
+        if (digest == null || digest.length != KEY_BYTES || value < 0) return false;
+        synchronized (writeLock) {
+            if (size + 1 > table.capacity() * MAX_LOAD) grow();
+            Table t = table;
+            long slot = find(t, digest);
+            if (slot >= 0) {
+                ByteBuffer seg = t.segment(slot);
+                int at = t.offset(slot) + KEY_BYTES;
+                while (true) {
+                    long w = (long) WORD.getAcquire(seg, at);
+                    if ((w & STATE_MASK) != LIVE) return true;
+                    if (WORD.compareAndSet(seg, at, w, LIVE | value)) return true;
+                }
+            }
+            insert(t, digest, LIVE | value);
+            size++;
+            return true;
+        }
+    }
+
+    public long size() { synchronized (writeLock) { return size; } }
+
+    // Calls action with the digest (a reused array) of every live coupon.
+    // Runs next to changes: a coupon that is live throughout is always seen.
+    public void forEachLive(Consumer<byte[]> action) {
+        byte[] key = new byte[KEY_BYTES];
+        Table t = table;
+        for (long slot = 0; slot <= t.mask; slot++) {
+            ByteBuffer seg = t.segment(slot);
+            int off = t.offset(slot);
+            long w = (long) WORD.getAcquire(seg, off + KEY_BYTES);
+            if ((w & STATE_MASK) == MOVED) { awaitSwap(t); t = table; slot = -1; continue; }
+            if ((w & STATE_MASK) != LIVE) continue;
+            seg.get(off, key);
+            action.accept(key);
+        }
+    }
+
+    public long capacity() { return table.capacity(); }
+
+    // --=== [Probing] ===--
+    // Returns the slot holding digest, or -1 when an empty slot is reached first.
+    private static long find(Table t, byte[] digest) {
+        long k0 = longAt(digest, 0), k1 = longAt(digest, 8), k2 = longAt(digest, 16), k3 = longAt(digest, 24);
+        long slot = k0 & t.mask;
+        for (long n = 0; n <= t.mask; n++, slot = (slot + 1) & t.mask) {
+            ByteBuffer seg = t.segment(slot);
+            int off = t.offset(slot);
+            long w = (long) WORD.getAcquire(seg, off + KEY_BYTES);
+            if (w == EMPTY) return -1;
+            if (seg.getLong(off) == k0 && seg.getLong(off + 8) == k1
+                    && seg.getLong(off + 16) == k2 && seg.getLong(off + 24) == k3) return slot;
+        }
+        return -1;
+    }
+
+    // Returns the slot it used.
+    private static long insert(Table t, byte[] digest, long word) {
+        long k0 = longAt(digest, 0);
+        long slot = k0 & t.mask;
+        while ((long) WORD.getAcquire(t.segment(slot), t.offset(slot) + KEY_BYTES) != EMPTY) slot = (slot + 1) & t.mask;
+        ByteBuffer seg = t.segment(slot);
+        int off = t.offset(slot);
+        seg.putLong(off, k0);
+        seg.putLong(off + 8, longAt(digest, 8));
+        seg.putLong(off + 16, longAt(digest, 16));
+        seg.putLong(off + 24, longAt(digest, 24));
+        WORD.setRelease(seg, off + KEY_BYTES, word);
+        return slot;
+    }
+
+    // Copies every slot into a table twice as big. Each coupon is written to the
+    // new table first and its old slot then flipped to MOVED with a CAS, so a
+    // concurrent redeem either lands before the flip (and the copy is redone)
+    // or finds the coupon in the new table; nobody waits for the whole copy.
+    private void grow() {
+        Table old = table;
+        Table next = new Table(old.capacity() << 1, true);
+        old.next = next;
+        byte[] key = new byte[KEY_BYTES];
+        for (long slot = 0; slot <= old.mask; slot++) {
+            ByteBuffer seg = old.segment(slot);
+            int off = old.offset(slot);
+            long w = (long) WORD.getAcquire(seg, off + KEY_BYTES);
+            if (w == EMPTY) continue;
+            seg.get(off, key);
+            long moved = insert(next, key, w);
+            // until the flip nobody looks for this coupon in next
+            while (!WORD.compareAndSet(seg, off + KEY_BYTES, w, MOVED)) {
+                w = (long) WORD.getAcquire(seg, off + KEY_BYTES);
+                WORD.setRelease(next.segment(moved), next.offset(moved) + KEY_BYTES, w);
+            }
+        }
+        table = next;
+    }
+
+    // forEachLive needs the whole table at once, so it waits for the growth to finish
+    private void awaitSwap(Table t) { while (table == t) Thread.onSpinWait(); }
+
+    private static long longAt(byte[] b, int i) {
+        return (long) KEY.get(b, i);
+    }
+
+    // --=== [Snapshot image] ===--
+    // Header (64 bytes): magic, capacity, size, caller tag (e.g. log generation),
+    // followed by the raw slots. Inserts wait only while the slots are copied
+    // to memory; the write and the fsync run after the lock is released.
+    // Lookups and redeems keep running, and any redeem racing with the copy
+    // must be covered by the caller's log from the tag onwards.
+    private static final long SNAPSHOT_MAGIC = 0x314e4f50554b444bL; // "KDKUPON1"
+    private static final int SNAPSHOT_HEADER = 64;
+
+    public void writeSnapshot(Path file, long tag) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer[] copy;
+        synchronized (writeLock) {
+            Table t = table;
+            header.putLong(SNAPSHOT_MAGIC).putLong(t.capacity()).putLong(size).putLong(tag).clear();
+            copy = new ByteBuffer[t.segments.length];
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = ByteBuffer.allocateDirect(t.segmentBytes()).put(t.segments[i].duplicate().clear()).flip();
+            }
+        }
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) ch.write(header);
+            for (ByteBuffer src : copy) {
+                while (src.hasRemaining()) ch.write(src);
+            }
+            ch.force(true);
+        }
+    }
+
+    // Maps a snapshot copy-on-write: pages load on first touch and changes
+    // stay in memory. Returns null when the file is not a valid snapshot.
+    public static CouponIndex mapSnapshot(Path file) throws IOException {
+        // a PRIVATE mapping needs a writable channel, the file itself is never written
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (ch.size() < SNAPSHOT_HEADER) return null;
+            ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && ch.read(header) >= 0) { }
+            header.flip();
+            if (header.getLong() != SNAPSHOT_MAGIC) return null;
+            long capacity = header.getLong(), size = header.getLong(), tag = header.getLong();
+            if (Long.bitCount(capacity) != 1 || ch.size() != SNAPSHOT_HEADER + capacity * SLOT_BYTES) return null;
+
+            Table t = new Table(capacity, false);
+            long pos = SNAPSHOT_HEADER;
+            for (int i = 0; i < t.segments.length; i++, pos += t.segmentBytes()) {
+                t.segments[i] = ch.map(FileChannel.MapMode.PRIVATE, pos, t.segmentBytes()).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            CouponIndex idx = new CouponIndex(t, size);
+            idx.snapshotTag = tag;
+            return idx;
+        }
+    }
+
+    // tag passed to writeSnapshot, or -1 for an index not loaded from a snapshot
+    public long snapshotTag() { return snapshotTag; }
+
+    // tag of the snapshot file without mapping it, -1 when missing or invalid
+    public static long snapshotTag(Path file) throws IOException {
+        if (!Files.exists(file)) return -1;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && ch.read(header) >= 0) { }
+            return header.position() == SNAPSHOT_HEADER && header.getLong(0) == SNAPSHOT_MAGIC ? header.getLong(24) : -1;
+        }
+    }
+
+    // --=== [Load from coupons.txt] ===--
+    public static CouponIndex load(File f) {
+        // ~71 bytes per "hash,value" line
+        CouponIndex idx = new CouponIndex(f.exists() ? f.length() / 70 + 1 : 16);
+        if (!f.exists()) return idx;
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                int comma = line.indexOf(',');
+                if (comma < 0) continue;
+                idx.put(line.substring(0, comma), Long.parseLong(line.substring(comma + 1).trim()));
+            }
+        } catch (Exception e) { Metrics.failure("io.failures.coupon_load", "Gagal membaca file kupon: " + e.getMessage()); }
+        return idx;
+    }
+}
@@ -0,0 +1,618 @@
+package restaurant.coupon;
+
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+import restaurant.util.Hash;
+import restaurant.util.LatencyHistogram;
+import restaurant.util.Metrics;
+import restaurant.util.RegionLocks;
+
+// --=== [Coupon persistence: append-only log + snapshots] ===--
+// Every issue/redeem/release is appended to kupon-<gen>.log as a fixed
+// 45-byte record (type, digest, value, CRC32). compact() starts a new log
+// generation and writes the in-memory index to kupon.snap tagged with that
+// generation; older logs are then deleted. Startup maps kupon.snap and only
+// replays the logs written after it, so start time depends on the log tail,
+// not on the whole coupon history.
+//
+// Several terminals may open the same directory. They share kupon.lock: its
+// first page holds the current log generation and a version that every
+// append bumps, and past it each of 256 stripes (by the digest's first byte)
+// has a lock byte. A change takes its stripe's lock, catches up with what the
+// other processes appended, checks the coupon and appends, so a coupon is
+// spent once across all of them while changes to different stripes never
+// wait for each other. Readers only catch up when the version moved.
+//
+// A CouponFilter sits in front of the index: lookups and redeems of a code it
+// has never seen stop there, without touching the (mapped) index or taking a
+// lock. It is fed by the same records as the index and saved as kupon.bloom
+// by every compaction.
+public class CouponStore implements Closeable {
+
+    public static final byte ISSUE = 1, REDEEM = 2, RELEASE = 3;
+    public static final int RECORD_BYTES = 1 + CouponIndex.KEY_BYTES + 8 + 4;
+
+    // records in the current log before compact() runs in the background
+    public static final long COMPACT_EVERY = 1_000_000L;
+
+    static final int STRIPES = 256;
+    private static final int SHARED_BYTES = 4096;
+    private static final int GEN_AT = 0, VERSION_AT = 8;
+    private static final VarHandle SHARED = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final LongAdder HITS = Metrics.counter("coupons.hit");
+    private static final LongAdder MISSES = Metrics.counter("coupons.miss");
+    private static final LongAdder REDEEMED = Metrics.counter("coupons.redeemed");
+    private static final LongAdder REDEEM_MISSES = Metrics.counter("coupons.redeem_miss");
+    private static final LongAdder FILTERED = Metrics.counter("coupons.filtered");
+    private static final LatencyHistogram APPEND_TIME = Metrics.latency("io.kupon.append");
+
+    private static final String SNAPSHOT = "kupon.snap";
+    private static final String FILTER = "kupon.bloom";
+    private static final String LOCKS = "kupon.lock";
+
+    private final Path dir;
+    private final boolean fsync;
+    private final FileChannel lockFile;
+    private final MappedByteBuffer shared;
+    private final RegionLocks locks;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer chunk = ByteBuffer.allocate(RECORD_BYTES * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    private final byte[] digest = new byte[CouponIndex.KEY_BYTES];
+    private final CRC32 crc = new CRC32();
+    private final Object logLock = new Object();
+    private volatile CouponIndex index;
+    private volatile CouponFilter filter;   // every live coupon of index, plus some spent ones
+    private FileChannel log;     // guarded by logLock, appends to the current generation
+    private FileChannel tail;    // guarded by logLock, reads the same file back
+    private long generation;     // guarded by logLock
+    private long applied;        // guarded by logLock, bytes of the current log in the index
+    private long badAt = -1;     // guarded by logLock, last corrupt record reported
+    private volatile long seenVersion;
+    private volatile boolean compacting;
+
+    private CouponStore(Path dir, boolean fsync, FileChannel lockFile, MappedByteBuffer shared, RegionLocks locks, Loaded l) throws IOException {
+        this.dir = dir;
+        this.fsync = fsync;
+        this.lockFile = lockFile;
+        this.shared = shared;
+        this.locks = locks;
+        this.index = l.index;
+        this.filter = l.filter;
+        this.generation = l.generation;
+        this.applied = l.applied;
+        this.log = openLog(generation);
+        this.tail = FileChannel.open(dir.resolve(logName(generation)), StandardOpenOption.READ);
+        this.seenVersion = (long) SHARED.getVolatile(shared, VERSION_AT);
+    }
+
+    // --=== [Open: snapshot + log tail] ===--
+    // fsync=true forces every record to disk before the call returns.
+    public static CouponStore open(Path dir, boolean fsync) throws IOException {
+        Files.createDirectories(dir);
+        FileChannel lockFile = FileChannel.open(dir.resolve(LOCKS), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer shared = lockFile.map(FileChannel.MapMode.READ_WRITE, 0, SHARED_BYTES);
+            RegionLocks locks = new RegionLocks(lockFile, SHARED_BYTES, STRIPES, "kupon");
+            // no other terminal appends while the tail is checked, so a torn one can be cut off
+            try (RegionLocks.Held all = locks.lockAll()) {
+                Loaded l = load(dir, (long) SHARED.getVolatile(shared, GEN_AT), true);
+                SHARED.setVolatile(shared, GEN_AT, l.generation);
+                return new CouponStore(dir, fsync, lockFile, shared, locks, l);
+            }
+        } catch (IOException | RuntimeException e) {
+            lockFile.close();
+            throw e;
+        }
+    }
+
+    private static final class Loaded {
+        final CouponIndex index; final CouponFilter filter; final long generation, applied;
+        Loaded(CouponIndex index, CouponFilter filter, long generation, long applied) {
+            this.index = index; this.filter = filter; this.generation = generation; this.applied = applied;
+        }
+    }
+
+    // Snapshot plus every later log. Another terminal may swap the snapshot and
+    // delete the logs it covers meanwhile; a missing log means start over. The
+    // filter image is used when it was written with this snapshot, otherwise
+    // the filter is rebuilt from the index.
+    private static Loaded load(Path dir, long minGeneration, boolean repair) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            Path snap = dir.resolve(SNAPSHOT);
+            CouponIndex index = Files.exists(snap) ? CouponIndex.mapSnapshot(snap) : null;
+            if (index == null) index = new CouponIndex(16);
+            long tag = index.snapshotTag();
+            CouponFilter filter = tag < 0 ? null : CouponFilter.map(dir.resolve(FILTER), tag);
+
+            long[] gens = logGenerations(dir);
+            long generation = Math.max(Math.max(tag + 1, minGeneration), gens.length == 0 ? 0 : gens[gens.length - 1]);
+            long applied = 0, expect = tag + 1;
+            try {
+                for (long g : gens) {
+                    if (g <= tag) continue;
+                    if (g != expect++) throw new NoSuchFileException(logName(expect - 1));
+                    long n = replay(dir.resolve(logName(g)), index, filter, repair);
+                    if (g == generation) applied = n;
+                }
+            } catch (NoSuchFileException e) {
+                if (attempt < 10) continue;
+                throw e;
+            }
+            if (filter == null || filter.overfull()) filter = CouponFilter.of(index);
+            return new Loaded(index, filter, generation, applied);
+        }
+    }
+
+    // Applies every complete record and returns the bytes read; with repair a
+    // torn tail from a crash is cut off. index or filter may be null.
+    private static long replay(Path file, CouponIndex index, CouponFilter filter, boolean repair) throws IOException {
+        try (FileChannel ch = repair ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                                     : FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size == 0) return 0;
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            byte[] digest = new byte[CouponIndex.KEY_BYTES];
+            CRC32 crc = new CRC32();
+            long good = 0;
+            while (buf.remaining() >= RECORD_BYTES) {
+                int start = buf.position();
+                crc.reset();
+                crc.update(buf.slice(start, RECORD_BYTES - 4));
+                byte type = buf.get();
+                buf.get(digest);
+                long value = buf.getLong();
+                if (buf.getInt() != (int) crc.getValue()) break;
+                apply(index, filter, type, digest, value);
+                good += RECORD_BYTES;
+            }
+            if (repair && good < size) {
+                Metrics.failure("io.failures.coupon_torn", "Log kupon " + file.getFileName() + " terpotong, " + (size - good) + " byte dibuang");
+                ch.truncate(good);
+            }
+            return good;
+        }
+    }
+
+    // the filter learns a coupon before the index, so it never hides a live one
+    private static void apply(CouponIndex index, CouponFilter filter, byte type, byte[] digest, long value) {
+        if (filter != null && type != REDEEM) filter.add(digest);
+        if (index == null) return;
+        if (type == ISSUE) index.put(digest, value);
+        else if (type == REDEEM) index.redeem(digest);
+        else if (type == RELEASE) index.release(digest);
+    }
+
+    // --=== [Following the other terminals] ===--
+    // Folds everything appended since the last call into the index, moving on
+    // to newer generations when another terminal compacted. Caller holds logLock.
+    private void catchUp() throws IOException {
+        long version = (long) SHARED.getVolatile(shared, VERSION_AT);
+        long gen = (long) SHARED.getVolatile(shared, GEN_AT);
+        while (true) {
+            follow();
+            if (generation >= gen) break;
+            // the compaction held every stripe, so this log is complete
+            FileChannel next;
+            try { next = FileChannel.open(dir.resolve(logName(generation + 1)), StandardOpenOption.READ); }
+            catch (NoSuchFileException e) { reload(gen); break; }
+            closeLogs();
+            generation++;
+            tail = next;
+            applied = 0;
+            log = openLog(generation);
+        }
+        seenVersion = version;
+        // many issues since the last compaction: resize before the filter stops filtering
+        if (filter.overfull()) filter = CouponFilter.of(index);
+    }
+
+    private void follow() throws IOException {
+        long size = tail.size();
+        while (size - applied >= RECORD_BYTES) {
+            chunk.clear().limit((int) Math.min(chunk.capacity(), (size - applied) / RECORD_BYTES * RECORD_BYTES));
+            while (chunk.hasRemaining() && tail.read(chunk, applied + chunk.position()) > 0) { }
+            chunk.flip();
+            while (chunk.remaining() >= RECORD_BYTES) {
+                int start = chunk.position();
+                crc.reset();
+                crc.update(chunk.array(), start, RECORD_BYTES - 4);
+                byte type = chunk.get();
+                chunk.get(digest);
+                long value = chunk.getLong();
+                if (chunk.getInt() != (int) crc.getValue()) {
+                    if (badAt != applied) Metrics.failure("io.failures.coupon_torn", "Record kupon rusak di " + logName(generation) + " posisi " + applied);
+                    badAt = applied;
+                    return;
+                }
+                apply(index, filter, type, digest, value);
+                applied += RECORD_BYTES;
+            }
+        }
+    }
+
+    // more than one compaction went by and the logs in between are gone
+    private void reload(long minGeneration) throws IOException {
+        Loaded l = load(dir, minGeneration, false);
+        closeLogs();
+        index = l.index;
+        filter = l.filter;
+        generation = l.generation;
+        applied = l.applied;
+        log = openLog(generation);
+        tail = FileChannel.open(dir.resolve(logName(generation)), StandardOpenOption.READ);
+    }
+
+    private void closeLogs() throws IOException {
+        log.force(false);
+        log.close();
+        tail.close();
+    }
+
+    private void refresh() {
+        if ((long) SHARED.getVolatile(shared, VERSION_AT) == seenVersion) return;
+        synchronized (logLock) {
+            try { catchUp(); }
+            catch (IOException e) { Metrics.failure("io.failures.coupon_follow", "Gagal membaca log kupon: " + e.getMessage()); }
+        }
+    }
+
+    // --=== [Operations] ===--
+    public long get(String hex) {
+        refresh();
+        byte[] digest = Hash.unhex(hex);
+        long v = mayExist(digest) ? index.get(digest) : CouponIndex.NOT_FOUND;
+        (v == CouponIndex.NOT_FOUND ? MISSES : HITS).increment();
+        return v;
+    }
+
+    public boolean contains(String hex) {
+        refresh();
+        byte[] digest = Hash.unhex(hex);
+        return mayExist(digest) && index.get(digest) != CouponIndex.NOT_FOUND;
+    }
+
+    // false: surely no live coupon, decided from the filter alone
+    private boolean mayExist(byte[] digest) {
+        if (digest == null || digest.length != CouponIndex.KEY_BYTES) return false;
+        if (filter.mightContain(digest)) return true;
+        FILTERED.increment();
+        return false;
+    }
+
+    public long size() { refresh(); return index.size(); }
+
+    public boolean issue(String hex, long value) throws IOException {
+        byte[] digest = Hash.unhex(hex);
+        if (digest == null || digest.length != CouponIndex.KEY_BYTES || value < 0) return false;
+        change(ISSUE, digest, value);
+        return true;
+    }
+
+    // Returns the coupon value, or CouponIndex.NOT_FOUND when unknown or already spent.
+    public long redeem(String hex) throws IOException {
+        byte[] digest = Hash.unhex(hex);
+        refresh();
+        long v = mayExist(digest) ? change(REDEEM, digest, 0) : CouponIndex.NOT_FOUND;
+        (v == CouponIndex.NOT_FOUND ? REDEEM_MISSES : REDEEMED).increment();
+        return v;
+    }
+
+    public boolean release(String hex) throws IOException {
+        byte[] digest = Hash.unhex(hex);
+        if (digest == null || digest.length != CouponIndex.KEY_BYTES) return false;
+        return change(RELEASE, digest, 0) != CouponIndex.NOT_FOUND;
+    }
+
+    // Under the stripe lock nobody else can touch this coupon, so after
+    // catching up the index is the truth for it. A redeem or release changes
+    // the index before its record is appended (the swap decides whether there
+    // is anything to log) and is swapped back when the append fails; an issue
+    // is appended first, so a failed one leaves nothing to undo. Either way
+    // reading our own record back is a no-op, and compact() relies on it so
+    // that a change racing with a snapshot always lands in the new log. The
+    // fsync runs after the locks are released: a redeem lost in a crash was
+    // never paid for either, since Checkout journals the payment only after
+    // redeem() returns.
+    private long change(byte type, byte[] digest, long value) throws IOException {
+        FileChannel written;
+        long result, gen;
+        boolean compactNow;
+        try (RegionLocks.Held h = locks.lock(digest[0] & (STRIPES - 1))) {
+            synchronized (logLock) {
+                catchUp();
+                CouponIndex idx = index;
+                if (type != REDEEM) filter.add(digest);
+                if (type == ISSUE) result = value;
+                else if (type == REDEEM) result = idx.redeem(digest);
+                else result = idx.release(digest) ? 0 : CouponIndex.NOT_FOUND;
+                if (result == CouponIndex.NOT_FOUND) return result;
+
+                long t = System.nanoTime();
+                fill(type, digest, value);
+                try {
+                    while (record.hasRemaining()) log.write(record);
+                } catch (IOException e) {
+                    cutTorn();
+                    if (type == REDEEM) idx.release(digest);
+                    else if (type == RELEASE) idx.redeem(digest);
+                    throw e;
+                }
+                if (type == ISSUE) idx.put(digest, value);
+                long version = (long) SHARED.getAndAdd(shared, VERSION_AT, 1L) + 1;
+                follow();
+                seenVersion = version;
+                APPEND_TIME.record(System.nanoTime() - t);
+                written = log;
+                gen = generation;
+                compactNow = applied / RECORD_BYTES >= COMPACT_EVERY && !compacting;
+                if (compactNow) compacting = true;
+            }
+        }
+        if (fsync) {
+            try { written.force(false); }
+            catch (ClosedChannelException e) { /* a generation switch forced it before closing */ }
+        }
+        if (compactNow) {
+            Thread t = new Thread(() -> {
+                try { compact(gen); }
+                catch (IOException e) { Metrics.failure("io.failures.coupon_compact", "Gagal kompaksi kupon: " + e.getMessage()); }
+            }, "kupon-compact");
+            t.setDaemon(true);
+            t.start();
+        }
+        return result;
+    }
+
+    // A failed append may leave the front of the record at the end of the log;
+    // every later record would then sit off the RECORD_BYTES grid, and the
+    // other terminals would stop following at it. Cut it off, if it is still
+    // the last thing in the file. Caller holds logLock.
+    private void cutTorn() {
+        int written = record.position();
+        if (written == 0) return;
+        try {
+            long start = log.size() - written;
+            ByteBuffer back = ByteBuffer.allocate(written);
+            while (back.hasRemaining() && tail.read(back, start + back.position()) > 0) { }
+            if (start >= applied && Arrays.equals(back.array(), 0, written, record.array(), 0, written)) log.truncate(start);
+            else Metrics.failure("io.failures.coupon_torn", "Record kupon terpotong di " + logName(generation) + " posisi " + start + " tidak bisa dibuang");
+        } catch (IOException e) {
+            Metrics.failure("io.failures.coupon_torn", "Gagal membuang record kupon terpotong: " + e.getMessage());
+        }
+    }
+
+    private void fill(byte type, byte[] digest, long value) {
+        record.clear();
+        record.put(type).put(digest).putLong(value);
+        crc.reset();
+        crc.update(record.array(), 0, RECORD_BYTES - 4);
+        record.putInt((int) crc.getValue());
+        record.flip();
+    }
+
+    // --=== [Compaction] ===--
+    public void compact() throws IOException { compact(-1); }
+
+    // `expect` >= 0: only if the log is still that generation (another terminal may have been first)
+    private void compact(long expect) throws IOException {
+        compacting = true;
+        try {
+            long covered;
+            try (RegionLocks.Held all = locks.lockAll()) {
+                synchronized (logLock) {
+                    catchUp();
+                    if (expect >= 0 && generation != expect) return;
+                    covered = generation;
+                    closeLogs();
+                    generation++;
+                    log = openLog(generation);
+                    tail = FileChannel.open(dir.resolve(logName(generation)), StandardOpenOption.READ);
+                    applied = 0;
+                    SHARED.setVolatile(shared, GEN_AT, generation);
+                    seenVersion = (long) SHARED.getAndAdd(shared, VERSION_AT, 1L) + 1;
+                }
+            }
+            Path tmp = dir.resolve(SNAPSHOT + "." + covered + ".tmp");
+            Path filterTmp = dir.resolve(FILTER + "." + covered + ".tmp");
+            index.writeSnapshot(tmp, covered);
+            // built after the snapshot: anything that left the live set since is in the new log
+            CouponFilter fresh = CouponFilter.of(index);
+            fresh.write(filterTmp, covered);
+            // a later compaction in another terminal may have finished first
+            try (RegionLocks.Held all = locks.lockAll()) {
+                if (CouponIndex.snapshotTag(dir.resolve(SNAPSHOT)) >= covered) { Files.delete(tmp); Files.delete(filterTmp); return; }
+                Files.move(tmp, dir.resolve(SNAPSHOT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Files.move(filterTmp, dir.resolve(FILTER), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                for (long g : logGenerations(dir)) {
+                    if (g > covered) continue;
+                    // still open in another terminal on some systems; a later compaction retries
+                    try { Files.deleteIfExists(dir.resolve(logName(g))); } catch (FileSystemException ignored) { }
+                }
+            }
+            // switch to the fresh filter (spent codes dropped) once it has the new log too
+            synchronized (logLock) {
+                catchUp();
+                if (generation == covered + 1) {
+                    replay(dir.resolve(logName(generation)), null, fresh, false);
+                    filter = fresh;
+                }
+            }
+        } finally {
+            compacting = false;
+        }
+    }
+
+    // --=== [Import coupons.txt] ===--
+    // One ISSUE record per "hash,value" line, written as one batch while every
+    // stripe is held.
+    public long importText(File f) throws IOException {
+        long n = 0;
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8));
+             RegionLocks.Held all = locks.lockAll()) {
+            String line;
+            synchronized (logLock) {
+                catchUp();
+                ByteBuffer batch = ByteBuffer.allocate(RECORD_BYTES * 4096).order(ByteOrder.LITTLE_ENDIAN);
+                while ((line = r.readLine()) != null) {
+                    line = line.trim();
+                    int comma = line.indexOf(',');
+                    if (comma < 0) continue;
+                    byte[] digest = Hash.unhex(line.substring(0, comma));
+                    long value;
+                    try { value = Long.parseLong(line.substring(comma + 1).trim()); } catch (NumberFormatException e) { continue; }
+                    if (digest == null || digest.length != CouponIndex.KEY_BYTES) continue;
+                    filter.add(digest);
+                    if (!index.put(digest, value)) continue;
+                    fill(ISSUE, digest, value);
+                    if (batch.remaining() < RECORD_BYTES) { batch.flip(); while (batch.hasRemaining()) log.write(batch); batch.clear(); }
+                    batch.put(record);
+                    n++;
+                }
+                batch.flip();
+                while (batch.hasRemaining()) log.write(batch);
+                log.force(false);
+                // nobody else appended meanwhile, so the rest of the log is ours and already applied
+                applied = tail.size();
+                seenVersion = (long) SHARED.getAndAdd(shared, VERSION_AT, n) + n;
+                if (filter.overfull()) filter = CouponFilter.of(index);
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (logLock) {
+            closeLogs();
+        }
+        lockFile.close();
+    }
+
+    // --=== [Reading the logs offline] ===--
+    // For jobs like the settlement: the logs still in dir (compaction deletes
+    // the older ones) and their records. Records have a fixed size, so a log
+    // can be read in parallel in RECORD_BYTES-aligned ranges.
+    public interface LogVisitor {
+        void accept(byte type, byte[] digest, long value);   // digest is reused between calls
+    }
+
+    public static List<Path> logFiles(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return files;
+        for (long g : logGenerations(dir)) files.add(dir.resolve(logName(g)));
+        return files;
+    }
+
+    // Records in [from, to) up to the first damaged one; returns how many were read.
+    public static long readLog(Path file, long from, long to, LogVisitor v) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            to = Math.min(to, ch.size());
+            if (to <= from) return 0;
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            byte[] digest = new byte[CouponIndex.KEY_BYTES];
+            CRC32 crc = new CRC32();
+            long n = 0;
+            while (buf.remaining() >= RECORD_BYTES) {
+                int start = buf.position();
+                crc.reset();
+                crc.update(buf.slice(start, RECORD_BYTES - 4));
+                byte type = buf.get();
+                buf.get(digest);
+                long value = buf.getLong();
+                if (buf.getInt() != (int) crc.getValue()) break;
+                v.accept(type, digest, value);
+                n++;
+            }
+            return n;
+        }
+    }
+
+    // --=== [Files] ===--
+    private FileChannel openLog(long gen) throws IOException {
+        return FileChannel.open(dir.resolve(logName(gen)), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static String logName(long gen) { return String.format("kupon-%08d.log", gen); }
+
+    private static long[] logGenerations(Path dir) throws IOException {
+        List<Long> gens = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "kupon-*.log")) {
+            for (Path p : ds) {
+                String n = p.getFileName().toString();
+                try { gens.add(Long.parseLong(n.substring(6, n.length() - 4))); } catch (NumberFormatException ignored) { }
+            }
+        }
+        return gens.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    // --=== [Open the store, importing coupons.txt the first time] ===--
+    // The import goes into a directory of its own that is renamed into place
+    // when complete, so an interrupted one is simply done again next time. Of
+    // two terminals importing at once, the first rename wins.
+    public static CouponStore openOrImport(Path dir, File legacyText) {
+        return openOrImport(dir, legacyText, true);
+    }
+
+    public static CouponStore openOrImport(Path dir, File legacyText, boolean fsync) {
+        try {
+            if (!Files.exists(dir) && legacyText.exists()) {
+                Path tmp = dir.resolveSibling(dir.getFileName() + ".import-" + ProcessHandle.current().pid());
+                deleteTree(tmp);
+                long n;
+                try (CouponStore store = open(tmp, fsync)) { n = store.importText(legacyText); }
+                try {
+                    Files.move(tmp, dir, StandardCopyOption.ATOMIC_MOVE);
+                    System.out.println("🎟 " + n + " kupon diimpor dari " + legacyText.getName());
+                } catch (IOException e) {
+                    if (!Files.exists(dir)) throw e;
+                    deleteTree(tmp);   // another terminal finished first
+                }
+            }
+            return open(dir, fsync);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Gagal membuka penyimpanan kupon: " + e.getMessage(), e);
+        }
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root)) return;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(root)) {
+            for (Path p : ds) Files.delete(p);
+        }
+        Files.delete(root);
+    }
+
+    // java -cp class restaurant.coupon.CouponStore import coupons.txt [dir]
+    // java -cp class restaurant.coupon.CouponStore compact [dir]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Pemakaian: CouponStore import <coupons.txt> [dir] | compact [dir]");
+            return;
+        }
+        boolean imp = args[0].equals("import");
+        Path dir = Paths.get(args.length > (imp ? 2 : 1) ? args[imp ? 2 : 1] : "kupon");
+        long start = System.nanoTime();
+        try (CouponStore store = open(dir, false)) {
+            System.out.printf("Dibuka: %,d kupon dalam %,d ms (filter %,d KB)\n", store.size(), (System.nanoTime() - start) / 1_000_000,
+                    store.filter.bytes() / 1024);
+            if (imp) System.out.printf("Diimpor: %,d kupon\n", store.importText(new File(args[1])));
+            store.compact();
+            System.out.printf("Snapshot ditulis: %s\n", dir.resolve(SNAPSHOT));
+        }
+    }
+}
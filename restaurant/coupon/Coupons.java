@@ -0,0 +1,46 @@
+package restaurant.coupon;
+
+import java.util.*;
+import java.io.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import restaurant.util.Hash;
+import restaurant.util.Ids;
+import restaurant.util.Metrics;
+
+public class Coupons {
+
+    public static final long DEFAULT_VALUE = 50_000L;
+
+    // --=== [Load Coupons from coupons.txt (legacy text format)] ===--
+    public static Map<String, Long> loadCoupons(File f) {
+        Map<String, Long> map = new HashMap<>();
+        if (!f.exists()) return map;
+        try (BufferedReader r = new BufferedReader(new FileReader(f))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                String[] parts = line.split(",", 2);
+                if (parts.length == 2) map.put(parts[0], Long.parseLong(parts[1]));
+            }
+        } catch (Exception e) { Metrics.failure("io.failures.coupon_load", "Gagal membaca file kupon: " + e.getMessage()); }
+        return map;
+    }
+
+    // --=== [Generate Single Random Coupon] ===--
+    public static String generateRandomCoupon() {
+        String[] types = {"EMAS", "PERUNGU", "PERAK", "PLATINUM", "DIAMOND", "SAPPHIRE"};
+        Random rnd = ThreadLocalRandom.current();
+        String type = types[rnd.nextInt(types.length)];
+        String raw = type + System.currentTimeMillis() + rnd.nextInt(1000) + "|" + Ids.next();
+        return Hash.sha256(raw);
+    }
+
+    // deterministic variant for replays: same transaction, same coupon, so two runs can be diffed
+    public static String couponFor(String transactionId) {
+        String[] types = {"EMAS", "PERUNGU", "PERAK", "PLATINUM", "DIAMOND", "SAPPHIRE"};
+        return Hash.sha256(types[Math.floorMod(transactionId.hashCode(), types.length)] + "|" + transactionId);
+    }
+}
@@ -0,0 +1,172 @@
+package restaurant.kitchen;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import restaurant.order.Bill;
+import restaurant.util.LatencyHistogram;
+import restaurant.util.Metrics;
+
+// --=== [Kitchen dispatch] ===--
+// A paid order is split into one food and one drink ticket (by the Food /
+// Drink class each line had on the menu the order was priced with) and handed to the stations through one
+// TicketRing each. dispatch() only publishes into the rings, so a till never
+// waits for the kitchen; each station has its own thread that takes whatever
+// is waiting (up to BATCH tickets) and passes the batch to its Sink in order.
+// Payment -> station latency is recorded per station. A station more than
+// capacity + spill tickets behind refuses new ones; dispatch() reports them
+// so the till can tell the cashier, and the payment itself never waits.
+//
+// open() prints tickets to dapur/makanan.txt and dapur/minuman.txt, one
+// line per ticket, for the station screens / printers to follow.
+public final class Kitchen implements Closeable {
+
+    public enum Station { MAKANAN, MINUMAN }
+
+    public interface Sink {
+        void accept(Ticket[] batch, int n) throws IOException;
+    }
+
+    public static final int CAPACITY = 1024;
+    public static final int SPILL = 4 * CAPACITY;
+    public static final int BATCH = 64;
+
+    private static final LongAdder TICKETS = Metrics.counter("kitchen.tickets");
+    private static final LongAdder SPILLED = Metrics.counter("kitchen.spilled");
+    private static final LongAdder REFUSED = Metrics.counter("kitchen.refused");
+
+    private final TicketRing[] rings = new TicketRing[Station.values().length];
+    private final Thread[] stations = new Thread[rings.length];
+    private final LatencyHistogram[] latency = new LatencyHistogram[rings.length];
+    private final Sink[] sinks;
+    private volatile boolean running = true;
+
+    public Kitchen(int capacity, Sink makanan, Sink minuman) {
+        this(capacity, 4 * capacity, makanan, minuman);
+    }
+
+    public Kitchen(int capacity, int spill, Sink makanan, Sink minuman) {
+        sinks = new Sink[] {makanan, minuman};
+        for (Station s : Station.values()) {
+            int i = s.ordinal();
+            String name = s.name().toLowerCase();
+            rings[i] = new TicketRing(capacity, spill, SPILLED);
+            latency[i] = Metrics.latency("kitchen." + name + ".latency");
+            stations[i] = new Thread(() -> station(rings[i], sinks[i], latency[i]), "dapur-" + name);
+            stations[i].setDaemon(true);
+            rings[i].station = stations[i];
+        }
+        for (Thread t : stations) t.start();
+    }
+
+    public static Kitchen open(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        return new Kitchen(CAPACITY, SPILL, new FileSink(dir.resolve("makanan.txt")), new FileSink(dir.resolve("minuman.txt")));
+    }
+
+    // --=== [Dispatch] ===--
+    // Returns the number of tickets refused because a station is too far
+    // behind (0 when the whole order went through).
+    public int dispatch(String transactionId, Bill bill) {
+        boolean[] free = new boolean[bill.orders];
+        for (int i = 0; i < free.length; i++) free[i] = bill.isPromoSlot(i);
+        return dispatch(transactionId, bill.names, bill.qty, bill.orders, free, bill.drinkSlot);
+    }
+
+    // free[i]: line i gets the promo drink on top; drink[i]: line i goes to the drink station
+    public int dispatch(String transactionId, String[] names, int[] qty, int lines, boolean[] free, boolean[] drink) {
+        long nanos = System.nanoTime(), millis = System.currentTimeMillis();
+        int drinks = 0;
+        for (int i = 0; i < lines; i++) if (drink[i]) drinks++;
+        int sent = 0, refused = 0;
+        for (Station s : Station.values()) {
+            boolean want = s == Station.MINUMAN;
+            int n = want ? drinks : lines - drinks;
+            if (n == 0) continue;
+            String[] items = new String[n];
+            int[] q = new int[n];
+            boolean[] f = new boolean[n];
+            for (int i = 0, k = 0; i < lines; i++) {
+                if (drink[i] != want) continue;
+                items[k] = names[i]; q[k] = qty[i]; f[k++] = free[i];
+            }
+            if (rings[s.ordinal()].offer(new Ticket(s, transactionId, items, q, f, millis, nanos))) sent++;
+            else refused++;
+        }
+        TICKETS.add(sent);
+        REFUSED.add(refused);
+        return refused;
+    }
+
+    // tickets handed out but not yet taken by the station
+    public long backlog(Station s) { return rings[s.ordinal()].backlog(); }
+
+    // tickets that found their ring full and went through the overflow map
+    public long spilled() { return SPILLED.sum(); }
+
+    // tickets refused with the ring and the overflow map both full
+    public long refused() { return REFUSED.sum(); }
+
+    public boolean overloaded() {
+        for (TicketRing r : rings) if (r.backlog() > r.capacity()) return true;
+        return false;
+    }
+
+    public LatencyHistogram latency(Station s) { return latency[s.ordinal()]; }
+
+    // --=== [Station thread] ===--
+    private void station(TicketRing ring, Sink sink, LatencyHistogram latency) {
+        Ticket[] batch = new Ticket[BATCH];
+        while (true) {
+            int n = ring.drain(batch, BATCH);
+            if (n == 0) {
+                if (!running && ring.backlog() == 0) return;
+                // announce the wait, look once more, then sleep until a till unparks us
+                ring.waiting = true;
+                n = ring.drain(batch, BATCH);
+                if (n == 0) LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+                ring.waiting = false;
+                if (n == 0) continue;
+            }
+            long now = System.nanoTime();
+            for (int i = 0; i < n; i++) latency.record(now - batch[i].paidNanos);
+            try { sink.accept(batch, n); }
+            catch (Exception e) { Metrics.failure("io.failures.dapur", "Gagal mengirim tiket ke dapur: " + e.getMessage()); }
+            Arrays.fill(batch, 0, n, null);
+        }
+    }
+
+    // waits for the stations to take every ticket already dispatched
+    @Override
+    public void close() throws IOException {
+        running = false;
+        for (Thread t : stations) {
+            LockSupport.unpark(t);
+            try { t.join(5_000); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        }
+        for (Sink s : sinks) if (s instanceof Closeable c) c.close();
+    }
+
+    // --=== [Ticket printer file] ===--
+    static final class FileSink implements Sink, Closeable {
+        private final Writer out;
+
+        FileSink(Path file) throws IOException {
+            out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+
+        @Override
+        public void accept(Ticket[] batch, int n) throws IOException {
+            for (int i = 0; i < n; i++) out.write(batch[i].line() + "\n");
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException { out.close(); }
+    }
+}
@@ -0,0 +1,42 @@
+package restaurant.kitchen;
+
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+// One station's share of a paid order. seq is the station's running number,
+// assigned when the ticket enters its ring.
+public final class Ticket {
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    public final Kitchen.Station station;
+    public final String transactionId;
+    public final String[] items;
+    public final int[] qty;
+    public final boolean[] free;      // lines with the promo drink on top (+1)
+    public final long paidAtMillis;
+    final long paidNanos;
+    long seq;
+
+    Ticket(Kitchen.Station station, String transactionId, String[] items, int[] qty, boolean[] free, long paidAtMillis, long paidNanos) {
+        this.station = station; this.transactionId = transactionId; this.items = items; this.qty = qty;
+        this.free = free; this.paidAtMillis = paidAtMillis; this.paidNanos = paidNanos;
+    }
+
+    public long seq() { return seq; }
+
+    // #12 14:03:22 4040408f2efd | Bibimbap x2, Soju x1 (+1 GRATIS)
+    public String line() {
+        StringBuilder sb = new StringBuilder(64);
+        sb.append('#').append(seq + 1).append(' ')
+          .append(LocalTime.ofInstant(Instant.ofEpochMilli(paidAtMillis), ZoneId.systemDefault()).format(TIME)).append(' ')
+          .append(transactionId, 0, Math.min(12, transactionId.length())).append(" | ");
+        for (int i = 0; i < items.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(items[i]).append(" x").append(qty[i]);
+            if (free[i]) sb.append(" (+1 GRATIS)");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,87 @@
+package restaurant.kitchen;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// --=== [Bounded ticket ring: many tills, one station] ===--
+// A till claims a sequence number with one getAndIncrement and publishes the
+// ticket into slot seq & mask with a release store of that number; the
+// station thread reads slots strictly in sequence order, so tickets come out
+// exactly in claim order and nobody takes a lock. A till never waits for the
+// station: when the station is a whole ring behind, the ticket is parked in
+// an overflow map under its sequence number and the station takes it from
+// there in turn. The map holds at most `spill` tickets; past that offer()
+// refuses the ticket without claiming a number, so the station never waits
+// on a gap. backlog() and the spill counter are the backpressure signal.
+final class TicketRing {
+
+    private static final VarHandle PUBLISHED = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final Ticket[] slots;
+    private final long[] published;     // sequence number last published per slot
+    private final int mask;
+    private final long limit;           // ring + overflow
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;     // written by the station thread only
+    private final ConcurrentHashMap<Long, Ticket> overflow = new ConcurrentHashMap<>();
+    private final LongAdder spilled;
+    volatile Thread station;
+    volatile boolean waiting;
+
+    TicketRing(int capacity, int spill, LongAdder spilled) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1) << 1);
+        slots = new Ticket[size];
+        published = new long[size];
+        Arrays.fill(published, -1);
+        mask = size - 1;
+        limit = (long) size + Math.max(0, spill);
+        this.spilled = spilled;
+    }
+
+    int capacity() { return slots.length; }
+
+    // never blocks; false when the ring and the overflow are both full
+    boolean offer(Ticket t) {
+        long s;
+        do {
+            s = claimed.get();
+            // consumed only grows: a stale read can refuse a ticket early, never overfill
+            if (s - consumed >= limit) { if (waiting) LockSupport.unpark(station); return false; }
+        } while (!claimed.compareAndSet(s, s + 1));
+        t.seq = s;
+        if (s - consumed < slots.length) {
+            int i = (int) s & mask;
+            slots[i] = t;
+            PUBLISHED.setRelease(published, i, s);
+        } else {
+            overflow.put(s, t);
+            spilled.increment();
+        }
+        if (waiting) LockSupport.unpark(station);
+        return true;
+    }
+
+    // Station thread: up to max tickets in order, stopping at the first one a
+    // till has claimed but not published yet.
+    int drain(Ticket[] into, int max) {
+        long next = consumed;
+        int n = 0;
+        while (n < max) {
+            int i = (int) next & mask;
+            Ticket t;
+            if ((long) PUBLISHED.getAcquire(published, i) == next) { t = slots[i]; slots[i] = null; }
+            else if ((t = overflow.remove(next)) == null) break;
+            into[n++] = t;
+            next++;
+        }
+        if (n > 0) consumed = next;
+        return n;
+    }
+
+    long backlog() { return claimed.get() - consumed; }
+}
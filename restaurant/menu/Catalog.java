@@ -0,0 +1,101 @@
+package restaurant.menu;
+
+import java.util.*;
+
+// --=== [Immutable menu snapshot] ===--
+// Items get dense IDs 0..size-1 in file order. Names are indexed in an
+// open-addressing table that hashes and compares ignoring case and
+// surrounding spaces, so a lookup by name allocates nothing. Each category
+// is a BitSet over item IDs.
+public final class Catalog {
+
+    public static final int NOT_FOUND = -1;
+
+    private final MenuItem[] items;
+    private final int[] nameSlots;    // item id + 1, 0 = empty
+    private final Map<String, BitSet> categories = new LinkedHashMap<>();
+    private final BitSet drinks;
+    private volatile MenuSearch search;   // a racing first use may build it twice, harmlessly
+
+    public Catalog(List<MenuItem> source) {
+        items = new MenuItem[source.size()];
+        for (int i = 0; i < items.length; i++) {
+            MenuItem m = source.get(i);
+            items[i] = create(i, m.getNama().trim(), m.getHarga(), m.getKategori().trim().toLowerCase());
+            categories.computeIfAbsent(items[i].getKategori(), k -> new BitSet()).set(i);
+        }
+        drinks = categories.getOrDefault(Drink.KATEGORI, new BitSet());
+
+        nameSlots = new int[Math.max(16, Integer.highestOneBit(Math.max(1, items.length) * 2) << 1)];
+        int mask = nameSlots.length - 1;
+        for (MenuItem m : items) {
+            String n = m.getNama();
+            if (find(n) != NOT_FOUND) continue;   // first one wins on duplicate names
+            int slot = hash(n, 0, n.length()) & mask;
+            while (nameSlots[slot] != 0) slot = (slot + 1) & mask;
+            nameSlots[slot] = m.getId() + 1;
+        }
+    }
+
+    private static MenuItem create(int id, String nama, int harga, String kategori) {
+        if (kategori.equals(Food.KATEGORI)) return new Food(id, nama, harga);
+        if (kategori.equals(Drink.KATEGORI)) return new Drink(id, nama, harga);
+        return new MenuItem(id, nama, harga, kategori);
+    }
+
+    // --=== [Lookups] ===--
+    public int size() { return items.length; }
+
+    public MenuItem item(int id) { return id >= 0 && id < items.length ? items[id] : null; }
+
+    public int price(int id) { return id >= 0 && id < items.length ? items[id].getHarga() : 0; }
+
+    public boolean isDrink(int id) { return id >= 0 && drinks.get(id); }
+
+    public int find(String name) {
+        if (name == null) return NOT_FOUND;
+        int from = 0, to = name.length();
+        while (from < to && Character.isWhitespace(name.charAt(from))) from++;
+        while (to > from && Character.isWhitespace(name.charAt(to - 1))) to--;
+        int len = to - from;
+        int mask = nameSlots.length - 1;
+        for (int slot = hash(name, from, to) & mask; nameSlots[slot] != 0; slot = (slot + 1) & mask) {
+            MenuItem m = items[nameSlots[slot] - 1];
+            String n = m.getNama();
+            if (n.length() == len && n.regionMatches(true, 0, name, from, len)) return m.getId();
+        }
+        return NOT_FOUND;
+    }
+
+    public MenuItem byName(String name) { return item(find(name)); }
+
+    public Set<String> categories() { return Collections.unmodifiableSet(categories.keySet()); }
+
+    // item IDs in a category; the returned set is a copy
+    public BitSet category(String kategori) {
+        BitSet b = categories.get(kategori);
+        return b == null ? new BitSet() : (BitSet) b.clone();
+    }
+
+    public List<MenuItem> items(String kategori) {
+        BitSet b = categories.get(kategori);
+        List<MenuItem> out = new ArrayList<>();
+        if (b != null) for (int i = b.nextSetBit(0); i >= 0; i = b.nextSetBit(i + 1)) out.add(items[i]);
+        return out;
+    }
+
+    public List<MenuItem> items() { return List.of(items); }
+
+    // search index over names and categories, built on first use
+    public MenuSearch search() {
+        MenuSearch s = search;
+        if (s == null) search = s = new MenuSearch(this);
+        return s;
+    }
+
+    private static int hash(String s, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) h = 31 * h + Character.toLowerCase(s.charAt(i));
+        return h ^ (h >>> 16);
+    }
+}
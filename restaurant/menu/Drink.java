@@ -1,22 +1,9 @@
-
 package restaurant.menu;
 
-public class Drink {
-    private String nama;
-    private int harga;
-    private String kategori;
-
-    public Drink(String nama, int harga) {
-        this.nama = nama;
-        this.harga = harga;
-        this.kategori = "drink";
-    }
+public class Drink extends MenuItem {
+    public static final String KATEGORI = "drink";
 
-    public void showMenu() {
-        System.out.println(nama + " - Rp " + harga + " (" + kategori + ")");
-    }
+    public Drink(String nama, int harga) { this(-1, nama, harga); }
 
-    public String getNama() { return nama; }
-    public int getHarga() { return harga; }
+    public Drink(int id, String nama, int harga) { super(id, nama, harga, KATEGORI); }
 }
-
@@ -1,22 +1,9 @@
-
 package restaurant.menu;
 
-public class Food {
-    private String nama;
-    private int harga;
-    private String kategori;
-
-    public Food(String nama, int harga) {
-        this.nama = nama;
-        this.harga = harga;
-        this.kategori = "food";
-    }
+public class Food extends MenuItem {
+    public static final String KATEGORI = "food";
 
-    public void showMenu() {
-        System.out.println(nama + " - Rp " + harga + " (" + kategori + ")");
-    }
+    public Food(String nama, int harga) { this(-1, nama, harga); }
 
-    public String getNama() { return nama; }
-    public int getHarga() { return harga; }
+    public Food(int id, String nama, int harga) { super(id, nama, harga, KATEGORI); }
 }
-
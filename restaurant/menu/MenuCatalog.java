@@ -0,0 +1,96 @@
+package restaurant.menu;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import restaurant.util.Metrics;
+
+// --=== [Current menu + hot reload] ===--
+// Readers take current() once per operation and work on that immutable
+// snapshot; a reload parses the file into a new Catalog and swaps the
+// reference, so terminals never wait for it. A file that fails to parse
+// leaves the previous menu in place.
+public final class MenuCatalog {
+
+    private static volatile Catalog current = new Catalog(defaults());
+    private static final List<Consumer<Catalog>> listeners = new CopyOnWriteArrayList<>();
+    private static Thread watcher;
+
+    private MenuCatalog() { }
+
+    public static Catalog current() { return current; }
+
+    // called with every new catalog after a reload
+    public static void addListener(Consumer<Catalog> l) { listeners.add(l); }
+
+    // --=== [Built-in menu, used when menu.csv is missing] ===--
+    static List<MenuItem> defaults() {
+        return List.of(
+            new Food("Bibimbap", 30000), new Food("Kimchi", 12000), new Food("Tteokbokki", 25000),
+            new Food("Bulgogi", 35000),
+            new Drink("Soju", 35000), new Drink("Makgeolli", 30000), new Drink("Sikhye", 15000),
+            new Drink("Omija Tea", 20000)
+        );
+    }
+
+    // --=== [Load menu file] ===--
+    // One item per line: nama,harga,kategori. Empty lines and # comments are skipped.
+    public static Catalog parse(Path file) throws IOException {
+        List<MenuItem> items = new ArrayList<>();
+        int lineNo = 0;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            lineNo++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] f = line.split(",");
+            if (f.length != 3) throw new IOException(file + ":" + lineNo + ": butuh nama,harga,kategori");
+            try {
+                items.add(new MenuItem(-1, f[0].trim(), Integer.parseInt(f[1].trim()), f[2].trim()));
+            } catch (NumberFormatException e) {
+                throw new IOException(file + ":" + lineNo + ": harga tidak valid '" + f[1].trim() + "'");
+            }
+        }
+        return new Catalog(items);
+    }
+
+    public static Catalog load(Path file) throws IOException {
+        return publish(parse(file));
+    }
+
+    private static Catalog publish(Catalog c) {
+        current = c;
+        for (Consumer<Catalog> l : listeners) l.accept(c);
+        return c;
+    }
+
+    // Loads the file if it exists and keeps polling it for changes.
+    public static synchronized void init(Path file, long pollMillis) {
+        if (Files.exists(file)) {
+            try { load(file); }
+            catch (IOException e) { Metrics.failure("io.failures.menu", "Gagal membaca menu: " + e.getMessage()); }
+        }
+        if (watcher != null) return;
+        watcher = new Thread(() -> {
+            long seen = lastModified(file);
+            while (true) {
+                try { Thread.sleep(pollMillis); } catch (InterruptedException e) { return; }
+                long m = lastModified(file);
+                if (m == seen || m == 0) continue;
+                seen = m;
+                // the search index is built here too, so the first keystroke after a reload doesn't pay for it
+                try { Catalog c = parse(file); c.search(); publish(c); }
+                catch (IOException e) { Metrics.failure("io.failures.menu", "Menu baru tidak dipakai: " + e.getMessage()); }
+            }
+        }, "menu-reload");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private static long lastModified(Path file) {
+        try { return Files.getLastModifiedTime(file).toMillis(); } catch (IOException e) { return 0; }
+    }
+}
@@ -0,0 +1,27 @@
+package restaurant.menu;
+
+public class MenuItem {
+    private final int id;
+    private final String nama;
+    private final int harga;
+    private final String kategori;
+
+    public MenuItem(int id, String nama, int harga, String kategori) {
+        this.id = id;
+        this.nama = nama;
+        this.harga = harga;
+        this.kategori = kategori;
+    }
+
+    public void showMenu() {
+        System.out.println(nama + " - Rp " + harga + " (" + kategori + ")");
+    }
+
+    public int getId() { return id; }
+    public String getNama() { return nama; }
+    public int getHarga() { return harga; }
+    public String getKategori() { return kategori; }
+
+    @Override
+    public String toString() { return nama + " - Rp " + String.format("%,d", harga); }
+}
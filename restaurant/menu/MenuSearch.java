@@ -0,0 +1,295 @@
+package restaurant.menu;
+
+import java.util.*;
+
+// --=== [Menu search index] ===--
+// Built once per Catalog snapshot (see Catalog.search()), so it is immutable
+// and follows hot reloads for free. Item names and categories are split into
+// lower-case words ("terms"); each term lists the items it occurs in.
+//
+// Prefix matches go through a trie laid out in flat arrays over the sorted
+// term list: every node covers a contiguous range of terms, so all terms
+// under a prefix are found in one walk of at most |prefix| nodes. Typos go
+// through trigrams: the query word's trigrams are looked up in a gram ->
+// terms table and terms are scored by Dice overlap. Every query word must
+// match some word of an item; items are ranked by how well they match.
+public final class MenuSearch {
+
+    private static final float EXACT = 3f, PREFIX = 2f, CATEGORY = 1f;
+    private static final float NAME_PREFIX_BONUS = 1f;   // whole query starts the name
+    private static final float MIN_DICE = 0.45f;
+
+    private final Catalog catalog;
+    private final String[] terms;       // sorted, distinct
+    private final int[] postStart;      // term t -> post[postStart[t] .. postStart[t+1])
+    private final int[] post;           // item id << 1 | 1 if the term came from the category
+
+    // trie: node 0 is the root; children of a node are contiguous and sorted by char
+    private final char[] nodeChar;
+    private final int[] childFrom, childTo, termFrom, termTo;
+    private int nodes;
+
+    // trigram table, open addressing on the packed gram
+    private final long[] gramKeys;      // 0 = empty
+    private final int[] gramFrom, gramTo;
+    private final int[] gramTerms;
+    private final byte[] termGrams;     // distinct trigrams per term, for Dice
+
+    MenuSearch(Catalog catalog) {
+        this.catalog = catalog;
+
+        // --=== [Terms and postings] ===--
+        TreeMap<String, List<Integer>> byTerm = new TreeMap<>();
+        for (int id = 0; id < catalog.size(); id++) {
+            MenuItem m = catalog.item(id);
+            for (String w : words(m.getNama())) addPosting(byTerm, w, id << 1);
+            for (String w : words(m.getKategori())) addPosting(byTerm, w, id << 1 | 1);
+        }
+        terms = byTerm.keySet().toArray(new String[0]);
+        postStart = new int[terms.length + 1];
+        int total = 0;
+        for (List<Integer> l : byTerm.values()) total += l.size();
+        post = new int[total];
+        int t = 0, p = 0;
+        for (List<Integer> l : byTerm.values()) {
+            postStart[t++] = p;
+            for (int v : l) post[p++] = v;
+        }
+        postStart[t] = p;
+
+        // --=== [Trie] ===--
+        int chars = 1;
+        for (String s : terms) chars += s.length();
+        nodeChar = new char[chars];
+        childFrom = new int[chars]; childTo = new int[chars];
+        termFrom = new int[chars]; termTo = new int[chars];
+        nodes = 1;
+        termTo[0] = terms.length;
+        buildChildren(0, 0);
+
+        // --=== [Trigrams] ===--
+        Map<Long, List<Integer>> byGram = new HashMap<>();
+        termGrams = new byte[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            long[] g = grams(terms[i]);
+            termGrams[i] = (byte) Math.min(g.length, 127);
+            for (long k : g) byGram.computeIfAbsent(k, x -> new ArrayList<>()).add(i);
+        }
+        gramKeys = new long[Math.max(16, Integer.highestOneBit(Math.max(1, byGram.size()) * 2) << 1)];
+        gramFrom = new int[gramKeys.length];
+        gramTo = new int[gramKeys.length];
+        int n = 0;
+        for (List<Integer> l : byGram.values()) n += l.size();
+        gramTerms = new int[n];
+        int mask = gramKeys.length - 1;
+        p = 0;
+        for (Map.Entry<Long, List<Integer>> e : byGram.entrySet()) {
+            int slot = mix(e.getKey()) & mask;
+            while (gramKeys[slot] != 0) slot = (slot + 1) & mask;
+            gramKeys[slot] = e.getKey();
+            gramFrom[slot] = p;
+            for (int v : e.getValue()) gramTerms[p++] = v;
+            gramTo[slot] = p;
+        }
+    }
+
+    private static void addPosting(TreeMap<String, List<Integer>> byTerm, String w, int posting) {
+        // items arrive in id order, so a repeated word in one item is always the last entry
+        List<Integer> l = byTerm.computeIfAbsent(w, k -> new ArrayList<>());
+        if (l.isEmpty() || l.get(l.size() - 1) != posting) l.add(posting);
+    }
+
+    // terms of node's range all share its first `depth` chars; group the rest by the next one
+    private void buildChildren(int node, int depth) {
+        int i = termFrom[node], to = termTo[node];
+        while (i < to && terms[i].length() == depth) i++;
+        int first = nodes;
+        while (i < to) {
+            char c = terms[i].charAt(depth);
+            int j = i;
+            while (j < to && terms[j].charAt(depth) == c) j++;
+            int child = nodes++;
+            nodeChar[child] = c; termFrom[child] = i; termTo[child] = j;
+            i = j;
+        }
+        childFrom[node] = first; childTo[node] = nodes;
+        for (int c = first; c < childTo[node]; c++) buildChildren(c, depth + 1);
+    }
+
+    public int terms() { return terms.length; }
+
+    // --=== [Query] ===--
+    // Ranked matches, best first; an empty query lists the menu in file order.
+    public List<MenuItem> find(String query, int limit) {
+        int[] ids = search(query, limit);
+        List<MenuItem> out = new ArrayList<>(ids.length);
+        for (int id : ids) out.add(catalog.item(id));
+        return out;
+    }
+
+    public int[] search(String query, int limit) {
+        int n = catalog.size();
+        List<String> words = words(query);
+        if (words.isEmpty()) {
+            int[] all = new int[Math.min(n, limit)];
+            for (int i = 0; i < all.length; i++) all[i] = i;
+            return all;
+        }
+        Scratch s = scratch.get();
+        int seen = 0;   // items matched by the first word; every survivor is among them
+
+        for (int k = 0; k < words.size(); k++) {
+            String w = words.get(k);
+            int nt = 0;
+            // prefix
+            int node = walk(w);
+            if (node >= 0)
+                for (int t = termFrom[node]; t < termTo[node]; t++)
+                    nt = credit(t, terms[t].length() == w.length() ? EXACT : PREFIX, s, nt);
+            // typos
+            if (w.length() >= 3) {
+                long[] g = grams(w);
+                int mask = gramKeys.length - 1, ntt = 0;
+                for (long key : g) {
+                    int slot = mix(key) & mask;
+                    while (gramKeys[slot] != 0 && gramKeys[slot] != key) slot = (slot + 1) & mask;
+                    if (gramKeys[slot] == 0) continue;
+                    for (int i = gramFrom[slot]; i < gramTo[slot]; i++) {
+                        int t = gramTerms[i];
+                        if (s.termHits[t]++ == 0) s.termTouched[ntt++] = t;
+                    }
+                }
+                for (int i = 0; i < ntt; i++) {
+                    int t = s.termTouched[i];
+                    float dice = 2f * s.termHits[t] / (g.length + termGrams[t]);
+                    s.termHits[t] = 0;
+                    if (dice >= MIN_DICE) nt = credit(t, dice, s, nt);
+                }
+            }
+            // an item's score for this word is its best term; items that missed an
+            // earlier word stay behind (hits != k)
+            for (int i = 0; i < nt; i++) {
+                int id = s.touched[i];
+                if (s.hits[id] == k) { s.score[id] += s.best[id]; s.hits[id] = k + 1; }
+                s.best[id] = 0;
+            }
+            if (k == 0) { System.arraycopy(s.touched, 0, s.seen, 0, nt); seen = nt; }
+        }
+
+        // best `limit` survivors through a max-heap on the rank key (worst kept on top)
+        long[] heap = new long[Math.min(limit, seen)];
+        int size = 0;
+        String q = query.trim();
+        for (int i = 0; i < seen; i++) {
+            int id = s.seen[i];
+            boolean all = s.hits[id] == words.size();
+            float sc = s.score[id];
+            s.hits[id] = 0; s.score[id] = 0;
+            if (!all || heap.length == 0) continue;
+            String name = catalog.item(id).getNama();
+            if (name.regionMatches(true, 0, q, 0, q.length())) sc += NAME_PREFIX_BONUS;
+            // higher score first, then shorter name, then file order
+            long rank = 0xFFFFFL - Math.min(0xFFFFFL, (long) (sc * 1000));
+            long key = rank << 40 | (long) Math.min(name.length(), 255) << 32 | id;
+            if (size < heap.length) siftUp(heap, size++, key);
+            else if (key < heap[0]) siftDown(heap, size, key);
+        }
+        Arrays.sort(heap, 0, size);
+        int[] out = new int[size];
+        for (int i = 0; i < size; i++) out[i] = (int) heap[i];
+        return out;
+    }
+
+    private static void siftUp(long[] h, int i, long key) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (h[parent] >= key) break;
+            h[i] = h[parent];
+            i = parent;
+        }
+        h[i] = key;
+    }
+
+    // replaces the top
+    private static void siftDown(long[] h, int size, long key) {
+        int i = 0;
+        while (true) {
+            int c = 2 * i + 1;
+            if (c >= size) break;
+            if (c + 1 < size && h[c + 1] > h[c]) c++;
+            if (h[c] <= key) break;
+            h[i] = h[c];
+            i = c;
+        }
+        h[i] = key;
+    }
+
+    // per-thread work arrays; everything written during a query is zeroed again before it returns
+    private final class Scratch {
+        final float[] score = new float[catalog.size()], best = new float[catalog.size()];
+        final int[] hits = new int[catalog.size()], touched = new int[catalog.size()], seen = new int[catalog.size()];
+        final int[] termHits = new int[terms.length], termTouched = new int[terms.length];
+    }
+
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    private int credit(int t, float s, Scratch w, int nt) {
+        for (int i = postStart[t]; i < postStart[t + 1]; i++) {
+            int id = post[i] >>> 1;
+            // a category word counts less than a name word; a misspelt one less still
+            float v = (post[i] & 1) == 0 ? s : s >= PREFIX ? CATEGORY : s * 0.5f;
+            if (w.best[id] == 0) w.touched[nt++] = id;
+            if (v > w.best[id]) w.best[id] = v;
+        }
+        return nt;
+    }
+
+    private int walk(String prefix) {
+        int node = 0;
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            int lo = childFrom[node], hi = childTo[node] - 1;
+            node = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (nodeChar[mid] < c) lo = mid + 1;
+                else if (nodeChar[mid] > c) hi = mid - 1;
+                else { node = mid; break; }
+            }
+            if (node < 0) return -1;
+        }
+        return node;
+    }
+
+    // --=== [Text helpers] ===--
+    static List<String> words(String s) {
+        List<String> out = new ArrayList<>(4);
+        int i = 0, n = s.length();
+        while (i < n) {
+            while (i < n && !Character.isLetterOrDigit(s.charAt(i))) i++;
+            int start = i;
+            while (i < n && Character.isLetterOrDigit(s.charAt(i))) i++;
+            if (i > start) out.add(s.substring(start, i).toLowerCase(Locale.ROOT));
+        }
+        return out;
+    }
+
+    // distinct trigrams of " word ", packed three chars to a long
+    private static long[] grams(String w) {
+        String s = " " + w + " ";
+        long[] g = new long[s.length() - 2];
+        int n = 0;
+        outer:
+        for (int i = 0; i + 3 <= s.length(); i++) {
+            long k = (long) s.charAt(i) << 32 | (long) s.charAt(i + 1) << 16 | s.charAt(i + 2);
+            for (int j = 0; j < n; j++) if (g[j] == k) continue outer;
+            g[n++] = k;
+        }
+        return n == g.length ? g : Arrays.copyOf(g, n);
+    }
+
+    private static int mix(long k) {
+        k *= 0x9E3779B97F4A7C15L;
+        return (int) (k ^ (k >>> 32));
+    }
+}
@@ -0,0 +1,124 @@
+package restaurant.order;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import restaurant.menu.Catalog;
+import restaurant.menu.Drink;
+import restaurant.menu.MenuItem;
+import restaurant.util.LatencyHistogram;
+import restaurant.util.Metrics;
+
+// --=== [Subtotal, Discount, Tax, Service] ===--
+// Money comes from Pricing (whole rupiah, half-up rounding); Bill adds the
+// per-slot lines and the free drink promo when the subtotal is above Rp50.000.
+public class Bill {
+    public static final long SERVICE_FEE = Pricing.SERVICE_FEE;
+
+    private static final LongAdder PRICED = Metrics.counter("orders.priced");
+    private static final LatencyHistogram PRICE_TIME = Metrics.latency("pricing.bill");
+
+    public final String[] names;
+    public final int[] qty;
+    public final int orders;
+    public final int[] pricePerSlot;
+    public final boolean[] drinkSlot;       // from the menu the Bill was priced with, for kitchen routing
+    public final long subtotal;
+    public final boolean promoApplied;
+    public final String promoDrink;
+    public final long discount;
+    public final long afterDiscount;
+    public final long tax;
+    public final long serviceFee;
+    public final long totalPay;
+
+    public Bill(String[] names, int[] qty, int orders) {
+        this(names, qty, orders, pricesByName(names, orders), drinksByName(names, orders));
+    }
+
+    // Priced straight from item IDs; no name lookups.
+    public Bill(OrderLines lines, Catalog menu) {
+        this(namesOf(lines, menu), lines.quantities(), lines.size(), pricesOf(lines, menu), drinksOf(lines, menu));
+    }
+
+    // Priced from the items themselves, as a cart holds them (the menu may have reloaded since).
+    public Bill(MenuItem[] items, int[] qty, int orders) {
+        this(namesOf(items, orders), qty, orders, pricesOf(items, orders), drinksOf(items, orders));
+    }
+
+    private Bill(String[] names, int[] qty, int orders, int[] price, boolean[] drink) {
+        long t = System.nanoTime();
+        this.names = names; this.qty = qty; this.orders = orders; this.pricePerSlot = price; this.drinkSlot = drink;
+        long sub = 0; boolean hasDrink = false;
+        for (int i = 0; i < orders; i++) {
+            sub += (long) price[i] * qty[i];
+            if (drink[i]) hasDrink = true;
+        }
+        subtotal = sub;
+
+        boolean promo = false; String promoName = null;
+        if (subtotal > Pricing.PROMO_THRESHOLD && hasDrink) {
+            for (int i = 0; i < orders; i++) { if (drink[i] && qty[i] >= 1) { promo = true; promoName = names[i]; break; } }
+        }
+        promoApplied = promo; promoDrink = promoName;
+
+        Pricing.Quote q = Pricing.quote(subtotal);
+        discount = q.discount; afterDiscount = q.afterDiscount;
+        tax = q.tax; serviceFee = q.serviceFee; totalPay = q.total;
+        PRICED.increment();
+        PRICE_TIME.record(System.nanoTime() - t);
+    }
+
+    private static int[] pricesByName(String[] names, int orders) {
+        int[] p = new int[orders];
+        for (int i = 0; i < orders; i++) p[i] = Menu.getPrice(names[i]);
+        return p;
+    }
+
+    private static boolean[] drinksByName(String[] names, int orders) {
+        boolean[] d = new boolean[orders];
+        for (int i = 0; i < orders; i++) d[i] = Menu.isDrink(names[i]);
+        return d;
+    }
+
+    private static String[] namesOf(OrderLines lines, Catalog menu) {
+        String[] n = new String[lines.size()];
+        for (int i = 0; i < n.length; i++) n[i] = menu.item(lines.itemId(i)).getNama();
+        return n;
+    }
+
+    private static int[] pricesOf(OrderLines lines, Catalog menu) {
+        int[] p = new int[lines.size()];
+        for (int i = 0; i < p.length; i++) p[i] = menu.price(lines.itemId(i));
+        return p;
+    }
+
+    private static boolean[] drinksOf(OrderLines lines, Catalog menu) {
+        boolean[] d = new boolean[lines.size()];
+        for (int i = 0; i < d.length; i++) d[i] = menu.isDrink(lines.itemId(i));
+        return d;
+    }
+
+    private static String[] namesOf(MenuItem[] items, int orders) {
+        String[] n = new String[orders];
+        for (int i = 0; i < orders; i++) n[i] = items[i].getNama();
+        return n;
+    }
+
+    private static int[] pricesOf(MenuItem[] items, int orders) {
+        int[] p = new int[orders];
+        for (int i = 0; i < orders; i++) p[i] = items[i].getHarga();
+        return p;
+    }
+
+    private static boolean[] drinksOf(MenuItem[] items, int orders) {
+        boolean[] d = new boolean[orders];
+        for (int i = 0; i < orders; i++) d[i] = items[i].getKategori().equals(Drink.KATEGORI);
+        return d;
+    }
+
+    public long slotTotal(int i) { return (long) pricePerSlot[i] * qty[i]; }
+
+    public boolean isPromoSlot(int i) { return promoApplied && promoDrink != null && promoDrink.equalsIgnoreCase(names[i]); }
+
+    public long amountToPay() { return totalPay; }
+}
@@ -0,0 +1,168 @@
+package restaurant.order;
+
+import java.util.*;
+
+import restaurant.menu.Catalog;
+import restaurant.menu.MenuItem;
+
+// --=== [Cart command script] ===--
+// The command bar language: statements separated by ';', words separated by
+// spaces, "..." or '...' quote names with spaces. Menu names are resolved
+// against the catalog once, at compile time, so applying a script is just a
+// walk over ready commands. Unquoted names may span words too:
+// add omija tea 3 == add "omija tea" 3.
+//
+//   add <menu> [qty]     remove <line>     clear     pay [wallet]     struk [transaksi id]
+//
+// Errors come back as IllegalArgumentException with the position in the
+// input; nothing from a script that fails to compile should be applied.
+public final class CartScript {
+
+    public enum Op { ADD, REMOVE, CLEAR, PAY, STRUK }
+
+    public static final class Command {
+        public final Op op;
+        public final MenuItem item;   // ADD
+        public final int qty;         // ADD
+        public final int line;        // REMOVE, 0-based
+        public final String wallet;   // PAY, null = the one selected
+        public final String tx;       // STRUK, null = the whole struk.txt
+        public final int pos;
+
+        Command(Op op, MenuItem item, int qty, int line, String wallet, int pos) {
+            this(op, item, qty, line, wallet, null, pos);
+        }
+
+        Command(Op op, MenuItem item, int qty, int line, String wallet, String tx, int pos) {
+            this.op = op; this.item = item; this.qty = qty; this.line = line; this.wallet = wallet; this.tx = tx; this.pos = pos;
+        }
+
+        @Override public String toString() {
+            switch (op) {
+                case ADD: return "add \"" + item.getNama() + "\" " + qty;
+                case REMOVE: return "remove " + (line + 1);
+                case PAY: return wallet == null ? "pay" : "pay \"" + wallet + "\"";
+                case STRUK: return tx == null ? "struk" : "struk " + tx;
+                default: return op.name().toLowerCase(Locale.ROOT);
+            }
+        }
+    }
+
+    private final List<Command> commands;
+
+    private CartScript(List<Command> commands) { this.commands = commands; }
+
+    public List<Command> commands() { return commands; }
+
+    public boolean isEmpty() { return commands.isEmpty(); }
+
+    // --=== [Compile] ===--
+    public static CartScript compile(String src, Catalog catalog) {
+        List<Command> out = new ArrayList<>();
+        List<Token> stmt = new ArrayList<>();
+        for (Token t : tokenize(src)) {
+            if (t.separator) { statement(stmt, catalog, out); stmt.clear(); }
+            else stmt.add(t);
+        }
+        statement(stmt, catalog, out);
+        for (int i = 0; i < out.size() - 1; i++)
+            if (out.get(i).op == Op.PAY) throw error("pay harus perintah terakhir", out.get(i).pos);
+        return new CartScript(Collections.unmodifiableList(out));
+    }
+
+    private static void statement(List<Token> t, Catalog catalog, List<Command> out) {
+        if (t.isEmpty()) return;   // "a;;b" and trailing ';' are fine
+        Token head = t.get(0);
+        String verb = head.quoted ? "" : head.text.toLowerCase(Locale.ROOT);
+        switch (verb) {
+            case "add": {
+                if (t.size() < 2) throw error("add butuh nama menu", head.pos);
+                int end = t.size();
+                int qty = 1;
+                Token last = t.get(end - 1);
+                if (end > 2 && !last.quoted && isNumber(last.text)) {
+                    qty = number(last, "jumlah");
+                    if (qty < 1) throw error("jumlah minimal 1", last.pos);
+                    end--;
+                }
+                String name = join(t, 1, end);
+                MenuItem m = catalog.byName(name);
+                if (m == null) throw error("menu '" + name + "' tidak ditemukan", t.get(1).pos);
+                out.add(new Command(Op.ADD, m, qty, -1, null, head.pos));
+                return;
+            }
+            case "remove": {
+                if (t.size() != 2) throw error("format: remove <nomor baris>", head.pos);
+                int line = number(t.get(1), "nomor baris");
+                if (line < 1) throw error("nomor baris mulai dari 1", t.get(1).pos);
+                out.add(new Command(Op.REMOVE, null, 0, line - 1, null, head.pos));
+                return;
+            }
+            case "clear":
+                if (t.size() != 1) throw error("clear tidak butuh argumen", t.get(1).pos);
+                out.add(new Command(Op.CLEAR, null, 0, -1, null, head.pos));
+                return;
+            case "struk":
+                if (t.size() > 2) throw error("format: struk [transaksi id]", t.get(2).pos);
+                out.add(new Command(Op.STRUK, null, 0, -1, null, t.size() == 2 ? t.get(1).text.trim() : null, head.pos));
+                return;
+            case "pay":
+                out.add(new Command(Op.PAY, null, 0, -1, t.size() > 1 ? join(t, 1, t.size()) : null, head.pos));
+                return;
+            default:
+                throw error("perintah tidak dikenali '" + head.text + "'", head.pos);
+        }
+    }
+
+    private static String join(List<Token> t, int from, int to) {
+        if (to - from == 1) return t.get(from).text;
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i < to; i++) { if (i > from) sb.append(' '); sb.append(t.get(i).text); }
+        return sb.toString();
+    }
+
+    private static boolean isNumber(String s) {
+        for (int i = 0; i < s.length(); i++) if (s.charAt(i) < '0' || s.charAt(i) > '9') return false;
+        return !s.isEmpty();
+    }
+
+    private static int number(Token t, String what) {
+        if (t.quoted || !isNumber(t.text)) throw error(what + " harus angka", t.pos);
+        try { return Integer.parseInt(t.text); }
+        catch (NumberFormatException e) { throw error(what + " terlalu besar", t.pos); }
+    }
+
+    // --=== [Tokenizer] ===--
+    private static final class Token {
+        final String text; final int pos; final boolean quoted, separator;
+        Token(String text, int pos, boolean quoted, boolean separator) {
+            this.text = text; this.pos = pos; this.quoted = quoted; this.separator = separator;
+        }
+    }
+
+    private static List<Token> tokenize(String s) {
+        List<Token> out = new ArrayList<>();
+        int i = 0, n = s.length();
+        while (i < n) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) { i++; continue; }
+            if (c == ';') { out.add(new Token(";", i, false, true)); i++; continue; }
+            int start = i;
+            if (c == '"' || c == '\'') {
+                int close = s.indexOf(c, i + 1);
+                if (close < 0) throw error("tanda kutip tidak ditutup", start);
+                out.add(new Token(s.substring(i + 1, close), start, true, false));
+                i = close + 1;
+                continue;
+            }
+            // quotes only open a token, so names like Chef's stay one word
+            while (i < n && !Character.isWhitespace(s.charAt(i)) && s.charAt(i) != ';') i++;
+            out.add(new Token(s.substring(start, i), start, false, false));
+        }
+        return out;
+    }
+
+    private static IllegalArgumentException error(String msg, int pos) {
+        return new IllegalArgumentException(msg + " (posisi " + (pos + 1) + ")");
+    }
+}
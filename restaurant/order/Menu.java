@@ -0,0 +1,19 @@
+package restaurant.order;
+
+import restaurant.menu.Catalog;
+import restaurant.menu.MenuCatalog;
+
+public class Menu {
+
+    // --=== [Menu Helper] ===--
+    // Name-based lookups against the current catalog; prefer item IDs where available.
+    public static int getPrice(String name) {
+        Catalog c = MenuCatalog.current();
+        return c.price(c.find(name));
+    }
+
+    public static boolean isDrink(String name) {
+        Catalog c = MenuCatalog.current();
+        return c.isDrink(c.find(name));
+    }
+}
@@ -0,0 +1,102 @@
+package restaurant.order;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import restaurant.menu.Catalog;
+
+// --=== [Order Lines] ===--
+// Growable order buffer: catalog item IDs and quantities in two int arrays, no
+// boxing and no per-line objects. Adding an item already in the order bumps
+// its quantity instead of adding a line. Small orders find duplicates with a
+// scan; from INDEX_AT lines on an open-addressing ID -> line table is kept.
+public final class OrderLines {
+    private static final int INDEX_AT = 16;
+
+    private int[] ids;
+    private int[] qty;
+    private int size;
+    private int[] index;   // slot -> line + 1, 0 = empty; null while small
+
+    public OrderLines() { this(4); }
+
+    public OrderLines(int capacity) {
+        ids = new int[Math.max(1, capacity)];
+        qty = new int[ids.length];
+    }
+
+    public int size() { return size; }
+
+    public boolean isEmpty() { return size == 0; }
+
+    public int itemId(int line) { Objects.checkIndex(line, size); return ids[line]; }
+
+    public int qty(int line) { Objects.checkIndex(line, size); return qty[line]; }
+
+    // Adds q of itemId and returns its line number.
+    public int add(int itemId, int q) {
+        if (itemId < 0) throw new IllegalArgumentException("ID item tidak valid: " + itemId);
+        if (q < 1) throw new IllegalArgumentException("Jumlah harus >= 1: " + q);
+        int line = indexOf(itemId);
+        if (line >= 0) { qty[line] = Math.addExact(qty[line], q); return line; }
+
+        if (size == ids.length) {
+            int cap = ids.length + (ids.length >> 1) + 1;
+            ids = Arrays.copyOf(ids, cap); qty = Arrays.copyOf(qty, cap);
+        }
+        line = size++;
+        ids[line] = itemId; qty[line] = q;
+        if (index != null) {
+            if (size * 2 > index.length) rebuildIndex();
+            else insert(line);
+        } else if (size >= INDEX_AT) rebuildIndex();
+        return line;
+    }
+
+    public int indexOf(int itemId) {
+        if (index == null) {
+            for (int i = 0; i < size; i++) if (ids[i] == itemId) return i;
+            return -1;
+        }
+        int mask = index.length - 1;
+        for (int s = mix(itemId) & mask; ; s = (s + 1) & mask) {
+            int v = index[s];
+            if (v == 0) return -1;
+            if (ids[v - 1] == itemId) return v - 1;
+        }
+    }
+
+    public void clear() { size = 0; index = null; }
+
+    // --=== [Totals] ===--
+    public long subtotal(Catalog c) {
+        long s = 0;
+        for (int i = 0; i < size; i++) s += (long) c.price(ids[i]) * qty[i];
+        return s;
+    }
+
+    public long totalQty() {
+        long n = 0;
+        for (int i = 0; i < size; i++) n += qty[i];
+        return n;
+    }
+
+    public int[] itemIds() { return Arrays.copyOf(ids, size); }
+
+    public int[] quantities() { return Arrays.copyOf(qty, size); }
+
+    // --=== [Index] ===--
+    private void rebuildIndex() {
+        index = new int[Integer.highestOneBit(Math.max(INDEX_AT, size) * 4 - 1)];
+        for (int i = 0; i < size; i++) insert(i);
+    }
+
+    private void insert(int line) {
+        int mask = index.length - 1;
+        int s = mix(ids[line]) & mask;
+        while (index[s] != 0) s = (s + 1) & mask;
+        index[s] = line + 1;
+    }
+
+    private static int mix(int id) { int h = id * 0x9E3779B9; return h ^ (h >>> 16); }
+}
@@ -0,0 +1,79 @@
+package restaurant.order;
+
+// --=== [Pricing kernel] ===--
+// All amounts are whole rupiah in a long. Rules, in this order:
+//   discount = 10% of subtotal, only when subtotal > Rp100.000
+//   tax      = 10% of (subtotal - discount)
+//   total    = subtotal - discount + tax + service fee
+//   coupon   = subtracted from total, never below Rp0
+// Percentages round half up to the nearest rupiah. The CLI, the desktop app
+// and the replay engine all price through here so they always agree.
+public final class Pricing {
+
+    public static final long DISCOUNT_THRESHOLD = 100_000L;
+    public static final long PROMO_THRESHOLD = 50_000L;
+    public static final int DISCOUNT_PERCENT = 10;
+    public static final int TAX_PERCENT = 10;
+    public static final long SERVICE_FEE = 20_000L;
+
+    private Pricing() { }
+
+    public static long percentHalfUp(long amount, int percent) { return (amount * percent + 50) / 100; }
+
+    public static long discount(long subtotal) {
+        return subtotal > DISCOUNT_THRESHOLD ? percentHalfUp(subtotal, DISCOUNT_PERCENT) : 0;
+    }
+
+    public static long tax(long afterDiscount) { return percentHalfUp(afterDiscount, TAX_PERCENT); }
+
+    public static long applyCoupon(long total, long couponValue) { return Math.max(0, total - couponValue); }
+
+    // --=== [Single quote] ===--
+    public static final class Quote {
+        public final long subtotal;
+        public final long discount;
+        public final long afterDiscount;
+        public final long tax;
+        public final long serviceFee;
+        public final long couponValue;
+        public final long total;
+
+        Quote(long subtotal, long couponValue) {
+            this.subtotal = subtotal;
+            this.discount = discount(subtotal);
+            this.afterDiscount = subtotal - discount;
+            this.tax = tax(afterDiscount);
+            this.serviceFee = SERVICE_FEE;
+            this.couponValue = couponValue;
+            this.total = applyCoupon(afterDiscount + tax + serviceFee, couponValue);
+        }
+    }
+
+    public static Quote quote(long subtotal) { return new Quote(subtotal, 0); }
+
+    public static Quote quote(long subtotal, long couponValue) { return new Quote(subtotal, couponValue); }
+
+    // --=== [Batch API] ===--
+    // Carts in compressed-row form: lines of cart c are cartStart[c] ..
+    // cartStart[c+1]-1 in itemId/qty; price[] is indexed by item ID.
+    public static void subtotals(int[] cartStart, int[] itemId, int[] qty, int[] price, long[] subtotal, int carts) {
+        for (int c = 0; c < carts; c++) {
+            long s = 0;
+            for (int i = cartStart[c], end = cartStart[c + 1]; i < end; i++) s += (long) price[itemId[i]] * qty[i];
+            subtotal[c] = s;
+        }
+    }
+
+    // Prices n carts in one pass over flat arrays. Each step is a separate
+    // branch-free loop over primitives so the JIT can unroll it (and
+    // vectorize the add/compare steps).
+    public static void quoteBatch(long[] subtotal, long[] coupon, long[] discount, long[] tax, long[] total, int n) {
+        for (int i = 0; i < n; i++) {
+            long s = subtotal[i];
+            long d = (s * DISCOUNT_PERCENT + 50) / 100;
+            discount[i] = s > DISCOUNT_THRESHOLD ? d : 0;
+        }
+        for (int i = 0; i < n; i++) tax[i] = ((subtotal[i] - discount[i]) * TAX_PERCENT + 50) / 100;
+        for (int i = 0; i < n; i++) total[i] = Math.max(0, subtotal[i] - discount[i] + tax[i] + SERVICE_FEE - coupon[i]);
+    }
+}
@@ -0,0 +1,164 @@
+package restaurant.payment;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+import restaurant.coupon.CouponIndex;
+import restaurant.coupon.CouponStore;
+import restaurant.coupon.Coupons;
+import restaurant.kitchen.Kitchen;
+import restaurant.order.Bill;
+import restaurant.order.Pricing;
+import restaurant.receipt.ReceiptArchive;
+import restaurant.receipt.ReceiptJournal;
+import restaurant.receipt.Struk;
+import restaurant.util.Metrics;
+
+// --=== [Pay one priced order against the shared stores] ===--
+// verify -> hold balance -> spend coupon -> journal -> new coupon -> struk.
+// Any failure before the journal undoes the hold and the coupon. Each step
+// can be timed through a StageTimer (null when not needed). With an archive
+// the struk is also stored there, so it can be looked up by its ID later.
+// With a kitchen the order goes to the stations as soon as it is journaled.
+// The CLI, the desktop app and the simulator all pay through here; Layout
+// only picks the struk text (and its promo rule).
+public class Checkout {
+
+    public enum Status { SUKSES, WALLET_TIDAK_ADA, VERIFIKASI_GAGAL, KUPON_TIDAK_VALID, SALDO_KURANG }
+
+    public enum Stage { VERIFY, HOLD, COUPON, JOURNAL, KITCHEN, ISSUE, STRUK, PERSIST }
+
+    public enum Layout {
+        CLI,        // Struk.render: the Bill's one free promo drink
+        DESKTOP     // Struk.renderDesktop: every drink line free above the promo threshold
+    }
+
+    public interface StageTimer {
+        void record(Stage stage, long nanos);
+    }
+
+    public static final class Result {
+        public final Status status;
+        public final long amountToPay;
+        public final String transactionId;
+        public final long balanceAfter;
+        public final String newCoupon;
+        public final String struk;
+        public final int ticketsRefused;    // kitchen tickets the stations had no room for; tell the cashier
+
+        Result(Status status, long amountToPay, String transactionId, long balanceAfter, String newCoupon, String struk, int ticketsRefused) {
+            this.status = status; this.amountToPay = amountToPay; this.transactionId = transactionId;
+            this.balanceAfter = balanceAfter; this.newCoupon = newCoupon; this.struk = struk; this.ticketsRefused = ticketsRefused;
+        }
+
+        static Result failed(Status s) { return new Result(s, 0, null, 0, null, null, 0); }
+    }
+
+    private final WalletLedger ledger;
+    private final CouponStore coupons;
+    private final ReceiptJournal receipts;
+    private final ReceiptArchive archive;   // null = struk.txt only
+    private final Kitchen kitchen;          // null = no kitchen tickets
+
+    public Checkout(WalletLedger ledger, CouponStore coupons, ReceiptJournal receipts) {
+        this(ledger, coupons, receipts, null, null);
+    }
+
+    public Checkout(WalletLedger ledger, CouponStore coupons, ReceiptJournal receipts, ReceiptArchive archive) {
+        this(ledger, coupons, receipts, archive, null);
+    }
+
+    public Checkout(WalletLedger ledger, CouponStore coupons, ReceiptJournal receipts, ReceiptArchive archive, Kitchen kitchen) {
+        this.ledger = ledger; this.coupons = coupons; this.receipts = receipts; this.archive = archive; this.kitchen = kitchen;
+    }
+
+    // IOException only when the debit could not be journaled; nothing is charged then
+    public Result pay(Bill bill, String walletName, String password, String coupon, StageTimer timer) throws IOException {
+        return pay(bill, walletName, password, coupon, timer, Layout.CLI);
+    }
+
+    public Result pay(Bill bill, String walletName, String password, String coupon, StageTimer timer, Layout layout) throws IOException {
+        long t = System.nanoTime();
+        Wallet w = ledger.wallet(walletName);
+        if (w == null) return Result.failed(Status.WALLET_TIDAK_ADA);
+        if (password == null || !w.verify(password)) return Result.failed(Status.VERIFIKASI_GAGAL);
+        t = mark(timer, Stage.VERIFY, t);
+
+        long couponValue = 0;
+        if (coupon != null) {
+            couponValue = coupons.get(coupon);
+            if (couponValue == CouponIndex.NOT_FOUND) return Result.failed(Status.KUPON_TIDAK_VALID);
+        }
+        long amount = Pricing.applyCoupon(bill.amountToPay(), couponValue);
+        WalletLedger.Reservation hold = ledger.reserve(w, amount);
+        if (hold == null) return Result.failed(Status.SALDO_KURANG);
+        t = mark(timer, Stage.HOLD, t);
+
+        // spend the coupon exactly once (another payment may have used it meanwhile)
+        if (coupon != null) {
+            long redeemed;
+            try { redeemed = coupons.redeem(coupon); }
+            catch (IOException e) { ledger.rollback(hold); throw e; }
+            if (redeemed == CouponIndex.NOT_FOUND) { ledger.rollback(hold); return Result.failed(Status.KUPON_TIDAK_VALID); }
+            t = mark(timer, Stage.COUPON, t);
+        }
+
+        String tx = Payments.transactionId(w.name, amount, System.currentTimeMillis());
+        try {
+            ledger.commit(hold, tx);
+        } catch (IOException e) {
+            if (coupon != null) try { coupons.release(coupon); } catch (IOException ignored) { }
+            throw e;
+        }
+        t = mark(timer, Stage.JOURNAL, t);
+
+        boolean[] free = new boolean[bill.orders];
+        for (int i = 0; i < free.length; i++)
+            free[i] = layout == Layout.DESKTOP ? Struk.isDesktopPromo(bill.drinkSlot[i], bill.subtotal) : bill.isPromoSlot(i);
+
+        // paid: the stations can start while the struk is being made
+        int refused = 0;
+        if (kitchen != null) {
+            refused = kitchen.dispatch(tx, bill.names, bill.qty, bill.orders, free, bill.drinkSlot);
+            t = mark(timer, Stage.KITCHEN, t);
+        }
+
+        // money has moved; from here on a failure is only a warning
+        String newCoupon = Coupons.generateRandomCoupon();
+        try { coupons.issue(newCoupon, Coupons.DEFAULT_VALUE); }
+        catch (IOException e) { Metrics.failure("io.failures.coupon", "Gagal menyimpan kupon: " + e.getMessage()); newCoupon = null; }
+        t = mark(timer, Stage.ISSUE, t);
+
+        LocalDateTime now = LocalDateTime.now();
+        long[] lineTotal = new long[bill.orders];
+        for (int i = 0; i < lineTotal.length; i++) lineTotal[i] = bill.slotTotal(i);
+        String struk = layout == Layout.DESKTOP
+                ? Struk.renderDesktop(now, bill.names, bill.qty, lineTotal, free, bill.orders, bill.subtotal, bill.discount,
+                        coupon, couponValue, bill.tax, bill.serviceFee, amount, w.name, tx, hold.balanceAfter, newCoupon)
+                : Struk.render(now, bill, amount, w.name, tx, hold.balanceAfter, coupon, couponValue, newCoupon);
+        t = mark(timer, Stage.STRUK, t);
+
+        // the journal writes it in the background; the payment does not wait for the disk
+        receipts.append(struk).whenComplete((pos, e) -> {
+            if (e != null) Metrics.failure("io.failures.struk", "Gagal menyimpan struk: " + e.getMessage());
+        });
+        if (archive != null) {
+            try {
+                if (layout == Layout.DESKTOP)
+                    archive.appendDesktop(now, bill.names, bill.qty, lineTotal, free, bill.orders, bill.subtotal, bill.discount, coupon, couponValue,
+                            bill.tax, bill.serviceFee, amount, w.name, tx, hold.balanceAfter, newCoupon);
+                else archive.append(now, bill, amount, w.name, tx, hold.balanceAfter, coupon, couponValue, newCoupon);
+            }
+            catch (Exception e) { Metrics.failure("io.failures.arsip", "Gagal mengarsip struk: " + e.getMessage()); }
+        }
+        mark(timer, Stage.PERSIST, t);
+
+        return new Result(Status.SUKSES, amount, tx, hold.balanceAfter, newCoupon, struk, refused);
+    }
+
+    private static long mark(StageTimer timer, Stage s, long since) {
+        long now = System.nanoTime();
+        if (timer != null) timer.record(s, now - since);
+        return now;
+    }
+}
@@ -0,0 +1,17 @@
+package restaurant.payment;
+
+import restaurant.util.Hash;
+import restaurant.util.Ids;
+
+public class Payments {
+
+    // --=== [Transaction ID] ===--
+    public static String transactionId(String walletName, long amount, long millis) {
+        return transactionId(walletName, amount, millis, Ids.next());
+    }
+
+    // deterministic variant for replays: unique must be unique within the run (e.g. order sequence)
+    public static String transactionId(String walletName, long amount, long millis, Object unique) {
+        return Hash.sha256(walletName + "|" + amount + "|" + millis + "|" + unique);
+    }
+}
@@ -0,0 +1,491 @@
+package restaurant.payment;
+
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import restaurant.coupon.CouponStore;
+import restaurant.receipt.ReceiptArchive;
+import restaurant.util.Hash;
+
+// --=== [Settlement: wallet debits vs receipts vs coupons] ===--
+// Nightly check that the money adds up, joined by transaction ID:
+//   dompet/jurnal.log    DEBIT + CREDIT pendapatan pairs
+//   arsip/               the binary receipt archive, one record per struk
+//   kupon/kupon-*.log    coupon issue / redeem / release records
+// Reports amounts that differ, transactions debited twice, debits without a
+// struk and the other way round, and coupons spent, valued or issued
+// differently from what the struk says.
+//
+// The archive already has a txId index, so the journal side looks every
+// debit up directly and marks the receipt it found in a per-segment bitmap;
+// no table of all transactions is built. Coupon records are keyed by digest,
+// so they are counted into one shared table first. Three fork/join passes:
+//   1. journal segments (pairs, lookups, marks) and coupon log ranges (table)
+//   2. archive segments: receipts nobody marked, coupons on each struk
+//   3. table ranges: coupons redeemed without a struk, used twice, ...
+// Every task keeps its own Findings; they are merged pairwise on the way up.
+//
+// Coupon logs only go back to the last compaction; coupons older than that
+// are counted as "di luar log" instead of being reported.
+//   java -cp class restaurant.payment.Settlement [--threads N] [--contoh 10] [--dir .]
+public final class Settlement {
+
+    static final long SEGMENT = 8L << 20;
+    static final long COUPON_RANGE = SEGMENT / CouponStore.RECORD_BYTES * CouponStore.RECORD_BYTES;
+
+    // --=== [Findings] ===--
+    public enum Kind {
+        SELISIH_JUMLAH("jumlah debit ≠ total struk"),
+        SELISIH_WALLET("wallet debit ≠ wallet struk"),
+        PASANGAN_RUSAK("DEBIT tanpa CREDIT pendapatan yang sama"),
+        DEBIT_GANDA("transaksi didebit lebih dari sekali"),
+        DEBIT_TANPA_STRUK("debit tanpa struk"),
+        STRUK_TANPA_DEBIT("struk tanpa debit"),
+        KUPON_NILAI("nilai kupon di struk ≠ nilai terbit"),
+        KUPON_GANDA("kupon dipakai lebih dari sekali"),
+        KUPON_TANPA_REDEEM("kupon di struk tidak tercatat dipakai"),
+        REDEEM_TANPA_STRUK("kupon dipakai tanpa struk");
+
+        public final String label;
+        Kind(String label) { this.label = label; }
+    }
+
+    public static final class Findings {
+        public final long[] count = new long[Kind.values().length];
+        final List<List<String>> examples = new ArrayList<>();
+        final int limit;
+        public long debits, debitTotal, credits, creditTotal, receipts, receiptTotal, matched;
+        public long couponsIssued, issuedValue, couponsRedeemed, redeemedValue, couponValueOnStruk;
+        public long issuedWithoutStruk, issuedWithoutStrukValue, outsideLog;
+
+        Findings(int limit) {
+            this.limit = limit;
+            for (int i = 0; i < count.length; i++) examples.add(new ArrayList<>());
+        }
+
+        void add(Kind k, String example) {
+            count[k.ordinal()]++;
+            List<String> e = examples.get(k.ordinal());
+            if (e.size() < limit) e.add(example);
+        }
+
+        public long problems() {
+            long n = 0;
+            for (long c : count) n += c;
+            return n;
+        }
+
+        Findings merge(Findings o) {
+            for (int i = 0; i < count.length; i++) {
+                count[i] += o.count[i];
+                List<String> e = examples.get(i);
+                for (String s : o.examples.get(i)) if (e.size() < limit) e.add(s);
+            }
+            debits += o.debits; debitTotal += o.debitTotal; credits += o.credits; creditTotal += o.creditTotal;
+            receipts += o.receipts; receiptTotal += o.receiptTotal; matched += o.matched;
+            couponsIssued += o.couponsIssued; issuedValue += o.issuedValue;
+            couponsRedeemed += o.couponsRedeemed; redeemedValue += o.redeemedValue;
+            couponValueOnStruk += o.couponValueOnStruk;
+            issuedWithoutStruk += o.issuedWithoutStruk; issuedWithoutStrukValue += o.issuedWithoutStrukValue;
+            outsideLog += o.outsideLog;
+            return this;
+        }
+    }
+
+    // --=== [Run] ===--
+    // archive may be null (no receipts yet); missing journal or logs count as empty.
+    public static Findings settle(Path journal, ReceiptArchive archive, List<Path> couponLogs, ForkJoinPool pool, int examples)
+            throws IOException {
+        long records = 0;
+        for (Path f : couponLogs) records += Files.size(f) / CouponStore.RECORD_BYTES;
+        Settlement s = new Settlement(archive, new CouponTable(records), examples);
+
+        List<Part> first = new ArrayList<>();
+        if (Files.exists(journal)) {
+            try (FileChannel ch = FileChannel.open(journal, StandardOpenOption.READ)) {
+                long size = ch.size(), from = 0;
+                while (from < size) {
+                    long a = from, b = from + SEGMENT >= size ? size : nextDebit(ch, from + SEGMENT, size);
+                    first.add(() -> s.journal(journal, a, b));
+                    from = b;
+                }
+            }
+        }
+        for (Path f : couponLogs) {
+            long size = Files.size(f);
+            for (long from = 0; from < size; from += COUPON_RANGE) {
+                long a = from;
+                first.add(() -> s.couponLog(f, a, a + COUPON_RANGE));
+            }
+        }
+        Findings all = s.run(pool, first);
+
+        List<Part> second = new ArrayList<>();
+        for (int seg = 0; archive != null && seg < archive.segments(); seg++) {
+            int g = seg;
+            second.add(() -> s.receipts(g));
+        }
+        all.merge(s.run(pool, second));
+
+        List<Part> third = new ArrayList<>();
+        int step = 1 << 16;
+        for (int lo = 0; lo < s.coupons.keys.length; lo += step) {
+            int a = lo, b = Math.min(lo + step, s.coupons.keys.length);
+            third.add(() -> s.couponTable(a, b));
+        }
+        return all.merge(s.run(pool, third));
+    }
+
+    interface Part { Findings run() throws IOException; }
+
+    private final ReceiptArchive archive;
+    private final CouponTable coupons;
+    private final int examples;
+    private final long[][] marks;   // per archive segment, one bit per 8-byte offset
+
+    private Settlement(ReceiptArchive archive, CouponTable coupons, int examples) {
+        this.archive = archive; this.coupons = coupons; this.examples = examples;
+        marks = new long[archive == null ? 0 : archive.segments()][];
+        for (int i = 0; i < marks.length; i++) marks[i] = new long[(archive.segmentBytes(i) >>> 3) / 64 + 1];
+    }
+
+    private Findings run(ForkJoinPool pool, List<Part> parts) throws IOException {
+        if (parts.isEmpty()) return new Findings(examples);
+        try { return pool.invoke(new Split(parts, 0, parts.size(), examples)); }
+        catch (UncheckedIOException e) { throw e.getCause(); }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class Split extends RecursiveTask<Findings> {
+        final List<Part> parts; final int lo, hi, examples;
+
+        Split(List<Part> parts, int lo, int hi, int examples) { this.parts = parts; this.lo = lo; this.hi = hi; this.examples = examples; }
+
+        @Override protected Findings compute() {
+            if (hi - lo == 1) {
+                try { return parts.get(lo).run(); }
+                catch (IOException e) { throw new UncheckedIOException(e); }
+            }
+            int mid = (lo + hi) >>> 1;
+            Split left = new Split(parts, lo, mid, examples);
+            left.fork();
+            Findings right = new Split(parts, mid, hi, examples).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    // --=== [Pass 1: journal] ===--
+    // A DEBIT and its CREDIT are written in one append, so segments are cut
+    // only in front of a line that is not a CREDIT.
+    static long nextDebit(FileChannel ch, long pos, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(64 << 10);
+        for (long at = pos - 1; at < size; at += buf.capacity() - 256) {
+            buf.clear();
+            int n = ch.read(buf, at);
+            if (n <= 0) break;
+            for (int i = 0; i < n - 256 || (at + n >= size && i < n); i++) {
+                if (buf.get(i) != '\n') continue;
+                if (!isCredit(buf, i + 1, n)) return at + i + 1;
+            }
+            if (at + n >= size) break;
+        }
+        return size;
+    }
+
+    private static boolean isCredit(ByteBuffer b, int from, int end) {
+        int bars = 0, i = from;
+        while (i < end && b.get(i) != '\n' && bars < 3) if (b.get(i++) == '|') bars++;
+        return bars == 3 && matches(b, i, end, CREDIT);
+    }
+
+    static final byte[] DEBIT = ascii("DEBIT|"), CREDIT = ascii("CREDIT|"),
+            PENDAPATAN = ascii(WalletLedger.PENDAPATAN + "|");
+
+    private Findings journal(Path file, long from, long to) throws IOException {
+        Findings f = new Findings(examples);
+        MappedByteBuffer b;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            b = ch.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        }
+        int[] bar = new int[6];
+        int pendingTx = -1, pendingEnd = 0;
+        long pendingAmount = 0;
+        for (int start = 0, end = b.limit(); start < end; ) {
+            int nl = start, bars = 0;
+            while (nl < end && b.get(nl) != '\n') {
+                if (b.get(nl) == '|' && bars < bar.length) bar[bars] = nl;
+                if (b.get(nl) == '|') bars++;
+                nl++;
+            }
+            int line = start;
+            start = nl + 1;
+            if (bars != 6) continue;   // torn last line
+            int tx = bar[1] + 1, txEnd = bar[2], type = bar[2] + 1, account = bar[3] + 1;
+            long amount = digits(b, bar[4] + 1, bar[5]);
+            if (matches(b, type, nl, CREDIT) && matches(b, account, nl, PENDAPATAN)) {
+                if (pendingTx >= 0 && same(b, pendingTx, pendingEnd, tx, txEnd) && pendingAmount == amount) {
+                    f.credits++;
+                    f.creditTotal += amount;
+                } else {
+                    f.add(Kind.PASANGAN_RUSAK, text(b, line, nl));
+                }
+                pendingTx = -1;
+                continue;
+            }
+            if (pendingTx >= 0) { f.add(Kind.PASANGAN_RUSAK, text(b, pendingTx, pendingEnd) + " tanpa CREDIT"); pendingTx = -1; }
+            if (!matches(b, type, nl, DEBIT)) continue;
+            pendingTx = tx; pendingEnd = txEnd; pendingAmount = amount;
+            f.debits++;
+            f.debitTotal += amount;
+            debit(f, text(b, tx, txEnd), text(b, account, bar[4]), amount);
+        }
+        if (pendingTx >= 0) f.add(Kind.PASANGAN_RUSAK, text(b, pendingTx, pendingEnd) + " tanpa CREDIT");
+        return f;
+    }
+
+    private void debit(Findings f, String tx, String wallet, long amount) {
+        ReceiptArchive.Receipt r = archive == null ? null : archive.get(tx);
+        if (r == null) { f.add(Kind.DEBIT_TANPA_STRUK, tx + " " + wallet + " Rp " + String.format("%,d", amount)); return; }
+        if (!mark(r.location())) { f.add(Kind.DEBIT_GANDA, tx); return; }
+        f.matched++;
+        if (r.amountToPay() != amount)
+            f.add(Kind.SELISIH_JUMLAH, String.format("%s debit Rp %,d, struk Rp %,d", tx, amount, r.amountToPay()));
+        if (!r.wallet().equals(wallet)) f.add(Kind.SELISIH_WALLET, tx + " debit " + wallet + ", struk " + r.wallet());
+    }
+
+    private static final VarHandle BITS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    // true the first time a receipt is marked
+    private boolean mark(long location) {
+        long[] m = marks[(int) (location >>> 32) - 1];
+        int bit = (int) location >>> 3;
+        long was = (long) BITS.getAndBitwiseOr(m, bit >>> 6, 1L << bit);
+        return (was & (1L << bit)) == 0;
+    }
+
+    private boolean marked(long location) {
+        int seg = (int) (location >>> 32) - 1, bit = (int) location >>> 3;
+        return seg < marks.length && (marks[seg][bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    // --=== [Pass 1: coupon logs] ===--
+    private Findings couponLog(Path file, long from, long to) throws IOException {
+        CouponStore.readLog(file, from, to, (type, digest, value) -> {
+            int slot = coupons.slot(CouponTable.key(digest), true);
+            if (type == CouponStore.ISSUE) { coupons.values[slot] = value; coupons.add(slot, CouponTable.ISSUES); }
+            else if (type == CouponStore.REDEEM) coupons.add(slot, CouponTable.REDEEMS);
+            else if (type == CouponStore.RELEASE) coupons.add(slot, CouponTable.RELEASES);
+        });
+        return new Findings(examples);
+    }
+
+    // --=== [Pass 2: receipts] ===--
+    private Findings receipts(int segment) {
+        Findings f = new Findings(examples);
+        archive.forEach(segment, r -> {
+            f.receipts++;
+            f.receiptTotal += r.amountToPay();
+            if (!marked(r.location()))
+                f.add(Kind.STRUK_TANPA_DEBIT, String.format("%s %s Rp %,d", r.transactionId(), r.wallet(), r.amountToPay()));
+            byte[] used = r.usedCouponDigest();
+            if (used != null) {
+                f.couponValueOnStruk += r.couponValue();
+                int slot = coupons.slot(CouponTable.key(used), false);
+                if (slot < 0) f.outsideLog++;
+                else {
+                    coupons.add(slot, CouponTable.USED);
+                    if (CouponTable.field(coupons.counts[slot], CouponTable.ISSUES) > 0 && coupons.values[slot] != r.couponValue())
+                        f.add(Kind.KUPON_NILAI, String.format("%s kupon %s: struk Rp %,d, terbit Rp %,d",
+                                r.transactionId(), Hash.hex(used), r.couponValue(), coupons.values[slot]));
+                }
+            }
+            byte[] fresh = r.newCouponDigest();
+            if (fresh != null) {
+                int slot = coupons.slot(CouponTable.key(fresh), false);
+                if (slot < 0) f.outsideLog++;
+                else coupons.add(slot, CouponTable.FRESH);
+            }
+        });
+        return f;
+    }
+
+    // --=== [Pass 3: coupon table] ===--
+    private Findings couponTable(int lo, int hi) {
+        Findings f = new Findings(examples);
+        for (int i = lo; i < hi; i++) {
+            long key = coupons.keys[i];
+            if (key == 0) continue;
+            long c = coupons.counts[i], value = coupons.values[i];
+            int issues = CouponTable.field(c, CouponTable.ISSUES), used = CouponTable.field(c, CouponTable.USED);
+            int net = CouponTable.field(c, CouponTable.REDEEMS) - CouponTable.field(c, CouponTable.RELEASES);
+            if (issues > 0) {
+                f.couponsIssued++;
+                f.issuedValue += value;
+                if (CouponTable.field(c, CouponTable.FRESH) == 0) { f.issuedWithoutStruk++; f.issuedWithoutStrukValue += value; }
+            }
+            if (net > 0) {
+                f.couponsRedeemed++;
+                if (issues > 0) f.redeemedValue += value;
+            }
+            String code = CouponTable.prefix(key) + "…";
+            if (used > 1 || net > 1) f.add(Kind.KUPON_GANDA, code + " dipakai " + Math.max(used, net) + "x");
+            else if (used == 1 && net <= 0) f.add(Kind.KUPON_TANPA_REDEEM, code);
+            else if (used == 0 && net == 1) f.add(Kind.REDEEM_TANPA_STRUK, code + (issues > 0 ? String.format(" Rp %,d", value) : ""));
+        }
+        return f;
+    }
+
+    // --=== [Coupon table] ===--
+    // Digest (first 8 bytes) -> issued value and counters, filled from every
+    // thread at once by CAS on the key slot. The counters share one long per
+    // slot, 12 bits each: issues, redeems, releases, uses on a struk and
+    // appearances as a struk's new coupon.
+    static final class CouponTable {
+        static final int ISSUES = 0, REDEEMS = 12, RELEASES = 24, USED = 36, FRESH = 48;
+        private static final VarHandle KEY = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+        final long[] keys, values, counts;
+        final int mask;
+
+        // at most `records` distinct digests, kept below 3/4 full
+        CouponTable(long records) {
+            long slots = Long.highestOneBit(Math.max(16, records + records / 3) * 2 - 1);
+            if (slots > 1 << 30) throw new IllegalArgumentException("terlalu banyak record kupon: " + records);
+            keys = new long[(int) slots]; values = new long[(int) slots]; counts = new long[(int) slots];
+            mask = (int) slots - 1;
+        }
+
+        static long key(byte[] digest) {
+            long k = (long) KEY.get(digest, 0);
+            return k == 0 ? 1 : k;   // 0 marks an empty slot
+        }
+
+        static String prefix(long key) {
+            byte[] b = new byte[8];
+            KEY.set(b, 0, key);
+            return Hash.hex(b);
+        }
+
+        // the key's slot, or -1 when it is absent and insert is false
+        int slot(long key, boolean insert) {
+            for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+                long k = (long) BITS.getAcquire(keys, i);
+                if (k == key) return i;
+                if (k != 0) continue;
+                if (!insert) return -1;
+                long was = (long) BITS.compareAndExchange(keys, i, 0L, key);
+                if (was == 0 || was == key) return i;
+            }
+        }
+
+        void add(int slot, int field) { BITS.getAndAdd(counts, slot, 1L << field); }
+
+        static int field(long counts, int field) { return (int) (counts >>> field) & 0xfff; }
+
+        private static int mix(long k) {
+            k *= 0x9E3779B97F4A7C15L;
+            return (int) (k ^ (k >>> 32));
+        }
+    }
+
+    // --=== [Bytes] ===--
+    static boolean matches(ByteBuffer b, int at, int end, byte[] word) {
+        if (at + word.length > end) return false;
+        for (int i = 0; i < word.length; i++) if (b.get(at + i) != word[i]) return false;
+        return true;
+    }
+
+    private static boolean same(ByteBuffer b, int a, int aEnd, int c, int cEnd) {
+        return aEnd - a == cEnd - c && b.slice(a, aEnd - a).equals(b.slice(c, cEnd - c));
+    }
+
+    static long digits(ByteBuffer b, int from, int to) {
+        long v = 0;
+        boolean neg = from < to && b.get(from) == '-';
+        for (int i = neg ? from + 1 : from; i < to; i++) v = v * 10 + (b.get(i) - '0');
+        return neg ? -v : v;
+    }
+
+    private static String text(ByteBuffer b, int from, int to) {
+        byte[] raw = new byte[to - from];
+        b.get(from, raw);
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    static byte[] ascii(String s) { return s.getBytes(StandardCharsets.US_ASCII); }
+
+    // --=== [Report] ===--
+    public static void print(Findings f, PrintStream out) {
+        out.printf("🧾 Settlement: %,d debit, %,d struk, %,d cocok\n", f.debits, f.receipts, f.matched);
+        out.printf("   Debit dompet             : Rp %,d\n", f.debitTotal);
+        out.printf("   Kredit pendapatan        : Rp %,d (%,d baris)\n", f.creditTotal, f.credits);
+        out.printf("   Total bayar di struk     : Rp %,d\n", f.receiptTotal);
+        out.printf("   Kupon terbit             : %,d (Rp %,d), %,d tanpa struk (Rp %,d)\n",
+                f.couponsIssued, f.issuedValue, f.issuedWithoutStruk, f.issuedWithoutStrukValue);
+        out.printf("   Kupon dipakai            : %,d (Rp %,d tercatat terbit), Rp %,d di struk\n",
+                f.couponsRedeemed, f.redeemedValue, f.couponValueOnStruk);
+        out.printf("   Kupon beredar            : Rp %,d\n", f.issuedValue - f.redeemedValue);
+        if (f.outsideLog > 0) out.printf("   (kupon di struk dari sebelum kompaksi log: %,d)\n", f.outsideLog);
+        if (f.problems() == 0) { out.println("\n✅ Semua debit, struk dan kupon cocok"); return; }
+        out.printf("\n⚠️ %,d selisih:\n", f.problems());
+        for (Kind k : Kind.values()) {
+            long n = f.count[k.ordinal()];
+            if (n == 0) continue;
+            out.printf("   %-42s %,d\n", k.label, n);
+            for (String e : f.examples.get(k.ordinal())) out.println("      " + e);
+        }
+    }
+
+    // exits with 1 when anything does not match and 2 on bad arguments, for the nightly close script
+    public static void main(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors(), examples = 10;
+        Path dir = Paths.get(".");
+        for (int i = 0; i < args.length; i++) {
+            try {
+                switch (args[i]) {
+                    case "--threads": threads = Integer.parseInt(args[++i]); break;
+                    case "--contoh": examples = Integer.parseInt(args[++i]); break;
+                    case "--dir": dir = Paths.get(args[++i]); break;
+                    default: usage("Opsi tidak dikenal: " + args[i]);
+                }
+            } catch (ArrayIndexOutOfBoundsException e) {
+                usage("Opsi " + args[i - 1] + " butuh nilai");
+            } catch (IllegalArgumentException e) {
+                usage("Nilai tidak valid untuk " + args[i - 1] + ": " + args[i]);
+            }
+        }
+        if (threads < 1) usage("--threads minimal 1");
+        if (examples < 0) usage("--contoh tidak boleh negatif");
+        long t0 = System.nanoTime();
+        Path arsip = dir.resolve("arsip");
+        ReceiptArchive archive = Files.isDirectory(arsip) ? ReceiptArchive.open(arsip, false, ReceiptArchive.SEGMENT_BYTES) : null;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Findings f;
+        try {
+            f = settle(dir.resolve("dompet").resolve(WalletLedger.JOURNAL), archive,
+                    CouponStore.logFiles(dir.resolve("kupon")), pool, examples);
+        } finally {
+            pool.shutdown();
+            if (archive != null) archive.close();
+        }
+        print(f, System.out);
+        System.out.printf("\n⏱ %,d ms (%d thread)\n", (System.nanoTime() - t0) / 1_000_000, threads);
+        if (f.problems() > 0) System.exit(1);
+    }
+
+    private static void usage(String problem) {
+        System.out.println("❌ " + problem);
+        System.out.println("Pemakaian: Settlement [--dir <folder>] [--threads <n>] [--contoh <n>]");
+        System.exit(2);
+    }
+}
@@ -0,0 +1,66 @@
+package restaurant.payment;
+
+import java.security.MessageDigest;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import restaurant.util.Hash;
+import restaurant.util.LatencyHistogram;
+import restaurant.util.Metrics;
+
+public class Wallet {
+    private static final LatencyHistogram VERIFY_TIME = Metrics.latency("wallet.verify");
+    private static final LongAdder VERIFY_FAILED = Metrics.counter("wallet.verify_failed");
+
+    public final String name;
+    final AtomicLong balance;
+    byte[] passwordHash;
+    int slot = -1;      // record in dompet.dat, once the ledger has found it
+
+    public Wallet(String name, long balance, String plainPwd) {
+        this.name = name;
+        this.balance = new AtomicLong(balance);
+        this.passwordHash = Hash.sha256Bytes(plainPwd);
+    }
+
+    Wallet(String name, long balance, byte[] passwordHash, int slot) {
+        this.name = name;
+        this.balance = new AtomicLong(balance);
+        this.passwordHash = passwordHash;
+        this.slot = slot;
+    }
+
+    public long getBalance() { return balance.get(); }
+    public boolean verify(String pwd) {
+        long t = System.nanoTime();
+        boolean ok = MessageDigest.isEqual(Hash.sha256Bytes(pwd), passwordHash);
+        VERIFY_TIME.record(System.nanoTime() - t);
+        if (!ok) VERIFY_FAILED.increment();
+        return ok;
+    }
+    public boolean canPay(long amt) { return balance.get() >= amt; }
+
+    // --=== [Atomic debit / credit] ===--
+    // Check and deduct in one CAS loop; returns the new balance, or -1 when
+    // the balance is too low (nothing is deducted then).
+    public long tryDebit(long amt) {
+        while (true) {
+            long b = balance.get();
+            if (b < amt) return -1;
+            if (balance.compareAndSet(b, b - amt)) return b - amt;
+        }
+    }
+
+    public long credit(long amt) { return balance.addAndGet(amt); }
+
+    void setBalance(long b) { balance.set(b); }
+
+    // --=== [Default demo wallets] ===--
+    public static Wallet[] defaults() {
+        return new Wallet[]{
+            new Wallet("myaccount", 5_000_000L, "myaccount"),
+            new Wallet("mybank", 12_000_000L, "mybank"),
+            new Wallet("mysecret", 100_000_000L, "mysecret")
+        };
+    }
+}
@@ -0,0 +1,197 @@
+package restaurant.payment;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import restaurant.util.Hash;
+
+// --=== [Wallet file: fixed records + name index, memory-mapped] ===--
+// dompet.dat = header page | name index | wallet records. Every terminal maps
+// the whole file shared; pages load on first touch, so opening costs the same
+// for three wallets or millions. The file is created at full size (sparse),
+// so it never moves under the other terminals' mappings.
+//
+// Name index: open addressing over 8-byte entries (upper 32 bits of the name
+// hash | record number + 1), at most half full. A lookup is one SHA-256 of the
+// name, a probe or two and a name compare.
+//
+// Record (128 bytes): name hash, version, committed balance, held amount,
+// epoch of the hold, journal seq of the last committed change, base balance,
+// password SHA-256, name (length byte + up to 39 bytes UTF-8). The available
+// balance is committed - held; a hold only counts while its epoch is the
+// current one, so bumping the epoch at a cold start drops the holds of dead
+// terminals without visiting their records. The base is the committed balance
+// at the last checkpoint, kept by the first change after it: a change can
+// reach the record before its journal line reaches the disk, and a cold start
+// after an unclean shutdown rolls such records back to it. Field writes are
+// published with release stores; the caller (WalletLedger) serializes writers
+// per record.
+final class WalletStore implements Closeable {
+
+    static final long MAGIC = 0x325445504d4f444bL;   // "KDOMPET2"
+    static final int HEADER_BYTES = 4096;
+    // header words
+    static final int MAGIC_AT = 0, CAPACITY_AT = 8, TABLE_SLOTS_AT = 16, COUNT_AT = 24, SEQ_AT = 32,
+            REVENUE_AT = 40, REVENUE_VERSION_AT = 48, EPOCH_AT = 56, CHECKPOINT_AT = 64, CHECKPOINT_REVENUE_AT = 72,
+            CHECKPOINT_SEQ_AT = 80, CLEAN_AT = 88;
+    // record fields
+    static final int RECORD_BYTES = 128;
+    static final int NAME_HASH = 0, VERSION = 8, COMMITTED = 16, HELD = 24, HOLD_EPOCH = 32, LAST_SEQ = 40,
+            BASE = 48, PASSWORD = 56, NAME_LEN = 88, NAME = 89;
+    static final int MAX_NAME_BYTES = RECORD_BYTES - NAME;
+    // lock bytes live in the header page, past the words above
+    static final long LOCKS_AT = 1024, PRESENCE_AT = HEADER_BYTES - 1;
+
+    private static final int SEGMENT_SHIFT = 27;     // 128 MB per mapping
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    final FileChannel ch;
+    private final MappedByteBuffer[] segments;
+    private final long capacity, tableMask, recordsAt;
+
+    private WalletStore(FileChannel ch, long capacity, long tableSlots) throws IOException {
+        this.ch = ch;
+        this.capacity = capacity;
+        this.tableMask = tableSlots - 1;
+        this.recordsAt = HEADER_BYTES + tableSlots * 8;
+        long size = recordsAt + capacity * RECORD_BYTES;
+        segments = new MappedByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+        for (int i = 0; i < segments.length; i++) {
+            long pos = (long) i << SEGMENT_SHIFT;
+            segments[i] = ch.map(FileChannel.MapMode.READ_WRITE, pos, Math.min(1L << SEGMENT_SHIFT, size - pos));
+            segments[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    // --=== [Create / map] ===--
+    static boolean formatted(FileChannel ch) throws IOException {
+        if (ch.size() < HEADER_BYTES) return false;
+        ByteBuffer b = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        while (b.hasRemaining() && ch.read(b, MAGIC_AT + b.position()) > 0) { }
+        return !b.hasRemaining() && b.getLong(0) == MAGIC;
+    }
+
+    // Only while no other terminal has the file open. The magic goes in last,
+    // so a half-made file is formatted again by the next cold start.
+    static WalletStore format(FileChannel ch, long capacity) throws IOException {
+        long tableSlots = Long.highestOneBit(Math.max(512, capacity) * 2 - 1) << 1;
+        ch.truncate(0);
+        ch.write(ByteBuffer.allocate(1), HEADER_BYTES + tableSlots * 8 + capacity * RECORD_BYTES - 1);
+        WalletStore s = new WalletStore(ch, capacity, tableSlots);
+        s.set(CAPACITY_AT, capacity);
+        s.set(TABLE_SLOTS_AT, tableSlots);
+        s.set(MAGIC_AT, MAGIC);
+        return s;
+    }
+
+    static WalletStore map(FileChannel ch) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+        while (b.hasRemaining() && ch.read(b, b.position()) > 0) { }
+        long capacity = b.getLong(CAPACITY_AT), tableSlots = b.getLong(TABLE_SLOTS_AT);
+        if (b.getLong(MAGIC_AT) != MAGIC || capacity <= 0 || Long.bitCount(tableSlots) != 1 || tableSlots < 2 * capacity)
+            throw new IOException("dompet.dat rusak atau bukan file dompet");
+        return new WalletStore(ch, capacity, tableSlots);
+    }
+
+    // --=== [Raw access] ===--
+    long get(long pos) { return (long) LONG.getAcquire(segments[(int) (pos >>> SEGMENT_SHIFT)], (int) (pos & SEGMENT_MASK)); }
+
+    void set(long pos, long v) { LONG.setRelease(segments[(int) (pos >>> SEGMENT_SHIFT)], (int) (pos & SEGMENT_MASK), v); }
+
+    long record(int i) { return recordsAt + (long) i * RECORD_BYTES; }
+
+    long get(int i, int field) { return get(record(i) + field); }
+
+    void set(int i, int field, long v) { set(record(i) + field, v); }
+
+    long capacity() { return capacity; }
+
+    int count() { return (int) get(COUNT_AT); }
+
+    String name(int i) {
+        long at = record(i);
+        ByteBuffer seg = segments[(int) (at >>> SEGMENT_SHIFT)];
+        int off = (int) (at & SEGMENT_MASK);
+        byte[] b = new byte[seg.get(off + NAME_LEN) & 0xff];
+        seg.get(off + NAME, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    byte[] passwordHash(int i) {
+        long at = record(i);
+        byte[] b = new byte[32];
+        segments[(int) (at >>> SEGMENT_SHIFT)].get((int) (at & SEGMENT_MASK) + PASSWORD, b);
+        return b;
+    }
+
+    // --=== [Name index] ===--
+    static long nameHash(String name) {
+        return ByteBuffer.wrap(Hash.sha256Bytes(name)).getLong();
+    }
+
+    // record number, or -1 when no wallet has this name
+    int find(String name) {
+        long h = nameHash(name);
+        byte[] nb = name.getBytes(StandardCharsets.UTF_8);
+        for (long slot = h & tableMask; ; slot = (slot + 1) & tableMask) {
+            long e = get(HEADER_BYTES + slot * 8);
+            if (e == 0) return -1;
+            int i = (int) e - 1;
+            if ((e >>> 32) == (h >>> 32) && get(i, NAME_HASH) == h && sameName(i, nb)) return i;
+        }
+    }
+
+    private boolean sameName(int i, byte[] nb) {
+        long at = record(i);
+        ByteBuffer seg = segments[(int) (at >>> SEGMENT_SHIFT)];
+        int off = (int) (at & SEGMENT_MASK);
+        if ((seg.get(off + NAME_LEN) & 0xff) != nb.length) return false;
+        for (int k = 0; k < nb.length; k++) if (seg.get(off + NAME + k) != nb[k]) return false;
+        return true;
+    }
+
+    // Appends a record and indexes it; only one writer at a time (a cold start
+    // or the import, both alone). Returns -1 when the name is taken.
+    int insert(String name, byte[] passwordHash, long balance, long seq) throws IOException {
+        byte[] nb = name.getBytes(StandardCharsets.UTF_8);
+        if (nb.length > MAX_NAME_BYTES) throw new IllegalArgumentException("nama wallet terlalu panjang (maks " + MAX_NAME_BYTES + " byte): " + name);
+        if (find(name) >= 0) return -1;
+        int i = count();
+        if (i >= capacity) throw new IOException("dompet.dat penuh (" + capacity + " wallet)");
+        long h = nameHash(name);
+        long at = record(i);
+        ByteBuffer seg = segments[(int) (at >>> SEGMENT_SHIFT)];
+        int off = (int) (at & SEGMENT_MASK);
+        seg.put(off + PASSWORD, passwordHash, 0, 32);
+        seg.put(off + NAME_LEN, (byte) nb.length);
+        seg.put(off + NAME, nb);
+        set(i, COMMITTED, balance);
+        set(i, HELD, 0);
+        set(i, HOLD_EPOCH, 0);
+        set(i, LAST_SEQ, seq);
+        set(i, BASE, balance);
+        set(i, VERSION, 0);
+        set(i, NAME_HASH, h);
+        long slot = h & tableMask;
+        while (get(HEADER_BYTES + slot * 8) != 0) slot = (slot + 1) & tableMask;
+        set(HEADER_BYTES + slot * 8, (h >>> 32) << 32 | (i + 1L));
+        set(COUNT_AT, i + 1);
+        return i;
+    }
+
+    // dirty pages to disk
+    void force() {
+        for (MappedByteBuffer s : segments) s.force();
+    }
+
+    @Override
+    public void close() throws IOException { ch.close(); }
+}
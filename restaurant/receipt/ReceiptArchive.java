@@ -0,0 +1,427 @@
+package restaurant.receipt;
+
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import restaurant.order.Bill;
+import restaurant.util.Hash;
+import restaurant.util.LatencyHistogram;
+import restaurant.util.Metrics;
+
+// --=== [Binary receipt archive] ===--
+// Every sale as one fixed-layout record instead of formatted text, so a
+// struk costs ~200 bytes and is found by transaction ID without scanning.
+// Records are appended to preallocated segment files (arsip-NNNNNN.seg)
+// that stay memory-mapped; readers get a Receipt view straight over the
+// mapping and the text is only rendered when someone asks for it.
+//
+// Record (little-endian, 8-byte aligned):
+//   0 length   4 crc32 of [8, length)   8 txId (32)   40 time millis
+//   48 amountToPay  56 subtotal  64 discount  72 tax  80 serviceFee
+//   88 couponValue  96 balanceAfter  104 used coupon (32)  136 new coupon (32)
+//   168 wallet name id  172 line count  174 flags
+//   176.. lines: item name id, qty (top bit = free-drink promo), line total
+// Item and wallet names are ids into nama.txt, the archive's own dictionary,
+// so reordering menu.csv never changes what an old receipt says.
+//
+// The length word is written last (release store) and the word after the
+// record is zeroed first, so a reader or a restart sees either the whole
+// record or the end of the data. At open the segments are scanned, the CRC
+// is checked and the txId -> (segment, offset) hash index is rebuilt; a torn
+// tail is cut off.
+public final class ReceiptArchive implements Closeable {
+
+    public static final long SEGMENT_BYTES = 64L << 20;
+
+    static final int LEN = 0, CRC = 4, TX = 8, TIME = 40, AMOUNT = 48, SUBTOTAL = 56, DISCOUNT = 64,
+            TAX = 72, SERVICE = 80, COUPON_VALUE = 88, BALANCE = 96, USED = 104, NEW = 136,
+            WALLET = 168, LINES = 172, FLAGS = 174, HEADER_BYTES = 176, LINE_BYTES = 16;
+    static final int F_DESKTOP = 1, F_USED = 2, F_NEW = 4, F_TIME = 8;
+    static final int PROMO_BIT = 1 << 31;
+    static final int KEY_BYTES = 32;
+
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LOC = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final LatencyHistogram APPEND_TIME = Metrics.latency("io.arsip.append");
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final boolean fsync;
+    private final Names names;
+    private final Object writeLock = new Object();
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private volatile Index index = new Index(1 << 12);
+    private int writeSeg = -1, writePos;   // guarded by writeLock
+    private long count;                    // guarded by writeLock
+
+    private ReceiptArchive(Path dir, boolean fsync, long segmentBytes) throws IOException {
+        if (segmentBytes > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("segmen terlalu besar");
+        this.dir = dir; this.fsync = fsync; this.segmentBytes = segmentBytes;
+        Files.createDirectories(dir);
+        names = new Names(dir.resolve("nama.txt"));
+    }
+
+    // --=== [Open: map segments, rebuild the index] ===--
+    public static ReceiptArchive open(Path dir) throws IOException {
+        return open(dir, Boolean.parseBoolean(System.getProperty("kdelights.arsip.fsync", "true")), SEGMENT_BYTES);
+    }
+
+    public static ReceiptArchive open(Path dir, boolean fsync, long segmentBytes) throws IOException {
+        ReceiptArchive a = new ReceiptArchive(dir, fsync, segmentBytes);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "arsip-*.seg")) { for (Path p : ds) files.add(p); }
+        Collections.sort(files);
+        synchronized (a.writeLock) {
+            for (Path f : files) a.scan(f, a.map(f, Files.size(f)));
+            if (a.writeSeg < 0) a.newSegment();
+        }
+        return a;
+    }
+
+    private MappedByteBuffer map(Path f, long size) throws IOException {
+        try (FileChannel ch = FileChannel.open(f, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            b.order(ByteOrder.LITTLE_ENDIAN);
+            MappedByteBuffer[] next = Arrays.copyOf(segments, segments.length + 1);
+            next[next.length - 1] = b;
+            segments = next;
+            return b;
+        }
+    }
+
+    private void scan(Path f, MappedByteBuffer b) {
+        int seg = segments.length - 1, pos = 0, limit = b.capacity();
+        while (pos + 4 <= limit) {
+            int len = b.getInt(pos + LEN);
+            if (len == 0) break;
+            if (len < HEADER_BYTES || (len & 7) != 0 || pos + len > limit || crc(b, pos, len) != b.getInt(pos + CRC)
+                    || HEADER_BYTES + (b.getShort(pos + LINES) & 0xffff) * LINE_BYTES > len) {
+                Metrics.failure("io.failures.arsip", "Arsip struk terpotong di " + f.getFileName() + "@" + pos + ", sisa segmen diabaikan");
+                b.putInt(pos + LEN, 0);
+                break;
+            }
+            indexPut(b, pos, location(seg, pos));
+            pos += len;
+            count++;
+        }
+        writeSeg = seg;
+        writePos = pos;
+    }
+
+    private void newSegment() throws IOException {
+        Path f = dir.resolve(String.format("arsip-%06d.seg", segments.length + 1));
+        try (RandomAccessFile raf = new RandomAccessFile(f.toFile(), "rw")) { raf.setLength(segmentBytes); }
+        map(f, segmentBytes);
+        writeSeg = segments.length - 1;
+        writePos = 0;
+    }
+
+    // --=== [Append] ===--
+    // CLI / server layout, same fields as Struk.render
+    public void append(LocalDateTime time, Bill bill, long amountToPay, String walletName, String transactionId,
+                       long balanceAfter, String usedCoupon, long couponValue, String newCoupon) throws IOException {
+        long[] lineTotal = new long[bill.orders];
+        boolean[] promo = new boolean[bill.orders];
+        for (int i = 0; i < bill.orders; i++) { lineTotal[i] = bill.slotTotal(i); promo[i] = bill.isPromoSlot(i); }
+        write(transactionId, time, 0, bill.names, bill.qty, lineTotal, promo, bill.orders,
+              bill.subtotal, bill.discount, bill.tax, bill.serviceFee, couponValue, amountToPay,
+              walletName, balanceAfter, usedCoupon, newCoupon);
+    }
+
+    // desktop layout, same fields as Struk.renderDesktop
+    public void appendDesktop(LocalDateTime time, String[] names, int[] qty, long[] lineTotal, int lines,
+                              long subtotal, long discount, String usedCoupon, long couponValue,
+                              long tax, long serviceFee, long totalPay,
+                              String walletName, String transactionId, long balanceAfter, String newCoupon) throws IOException {
+        boolean[] promo = new boolean[lines];
+        for (int i = 0; i < lines; i++) promo[i] = Struk.isDesktopPromo(names[i], subtotal);
+        appendDesktop(time, names, qty, lineTotal, promo, lines, subtotal, discount, usedCoupon, couponValue,
+                tax, serviceFee, totalPay, walletName, transactionId, balanceAfter, newCoupon);
+    }
+
+    // promo[i] marks the free-drink lines, as decided by the caller
+    public void appendDesktop(LocalDateTime time, String[] names, int[] qty, long[] lineTotal, boolean[] promo, int lines,
+                              long subtotal, long discount, String usedCoupon, long couponValue,
+                              long tax, long serviceFee, long totalPay,
+                              String walletName, String transactionId, long balanceAfter, String newCoupon) throws IOException {
+        write(transactionId, time, F_DESKTOP, names, qty, lineTotal, promo, lines,
+              subtotal, discount, tax, serviceFee, couponValue, totalPay, walletName, balanceAfter, usedCoupon, newCoupon);
+    }
+
+    private void write(String transactionId, LocalDateTime time, int flags, String[] itemNames, int[] qty, long[] lineTotal,
+                       boolean[] promo, int lines, long subtotal, long discount, long tax, long serviceFee,
+                       long couponValue, long amountToPay, String walletName, long balanceAfter,
+                       String usedCoupon, String newCoupon) throws IOException {
+        byte[] tx = Hash.unhex(transactionId);
+        if (tx == null || tx.length != KEY_BYTES) throw new IllegalArgumentException("ID transaksi tidak valid: " + transactionId);
+        if (lines > 0xffff) throw new IllegalArgumentException("terlalu banyak baris: " + lines);
+        byte[] used = digest(usedCoupon), fresh = digest(newCoupon);
+        if (used != null) flags |= F_USED;
+        if (fresh != null) flags |= F_NEW;
+        if (time != null) flags |= F_TIME;
+        int len = (HEADER_BYTES + lines * LINE_BYTES + 7) & ~7;
+        long t0 = System.nanoTime();
+        synchronized (writeLock) {
+            if (find(tx) != null) throw new IllegalStateException("ID transaksi sudah diarsip: " + transactionId);
+            int wallet = names.id(walletName);
+            int[] items = new int[lines];
+            for (int i = 0; i < lines; i++) items[i] = names.id(itemNames[i]);
+            if (writePos + len + 4 > segments[writeSeg].capacity()) newSegment();
+
+            MappedByteBuffer b = segments[writeSeg];
+            int at = writePos;
+            b.putInt(at + len, 0);   // end marker for whoever reads after this record
+            b.put(at + TX, tx);
+            b.putLong(at + TIME, time == null ? 0 : time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            b.putLong(at + AMOUNT, amountToPay).putLong(at + SUBTOTAL, subtotal).putLong(at + DISCOUNT, discount)
+             .putLong(at + TAX, tax).putLong(at + SERVICE, serviceFee).putLong(at + COUPON_VALUE, couponValue)
+             .putLong(at + BALANCE, balanceAfter);
+            b.put(at + USED, used != null ? used : new byte[KEY_BYTES]);
+            b.put(at + NEW, fresh != null ? fresh : new byte[KEY_BYTES]);
+            b.putInt(at + WALLET, wallet).putShort(at + LINES, (short) lines).putShort(at + FLAGS, (short) flags);
+            for (int i = 0, p = at + HEADER_BYTES; i < lines; i++, p += LINE_BYTES)
+                b.putInt(p, items[i]).putInt(p + 4, qty[i] | (promo[i] ? PROMO_BIT : 0)).putLong(p + 8, lineTotal[i]);
+            for (int p = at + HEADER_BYTES + lines * LINE_BYTES; p < at + len; p++) b.put(p, (byte) 0);
+            b.putInt(at + CRC, crc(b, at, len));
+            INT.setRelease(b, at + LEN, len);
+            if (fsync) b.force(at, len + 4);
+
+            indexPut(b, at, location(writeSeg, at));
+            writePos = at + len;
+            count++;
+        }
+        APPEND_TIME.record(System.nanoTime() - t0);
+    }
+
+    private static byte[] digest(String hex) {
+        byte[] d = Hash.unhex(hex);
+        return d != null && d.length == KEY_BYTES ? d : null;
+    }
+
+    private static int crc(ByteBuffer b, int at, int len) {
+        CRC32 c = new CRC32();
+        c.update(b.slice(at + TX, len - TX));
+        return (int) c.getValue();
+    }
+
+    // --=== [Lookup] ===--
+    // null when the transaction is not in the archive
+    public Receipt get(String transactionId) {
+        byte[] tx = Hash.unhex(transactionId == null ? null : transactionId.trim());
+        return tx == null || tx.length != KEY_BYTES ? null : find(tx);
+    }
+
+    public long size() { synchronized (writeLock) { return count; } }
+
+    // every record in append order
+    public void forEach(Consumer<Receipt> action) {
+        for (int seg = 0, n = segments(); seg < n; seg++) forEach(seg, action);
+    }
+
+    // Segments can be read independently, e.g. by parallel jobs. A record's
+    // location() is (segment + 1) << 32 | offset in the segment.
+    public int segments() { return segments.length; }
+
+    public int segmentBytes(int segment) { return segments[segment].capacity(); }
+
+    public void forEach(int segment, Consumer<Receipt> action) {
+        ByteBuffer b = segments[segment];
+        int pos = 0;
+        while (pos + 4 <= b.capacity()) {
+            int len = (int) INT.getAcquire(b, pos + LEN);
+            if (len == 0) break;
+            action.accept(new Receipt(b, segment, pos));
+            pos += len;
+        }
+    }
+
+    // --=== [txId index] ===--
+    // Open addressing on the first 8 bytes of the txId; a hit is confirmed
+    // against the full id in the record. Written under writeLock, read
+    // without locks: the key goes in first, then the location with a release
+    // store, and readers acquire the location before looking at the key.
+    private static final class Index {
+        final long[] keys, locs;   // loc 0 = empty
+        final int mask;
+        int size;
+        Index(int capacity) { keys = new long[capacity]; locs = new long[capacity]; mask = capacity - 1; }
+    }
+
+    private static long location(int seg, int pos) { return (long) (seg + 1) << 32 | pos; }
+
+    private void indexPut(ByteBuffer b, int at, long loc) {
+        Index ix = index;
+        if (ix.size + 1 > ix.keys.length * 0.6) {
+            Index bigger = new Index(ix.keys.length << 1);
+            for (int i = 0; i < ix.keys.length; i++) if (ix.locs[i] != 0) insert(bigger, ix.keys[i], ix.locs[i]);
+            bigger.size = ix.size;
+            index = ix = bigger;
+        }
+        insert(ix, b.getLong(at + TX), loc);
+        ix.size++;
+    }
+
+    private static void insert(Index ix, long key, long loc) {
+        int slot = mix(key) & ix.mask;
+        while (ix.locs[slot] != 0) slot = (slot + 1) & ix.mask;
+        ix.keys[slot] = key;
+        LOC.setRelease(ix.locs, slot, loc);
+    }
+
+    private Receipt find(byte[] tx) {
+        long key = ByteBuffer.wrap(tx).order(ByteOrder.LITTLE_ENDIAN).getLong(0);
+        Index ix = index;
+        MappedByteBuffer[] segs = segments;
+        for (int slot = mix(key) & ix.mask; ; slot = (slot + 1) & ix.mask) {
+            long loc = (long) LOC.getAcquire(ix.locs, slot);
+            if (loc == 0) return null;
+            if (ix.keys[slot] != key) continue;
+            int seg = (int) (loc >>> 32) - 1;
+            if (seg >= segs.length) segs = segments;
+            ByteBuffer b = segs[seg];
+            int at = (int) loc;
+            if (b.slice(at + TX, KEY_BYTES).mismatch(ByteBuffer.wrap(tx)) < 0) return new Receipt(b, seg, at);
+        }
+    }
+
+    private static int mix(long k) {
+        k *= 0x9E3779B97F4A7C15L;
+        return (int) (k ^ (k >>> 32));
+    }
+
+    // --=== [Zero-copy receipt view] ===--
+    // Reads straight from the mapped segment; nothing is decoded until asked.
+    public final class Receipt {
+        private final ByteBuffer b;
+        private final int seg, at;
+
+        Receipt(ByteBuffer b, int seg, int at) { this.b = b; this.seg = seg; this.at = at; }
+
+        public long location() { return ReceiptArchive.location(seg, at); }
+        public String transactionId() { return hex(at + TX); }
+        public boolean hasTime() { return (flags() & F_TIME) != 0; }
+        public LocalDateTime time() {
+            return hasTime() ? LocalDateTime.ofInstant(Instant.ofEpochMilli(b.getLong(at + TIME)), ZoneId.systemDefault()) : null;
+        }
+        public long amountToPay() { return b.getLong(at + AMOUNT); }
+        public long subtotal() { return b.getLong(at + SUBTOTAL); }
+        public long discount() { return b.getLong(at + DISCOUNT); }
+        public long tax() { return b.getLong(at + TAX); }
+        public long serviceFee() { return b.getLong(at + SERVICE); }
+        public long couponValue() { return b.getLong(at + COUPON_VALUE); }
+        public long balanceAfter() { return b.getLong(at + BALANCE); }
+        public String usedCoupon() { return (flags() & F_USED) != 0 ? hex(at + USED) : null; }
+        public String newCoupon() { return (flags() & F_NEW) != 0 ? hex(at + NEW) : null; }
+        // the same coupons as raw 32-byte digests, null when absent
+        public byte[] usedCouponDigest() { return (flags() & F_USED) != 0 ? bytes(at + USED) : null; }
+        public byte[] newCouponDigest() { return (flags() & F_NEW) != 0 ? bytes(at + NEW) : null; }
+        public String wallet() { return names.name(b.getInt(at + WALLET)); }
+        public boolean desktop() { return (flags() & F_DESKTOP) != 0; }
+        public int lines() { return b.getShort(at + LINES) & 0xffff; }
+        public String item(int i) { return names.name(b.getInt(line(i))); }
+        public int qty(int i) { return b.getInt(line(i) + 4) & ~PROMO_BIT; }
+        public boolean promo(int i) { return (b.getInt(line(i) + 4) & PROMO_BIT) != 0; }
+        public long lineTotal(int i) { return b.getLong(line(i) + 8); }
+
+        private int line(int i) { return at + HEADER_BYTES + i * LINE_BYTES; }
+        private int flags() { return b.getShort(at + FLAGS); }
+
+        private String hex(int from) { return Hash.hex(bytes(from)); }
+
+        private byte[] bytes(int from) {
+            byte[] d = new byte[KEY_BYTES];
+            b.get(from, d);
+            return d;
+        }
+
+        // the struk text as it was printed at the till
+        public String render() {
+            int n = lines();
+            String[] itemNames = new String[n];
+            int[] qty = new int[n];
+            long[] total = new long[n];
+            boolean[] promo = new boolean[n];
+            for (int i = 0; i < n; i++) { itemNames[i] = item(i); qty[i] = qty(i); total[i] = lineTotal(i); promo[i] = promo(i); }
+            if (desktop())
+                return Struk.renderDesktop(time(), itemNames, qty, total, promo, n, subtotal(), discount(), usedCoupon(),
+                        couponValue(), tax(), serviceFee(), amountToPay(), wallet(), transactionId(), balanceAfter(), newCoupon());
+            return Struk.render(time(), itemNames, qty, total, promo, n, amountToPay(), wallet(), transactionId(),
+                    balanceAfter(), usedCoupon(), couponValue(), newCoupon());
+        }
+    }
+
+    // --=== [Name dictionary] ===--
+    // One name per line; the id is the line number. A new name is on disk
+    // before any record that uses it.
+    private final class Names {
+        final Path file;
+        final List<String> byId = new CopyOnWriteArrayList<>();
+        final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+        Names(Path file) throws IOException {
+            this.file = file;
+            if (Files.exists(file))
+                for (String n : Files.readAllLines(file, StandardCharsets.UTF_8)) { ids.putIfAbsent(n, byId.size()); byId.add(n); }
+        }
+
+        // called under writeLock
+        int id(String name) throws IOException {
+            Integer id = ids.get(name);
+            if (id != null) return id;
+            if (name.indexOf('\n') >= 0) throw new IllegalArgumentException("nama tidak boleh berisi baris baru");
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer line = ByteBuffer.wrap((name + "\n").getBytes(StandardCharsets.UTF_8));
+                while (line.hasRemaining()) ch.write(line);
+                if (fsync) ch.force(false);
+            }
+            byId.add(name);
+            ids.put(name, byId.size() - 1);
+            return byId.size() - 1;
+        }
+
+        String name(int id) { return id >= 0 && id < byId.size() ? byId.get(id) : "?" + id; }
+    }
+
+    @Override
+    public void close() {
+        synchronized (writeLock) {
+            if (fsync) for (MappedByteBuffer b : segments) b.force();
+        }
+    }
+
+    // java -cp class restaurant.receipt.ReceiptArchive struk <txId> [dir]
+    // java -cp class restaurant.receipt.ReceiptArchive info [dir]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Pakai: struk <ID transaksi> [dir] | info [dir]");
+            return;
+        }
+        boolean struk = args[0].equals("struk");
+        Path dir = Paths.get(args.length > (struk ? 2 : 1) ? args[struk ? 2 : 1] : "arsip");
+        long t0 = System.nanoTime();
+        try (ReceiptArchive a = open(dir, false, SEGMENT_BYTES)) {
+            long openMs = (System.nanoTime() - t0) / 1_000_000;
+            if (struk && args.length >= 2) {
+                Receipt r = a.get(args[1]);
+                System.out.print(r == null ? "⚠️ Transaksi tidak ditemukan: " + args[1] + "\n" : r.render());
+            } else {
+                System.out.printf("📦 %s: %,d struk di %d segmen (dibuka dalam %,d ms)\n", dir, a.size(), a.segments.length, openMs);
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package restaurant.receipt;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import restaurant.util.LatencyHistogram;
+import restaurant.util.Metrics;
+
+// --=== [Receipt journal] ===--
+// Appends every struk to one file through a background writer thread. The
+// payer only queues the text; the writer drains whatever is queued, writes it
+// with one call and syncs according to the durability policy, then completes
+// each receipt's future with its file offset.
+public class ReceiptJournal implements Closeable {
+
+    public enum Durability {
+        NONE,       // write only, the OS flushes later
+        BATCH,      // fsync after every batch (default)
+        INTERVAL    // fsync at most once per interval
+    }
+
+    private static final int MAX_BATCH = 1024;
+    private static final LatencyHistogram WRITE_TIME = Metrics.latency("io.struk.write");
+    private static final LatencyHistogram SYNC_TIME = Metrics.latency("io.struk.sync");
+
+    private static final class Entry {
+        final byte[] bytes;
+        final CompletableFuture<Long> done = new CompletableFuture<>();
+        long offset;
+        Entry(byte[] bytes) { this.bytes = bytes; }
+    }
+
+    private static final Entry CLOSE = new Entry(new byte[0]);
+
+    private final FileChannel ch;
+    private final Durability durability;
+    private final long intervalNanos;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean closed;
+    private long lastSync = System.nanoTime();
+    private final List<Entry> unsynced = new ArrayList<>();   // written, waiting for fsync (writer thread)
+
+    public ReceiptJournal(Path file, Durability durability, long intervalMillis) throws IOException {
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        this.ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.durability = durability;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.writer = new Thread(this::run, "struk-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Policy from -Dkdelights.struk.durability=NONE|BATCH|INTERVAL and
+    // -Dkdelights.struk.intervalMs (default 50).
+    public static ReceiptJournal open(Path file) throws IOException {
+        Durability d = Durability.valueOf(System.getProperty("kdelights.struk.durability", "BATCH").toUpperCase());
+        long interval = Long.getLong("kdelights.struk.intervalMs", 50L);
+        return new ReceiptJournal(file, d, interval);
+    }
+
+    // Queues one receipt; the future completes with the receipt's offset in
+    // the file once it is durable under the configured policy.
+    public CompletableFuture<Long> append(String struk) {
+        Entry e = new Entry((struk + "\n").getBytes(StandardCharsets.UTF_8));
+        if (closed) {
+            e.done.completeExceptionally(new IOException("jurnal struk sudah ditutup"));
+            return e.done;
+        }
+        queue.add(e);
+        return e.done;
+    }
+
+    // --=== [Writer thread] ===--
+    private void run() {
+        List<Entry> batch = new ArrayList<>(MAX_BATCH);
+        boolean stop = false;
+        while (!stop) {
+            try {
+                // with receipts waiting for an INTERVAL fsync, wake up in time for it
+                Entry first = !unsynced.isEmpty()
+                        ? queue.poll(Math.max(0, intervalNanos - (System.nanoTime() - lastSync)), TimeUnit.NANOSECONDS)
+                        : queue.take();
+                if (first != null) { batch.add(first); queue.drainTo(batch, MAX_BATCH - 1); }
+            } catch (InterruptedException e) { stop = true; }
+            if (batch.remove(CLOSE)) {
+                // receipts that raced with close() still get written
+                stop = true;
+                queue.drainTo(batch);
+                batch.remove(CLOSE);
+            }
+            writeBatch(batch, stop);
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<Entry> batch, boolean last) {
+        try {
+            ByteBuffer[] bufs = new ByteBuffer[batch.size()];
+            long total = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                bufs[i] = ByteBuffer.wrap(batch.get(i).bytes);
+                total += bufs[i].remaining();
+            }
+            // an APPEND channel writes at the file's end, which another terminal
+            // may have moved, so offsets come from the position after each write
+            long t = System.nanoTime();
+            long done = 0;
+            int next = 0;
+            long start = 0;   // of entry `next`, counted from the start of the batch
+            while (done < total) {
+                long n = ch.write(bufs);
+                long base = ch.position() - n - done;
+                done += n;
+                for (; next < batch.size() && start < done; start += batch.get(next++).bytes.length)
+                    batch.get(next).offset = base + start;
+            }
+            WRITE_TIME.record(System.nanoTime() - t);
+
+            if (durability == Durability.NONE) { complete(batch); return; }
+            unsynced.addAll(batch);
+            if (unsynced.isEmpty()) return;
+            if (durability == Durability.BATCH || last || System.nanoTime() - lastSync >= intervalNanos) {
+                t = System.nanoTime();
+                ch.force(false);
+                lastSync = System.nanoTime();
+                SYNC_TIME.record(lastSync - t);
+                complete(unsynced);
+                unsynced.clear();
+            }
+        } catch (IOException e) {
+            for (Entry en : batch) en.done.completeExceptionally(e);
+            for (Entry en : unsynced) en.done.completeExceptionally(e);
+            unsynced.clear();
+        }
+    }
+
+    private static void complete(List<Entry> entries) {
+        for (Entry e : entries) e.done.complete(e.offset);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        queue.add(CLOSE);
+        try { writer.join(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        ch.close();
+    }
+}
@@ -0,0 +1,320 @@
+package restaurant.receipt;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import restaurant.menu.Catalog;
+import restaurant.menu.Drink;
+import restaurant.menu.Food;
+import restaurant.menu.MenuCatalog;
+import restaurant.order.Pricing;
+
+// --=== [End-of-day sales report] ===--
+// Sums struk journals: revenue per hour of day, top items, food/drink mix,
+// discount and coupon totals, average ticket. Both struk layouts are read
+// (CLI/server and desktop); where a struk doesn't print its discount it is
+// recomputed from the line totals with the same Pricing rules.
+//
+// Each file is cut into ~8 MB segments whose boundaries are moved forward to
+// the next struk header, so no struk is split. Segments are memory-mapped and
+// parsed as bytes by fork/join tasks, each into its own Tally; tallies are
+// merged pairwise on the way back up, so workers share nothing.
+//   java -cp class restaurant.receipt.SalesReport [--top 10] [--threads N] [struk.txt ...]
+public final class SalesReport {
+
+    static final byte[] HEADER = "====== STRUK K-DELIGHTS ======".getBytes(StandardCharsets.US_ASCII);
+    static final long SEGMENT = 8L << 20;
+
+    // --=== [Totals] ===--
+    public static final class Tally {
+        public long receipts, revenue, subtotal, discount;
+        public long couponsUsed, couponValue, couponsIssued;
+        public long untimed;                                  // struk without a Waktu line
+        public final long[] hourRevenue = new long[24], hourReceipts = new long[24];
+        public final Map<String, long[]> items = new HashMap<>();   // name -> {qty, revenue}
+        public String first, last;                            // earliest / latest Waktu
+
+        Tally merge(Tally o) {
+            receipts += o.receipts; revenue += o.revenue; subtotal += o.subtotal; discount += o.discount;
+            couponsUsed += o.couponsUsed; couponValue += o.couponValue; couponsIssued += o.couponsIssued;
+            untimed += o.untimed;
+            for (int h = 0; h < 24; h++) { hourRevenue[h] += o.hourRevenue[h]; hourReceipts[h] += o.hourReceipts[h]; }
+            for (Map.Entry<String, long[]> e : o.items.entrySet()) {
+                long[] v = items.computeIfAbsent(e.getKey(), k -> new long[2]);
+                v[0] += e.getValue()[0]; v[1] += e.getValue()[1];
+            }
+            if (o.first != null && (first == null || o.first.compareTo(first) < 0)) first = o.first;
+            if (o.last != null && (last == null || o.last.compareTo(last) > 0)) last = o.last;
+            return this;
+        }
+    }
+
+    // --=== [Scan files] ===--
+    public static Tally scan(List<Path> files, ForkJoinPool pool) throws IOException {
+        List<FileChannel> channels = new ArrayList<>();
+        List<long[]> segments = new ArrayList<>();   // {channel index, from, to}
+        try {
+            for (Path f : files) {
+                FileChannel ch = FileChannel.open(f, StandardOpenOption.READ);
+                channels.add(ch);
+                long size = ch.size(), from = 0;
+                while (from < size) {
+                    long to = from + SEGMENT >= size ? size : nextHeader(ch, from + SEGMENT, size);
+                    segments.add(new long[]{channels.size() - 1, from, to});
+                    from = to;
+                }
+            }
+            if (segments.isEmpty()) return new Tally();
+            try { return pool.invoke(new Scan(channels, segments, 0, segments.size())); }
+            catch (UncheckedIOException e) { throw e.getCause(); }
+        } finally {
+            for (FileChannel ch : channels) ch.close();
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class Scan extends RecursiveTask<Tally> {
+        final List<FileChannel> channels; final List<long[]> segments; final int lo, hi;
+
+        Scan(List<FileChannel> channels, List<long[]> segments, int lo, int hi) {
+            this.channels = channels; this.segments = segments; this.lo = lo; this.hi = hi;
+        }
+
+        @Override protected Tally compute() {
+            if (hi - lo == 1) {
+                long[] s = segments.get(lo);
+                try {
+                    MappedByteBuffer b = channels.get((int) s[0]).map(FileChannel.MapMode.READ_ONLY, s[1], s[2] - s[1]);
+                    Tally t = new Tally();
+                    new Parser(t).parse(b);
+                    return t;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            int mid = (lo + hi) >>> 1;
+            Scan left = new Scan(channels, segments, lo, mid);
+            left.fork();
+            Tally right = new Scan(channels, segments, mid, hi).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    // first struk header at or after pos that starts a line, or size
+    static long nextHeader(FileChannel ch, long pos, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(64 << 10);
+        for (long at = pos - 1; at < size; at += buf.capacity() - HEADER.length) {
+            buf.clear();
+            int n = ch.read(buf, at);
+            if (n <= 0) break;
+            for (int i = 0; i + HEADER.length < n; i++)
+                if (buf.get(i) == '\n' && matches(buf, i + 1, n, HEADER)) return at + i + 1;
+            if (at + n >= size) break;
+        }
+        return size;
+    }
+
+    static boolean matches(ByteBuffer b, int at, int end, byte[] word) {
+        if (at + word.length > end) return false;
+        for (int i = 0; i < word.length; i++) if (b.get(at + i) != word[i]) return false;
+        return true;
+    }
+
+    // --=== [Struk parser] ===--
+    // Line by line over the mapped bytes; a struk is counted once its TOTAL BAYAR is seen.
+    static final class Parser {
+        static final byte[] WAKTU = ascii("Waktu: "), TOTAL = ascii("TOTAL BAYAR"), SUBTOTAL = ascii("Subtotal"),
+                DISKON = ascii("Diskon"), KUPON_PAKAI = ascii("Kupon digunakan"), KUPON_BARU = ascii("Kupon #"),
+                ARROW = ascii(" -> Rp "), HASH_HEADER = ascii("(hash):"), NULL = ascii("null");
+
+        final Tally t;
+        // current struk
+        boolean open, hasTotal, hasDiscount, hasSubtotal, expectHash;
+        long total, lineSum, subtotal, discount;
+        int hour = -1;
+
+        Parser(Tally t) { this.t = t; }
+
+        void parse(ByteBuffer b) {
+            int end = b.limit(), from = 0;
+            while (from < end) {
+                int nl = from;
+                while (nl < end && b.get(nl) != '\n') nl++;
+                line(b, from, nl);
+                from = nl + 1;
+            }
+            finish();
+        }
+
+        void line(ByteBuffer b, int from, int to) {
+            if (to > from && b.get(to - 1) == '\r') to--;
+            if (matches(b, from, to, HEADER)) { finish(); open = true; return; }
+            if (!open || from == to) return;
+            if (expectHash) {
+                expectHash = false;
+                if (!(to - from == NULL.length && matches(b, from, to, NULL))) t.couponsIssued++;
+                return;
+            }
+            byte c = b.get(from);
+            if (c >= '0' && c <= '9') { item(b, from, to); return; }
+            if (matches(b, from, to, TOTAL)) { total = money(b, from, to); hasTotal = true; }
+            else if (matches(b, from, to, WAKTU)) waktu(b, from + WAKTU.length, to);
+            else if (matches(b, from, to, SUBTOTAL)) { subtotal = money(b, from, to); hasSubtotal = true; }
+            else if (matches(b, from, to, DISKON)) { discount = money(b, from, to); hasDiscount = true; }
+            else if (matches(b, from, to, KUPON_PAKAI)) { t.couponsUsed++; t.couponValue += money(b, from, to); }
+            else if (matches(b, from, to, KUPON_BARU)) t.couponsIssued++;
+            else if (endsWith(b, from, to, HASH_HEADER)) expectHash = true;
+        }
+
+        // "N) name xQ -> Rp T"
+        void item(ByteBuffer b, int from, int to) {
+            int arrow = lastIndexOf(b, from, to, ARROW);
+            if (arrow < 0) return;
+            int x = arrow - 1;
+            while (x > from && b.get(x) >= '0' && b.get(x) <= '9') x--;
+            if (x <= from || b.get(x) != 'x' || b.get(x - 1) != ' ') return;
+            int name = from;
+            while (name < x && b.get(name) != ')') name++;
+            name += 2;
+            if (name >= x - 1) return;
+            long qty = digits(b, x + 1, arrow), value = digits(b, arrow + ARROW.length, to);
+            byte[] raw = new byte[x - 1 - name];
+            b.get(name, raw);
+            long[] v = t.items.computeIfAbsent(new String(raw, StandardCharsets.UTF_8), k -> new long[2]);
+            v[0] += qty; v[1] += value;
+            lineSum += value;
+        }
+
+        // "yyyy-MM-dd HH:mm:ss"
+        void waktu(ByteBuffer b, int from, int to) {
+            if (to - from < 19) return;
+            int h = (b.get(from + 11) - '0') * 10 + (b.get(from + 12) - '0');
+            if (h < 0 || h > 23) return;
+            hour = h;
+            byte[] raw = new byte[19];
+            b.get(from, raw);
+            String w = new String(raw, StandardCharsets.US_ASCII);
+            if (t.first == null || w.compareTo(t.first) < 0) t.first = w;
+            if (t.last == null || w.compareTo(t.last) > 0) t.last = w;
+        }
+
+        void finish() {
+            if (open && hasTotal) {
+                long sub = hasSubtotal ? subtotal : lineSum;
+                t.receipts++;
+                t.revenue += total;
+                t.subtotal += sub;
+                t.discount += hasDiscount ? discount : Pricing.discount(sub);
+                if (hour >= 0) { t.hourRevenue[hour] += total; t.hourReceipts[hour]++; }
+                else t.untimed++;
+            }
+            open = hasTotal = hasDiscount = hasSubtotal = expectHash = false;
+            total = lineSum = subtotal = discount = 0;
+            hour = -1;
+        }
+    }
+
+    // amount after the first "Rp", thousands separators skipped
+    static long money(ByteBuffer b, int from, int to) {
+        for (int i = from; i + 1 < to; i++) if (b.get(i) == 'R' && b.get(i + 1) == 'p') return digits(b, i + 2, to);
+        return 0;
+    }
+
+    static long digits(ByteBuffer b, int from, int to) {
+        int i = from;
+        while (i < to && b.get(i) == ' ') i++;
+        long v = 0;
+        for (; i < to; i++) {
+            byte c = b.get(i);
+            if (c >= '0' && c <= '9') v = v * 10 + (c - '0');
+            else if (c != ',' && c != '.') break;
+        }
+        return v;
+    }
+
+    static int lastIndexOf(ByteBuffer b, int from, int to, byte[] word) {
+        for (int i = to - word.length; i >= from; i--) if (matches(b, i, to, word)) return i;
+        return -1;
+    }
+
+    static boolean endsWith(ByteBuffer b, int from, int to, byte[] word) {
+        return to - from >= word.length && matches(b, to - word.length, to, word);
+    }
+
+    static byte[] ascii(String s) { return s.getBytes(StandardCharsets.US_ASCII); }
+
+    // --=== [Report] ===--
+    public static void print(Tally t, Catalog menu, int top, PrintStream out) {
+        out.printf("📊 Laporan penjualan: %,d struk", t.receipts);
+        if (t.first != null) out.printf(" (%s s/d %s)", t.first, t.last);
+        out.println();
+        if (t.receipts == 0) return;
+        out.printf("   Pendapatan (total bayar) : Rp %,d\n", t.revenue);
+        out.printf("   Rata-rata per struk      : Rp %,d\n", t.revenue / t.receipts);
+        out.printf("   Subtotal menu            : Rp %,d\n", t.subtotal);
+        out.printf("   Diskon 10%%               : Rp %,d\n", t.discount);
+        out.printf("   Kupon dipakai            : %,d (Rp %,d)\n", t.couponsUsed, t.couponValue);
+        out.printf("   Kupon diterbitkan        : %,d\n", t.couponsIssued);
+
+        // food / drink mix by the current menu's categories
+        long[] qty = new long[3], rev = new long[3];   // food, drink, other
+        for (Map.Entry<String, long[]> e : t.items.entrySet()) {
+            int id = menu.find(e.getKey());
+            String kategori = id == Catalog.NOT_FOUND ? "" : menu.item(id).getKategori();
+            int k = kategori.equals(Food.KATEGORI) ? 0 : kategori.equals(Drink.KATEGORI) ? 1 : 2;
+            qty[k] += e.getValue()[0]; rev[k] += e.getValue()[1];
+        }
+        long allRev = Math.max(1, rev[0] + rev[1] + rev[2]);
+        out.println("\n   Kategori     porsi        pendapatan   porsi%");
+        String[] label = {"makanan", "minuman", "lainnya"};
+        for (int k = 0; k < 3; k++)
+            if (qty[k] > 0) out.printf("   %-10s %,9d  Rp %,15d   %5.1f%%\n", label[k], qty[k], rev[k], 100.0 * rev[k] / allRev);
+
+        out.println("\n   Jam     struk        pendapatan");
+        for (int h = 0; h < 24; h++)
+            if (t.hourReceipts[h] > 0) out.printf("   %02d:00 %,8d  Rp %,15d\n", h, t.hourReceipts[h], t.hourRevenue[h]);
+        if (t.untimed > 0) out.printf("   (tanpa jam: %,d struk)\n", t.untimed);
+
+        List<Map.Entry<String, long[]>> ranked = new ArrayList<>(t.items.entrySet());
+        ranked.sort((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]));
+        out.printf("\n   Top %d menu (pendapatan):\n", Math.min(top, ranked.size()));
+        for (int i = 0; i < Math.min(top, ranked.size()); i++) {
+            Map.Entry<String, long[]> e = ranked.get(i);
+            out.printf("   %2d) %-20s x%,-9d Rp %,d\n", i + 1, e.getKey(), e.getValue()[0], e.getValue()[1]);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int top = 10, threads = Runtime.getRuntime().availableProcessors();
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--top": top = Integer.parseInt(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                default:
+                    if (args[i].startsWith("--")) { System.out.println("Opsi tidak dikenal: " + args[i]); return; }
+                    files.add(Paths.get(args[i]));
+            }
+        }
+        if (files.isEmpty()) files.add(Paths.get("struk.txt"));
+        Path menu = Paths.get("menu.csv");
+        if (Files.exists(menu)) MenuCatalog.load(menu);
+
+        long bytes = 0;
+        for (Path f : files) bytes += Files.size(f);
+        long t0 = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Tally t;
+        try { t = scan(files, pool); } finally { pool.shutdown(); }
+        long ms = (System.nanoTime() - t0) / 1_000_000;
+        print(t, MenuCatalog.current(), top, System.out);
+        System.out.printf("\n⏱ %,.1f MB dibaca dalam %,d ms (%d thread)\n", bytes / 1e6, ms, threads);
+    }
+}
@@ -0,0 +1,108 @@
+package restaurant.receipt;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import restaurant.order.Bill;
+import restaurant.order.Menu;
+import restaurant.order.Pricing;
+
+public class Struk {
+
+    // --=== [Struk text, same layout as struk.txt from the CLI] ===--
+    public static String render(Bill bill, long amountToPay, String walletName, String transactionHash,
+                                long balanceAfter, String usedCoupon, long couponValue, String newCoupon) {
+        return render(null, bill, amountToPay, walletName, transactionHash, balanceAfter, usedCoupon, couponValue, newCoupon);
+    }
+
+    // time == null leaves out the Waktu line (replays stay byte-for-byte reproducible)
+    public static String render(LocalDateTime time, Bill bill, long amountToPay, String walletName, String transactionHash,
+                                long balanceAfter, String usedCoupon, long couponValue, String newCoupon) {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("====== STRUK K-DELIGHTS ======\n");
+        if (time != null) sb.append("Waktu: ").append(WAKTU.format(time)).append("\n");
+        for (int i = 0; i < bill.orders; i++) line(sb, i, bill.names[i], bill.qty[i], bill.slotTotal(i), bill.isPromoSlot(i) ? bill.promoDrink : null);
+        return cliFooter(sb, amountToPay, walletName, transactionHash, balanceAfter, usedCoupon, couponValue, newCoupon);
+    }
+
+    // same layout from stored lines (receipt archive); promo[i] marks the free-drink line
+    public static String render(LocalDateTime time, String[] names, int[] qty, long[] lineTotal, boolean[] promo, int lines,
+                                long amountToPay, String walletName, String transactionHash,
+                                long balanceAfter, String usedCoupon, long couponValue, String newCoupon) {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("====== STRUK K-DELIGHTS ======\n");
+        if (time != null) sb.append("Waktu: ").append(WAKTU.format(time)).append("\n");
+        for (int i = 0; i < lines; i++) line(sb, i, names[i], qty[i], lineTotal[i], promo[i] ? names[i] : null);
+        return cliFooter(sb, amountToPay, walletName, transactionHash, balanceAfter, usedCoupon, couponValue, newCoupon);
+    }
+
+    private static void line(StringBuilder sb, int i, String name, int qty, long total, String promoDrink) {
+        sb.append(String.format("%d) %s x%d -> Rp %,d\n", i+1, name, qty, total));
+        if (promoDrink != null) sb.append("   (Promo: +1 ").append(promoDrink).append(" GRATIS!)\n");
+    }
+
+    private static String cliFooter(StringBuilder sb, long amountToPay, String walletName, String transactionHash,
+                                    long balanceAfter, String usedCoupon, long couponValue, String newCoupon) {
+        sb.append("--------------------------------\n");
+        if (usedCoupon != null) sb.append(String.format("Kupon digunakan : -Rp %,d (hash: %s)\n", couponValue, usedCoupon));
+        sb.append(String.format("TOTAL BAYAR     : Rp %,d\n", amountToPay));
+        sb.append("Dibayar via     : ").append(walletName).append("\n");
+        sb.append("Transaksi ID    : ").append(transactionHash).append("\n");
+        sb.append(String.format("Sisa saldo %s : Rp %,d\n", walletName, balanceAfter));
+        if (newCoupon != null) {
+            sb.append("🎟 Kupon untuk kunjungan berikutnya:\n");
+            sb.append("Kupon #1: ").append(newCoupon).append("\n");
+        }
+        return sb.toString();
+    }
+
+    private static final DateTimeFormatter WAKTU = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // --=== [Struk text, same layout as the desktop (JavaFX) app] ===--
+    public static String renderDesktop(LocalDateTime time, String[] names, int[] qty, long[] lineTotal, int lines,
+                                       long subtotal, long discount, String usedCoupon, long couponValue,
+                                       long tax, long serviceFee, long totalPay,
+                                       String walletName, String transactionHash, long balanceAfter, String newCoupon) {
+        return renderDesktop(time, names, qty, lineTotal, null, lines, subtotal, discount, usedCoupon, couponValue,
+                tax, serviceFee, totalPay, walletName, transactionHash, balanceAfter, newCoupon);
+    }
+
+    // promo == null decides the free-drink lines from the current menu
+    public static String renderDesktop(LocalDateTime time, String[] names, int[] qty, long[] lineTotal, boolean[] promo, int lines,
+                                       long subtotal, long discount, String usedCoupon, long couponValue,
+                                       long tax, long serviceFee, long totalPay,
+                                       String walletName, String transactionHash, long balanceAfter, String newCoupon) {
+        StringBuilder sb = new StringBuilder(640);
+        sb.append("====== STRUK K-DELIGHTS ======\n");
+        sb.append("Waktu: ").append(WAKTU.format(time)).append("\n\n");
+        for (int i = 0; i < lines; i++) {
+            sb.append(String.format("%d) %s x%d -> Rp %,d\n", i+1, names[i], qty[i], lineTotal[i]));
+            if (promo != null ? promo[i] : isDesktopPromo(names[i], subtotal)) sb.append("   (Promo: +1 ").append(names[i]).append(" GRATIS!)\n");
+        }
+        sb.append("--------------------------------\n");
+        sb.append(String.format("Subtotal        : Rp %,d\n", subtotal));
+        if (discount > 0) sb.append(String.format("Diskon 10%%      : -Rp %,d\n", discount));
+        if (usedCoupon != null) sb.append(String.format("Kupon digunakan : -Rp %,d (hash: %s)\n", couponValue, usedCoupon));
+        sb.append(String.format("Pajak 10%%       : Rp %,d\n", tax));
+        sb.append(String.format("Biaya layanan   : Rp %,d\n", serviceFee));
+        sb.append("--------------------------------\n");
+        sb.append(String.format("TOTAL BAYAR     : Rp %,d\n", totalPay));
+        sb.append("Dibayar via     : ").append(walletName).append("\n");
+        sb.append("Transaksi ID    : ").append(transactionHash).append("\n");
+        sb.append(String.format("Sisa saldo %s : Rp %,d\n", walletName, balanceAfter));
+        if (newCoupon != null) {
+            sb.append("\n🎟 Kupon untuk kunjungan berikutnya (hash):\n");
+            sb.append(newCoupon).append("\n");
+        }
+        return sb.toString();
+    }
+
+    // the desktop app gives every drink line a free one above the promo threshold
+    public static boolean isDesktopPromo(String name, long subtotal) {
+        return isDesktopPromo(Menu.isDrink(name), subtotal);
+    }
+
+    public static boolean isDesktopPromo(boolean drink, long subtotal) {
+        return drink && subtotal > Pricing.PROMO_THRESHOLD;
+    }
+}
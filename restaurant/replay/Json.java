@@ -0,0 +1,142 @@
+package restaurant.replay;
+
+import java.util.*;
+
+// --=== [Minimal JSON reader for order lines, plus string quoting for replies] ===--
+// Objects become LinkedHashMap, arrays ArrayList, numbers Long or Double.
+public class Json {
+    private final String s;
+    private int pos;
+
+    private Json(String s) { this.s = s; }
+
+    public static Object parse(String text) {
+        Json p = new Json(text);
+        p.skipWs();
+        Object v = p.value();
+        p.skipWs();
+        if (p.pos != p.s.length()) throw p.error("data berlebih");
+        return v;
+    }
+
+    private Object value() {
+        if (pos >= s.length()) throw error("data terpotong");
+        char c = s.charAt(pos);
+        switch (c) {
+            case '{': return object();
+            case '[': return array();
+            case '"': return string();
+            case 't': return literal("true", Boolean.TRUE);
+            case 'f': return literal("false", Boolean.FALSE);
+            case 'n': return literal("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) return number();
+                throw error("karakter tak terduga '" + c + "'");
+        }
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        pos++; skipWs();
+        if (peek() == '}') { pos++; return m; }
+        while (true) {
+            skipWs();
+            if (peek() != '"') throw error("kunci harus string");
+            String key = string();
+            skipWs(); expect(':'); skipWs();
+            m.put(key, value());
+            skipWs();
+            char c = next();
+            if (c == '}') return m;
+            if (c != ',') throw error("diharapkan ',' atau '}'");
+        }
+    }
+
+    private List<Object> array() {
+        List<Object> l = new ArrayList<>();
+        pos++; skipWs();
+        if (peek() == ']') { pos++; return l; }
+        while (true) {
+            skipWs();
+            l.add(value());
+            skipWs();
+            char c = next();
+            if (c == ']') return l;
+            if (c != ',') throw error("diharapkan ',' atau ']'");
+        }
+    }
+
+    private String string() {
+        pos++;
+        StringBuilder sb = null;
+        int start = pos;
+        while (true) {
+            if (pos >= s.length()) throw error("string tidak ditutup");
+            char c = s.charAt(pos++);
+            if (c == '"') return sb == null ? s.substring(start, pos - 1) : sb.toString();
+            if (c == '\\') {
+                if (sb == null) sb = new StringBuilder(s.substring(start, pos - 1));
+                char e = next();
+                switch (e) {
+                    case '"': case '\\': case '/': sb.append(e); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > s.length()) throw error("escape \\u terpotong");
+                        sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default: throw error("escape tidak valid");
+                }
+            } else if (sb != null) sb.append(c);
+        }
+    }
+
+    private Object number() {
+        int start = pos;
+        boolean frac = false;
+        while (pos < s.length()) {
+            char c = s.charAt(pos);
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+') pos++;
+            else if (c == '.' || c == 'e' || c == 'E') { frac = true; pos++; }
+            else break;
+        }
+        String n = s.substring(start, pos);
+        return frac ? (Object) Double.parseDouble(n) : (Object) Long.parseLong(n);
+    }
+
+    private Object literal(String word, Object v) {
+        if (!s.startsWith(word, pos)) throw error("literal tidak valid");
+        pos += word.length();
+        return v;
+    }
+
+    private void skipWs() { while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++; }
+    private char peek() { return pos < s.length() ? s.charAt(pos) : '\0'; }
+    private char next() { if (pos >= s.length()) throw error("data terpotong"); return s.charAt(pos++); }
+    private void expect(char c) { if (next() != c) throw error("diharapkan '" + c + "'"); }
+    private IllegalArgumentException error(String msg) { return new IllegalArgumentException("JSON " + msg + " (posisi " + pos + ")"); }
+
+    // --=== [Writing] ===--
+    public static String quote(String v) {
+        if (v == null) return "null";
+        StringBuilder sb = new StringBuilder(v.length() + 2).append('"');
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
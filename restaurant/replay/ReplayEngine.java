@@ -0,0 +1,263 @@
+package restaurant.replay;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.IntStream;
+
+import restaurant.coupon.CouponIndex;
+import restaurant.coupon.CouponStore;
+import restaurant.coupon.Coupons;
+import restaurant.menu.Catalog;
+import restaurant.menu.MenuCatalog;
+import restaurant.order.Bill;
+import restaurant.order.OrderLines;
+import restaurant.order.Pricing;
+import restaurant.payment.Payments;
+import restaurant.payment.Wallet;
+import restaurant.payment.WalletLedger;
+import restaurant.receipt.Struk;
+import restaurant.util.Metrics;
+
+// --=== [Headless Order Replay] ===--
+// Runs a file of JSON order lines through the same menu, pricing, wallet
+// ledger, coupon store and struk rules as the till, without a Scanner. Orders
+// are handled in chunks; inside a chunk everything except the money step runs
+// in parallel. The money step (redeem the coupon, hold the balance, give the
+// coupon back when the balance is short) runs order by order in file order,
+// because a coupon released by one order may be the one a later order in the
+// chunk wants; results and output (transaction IDs, new coupons) match a
+// sequential replay exactly.
+//
+//   java -cp class restaurant.replay.ReplayEngine orders.jsonl [--out dir] [--coupons coupons.txt]
+//        [--dompet dir] [--kupon dir]
+// Without --dompet/--kupon the replay starts from a fresh till inside the
+// output directory (default wallets, coupons.txt imported), rebuilt on every
+// run so two runs of one file give the same output.
+public class ReplayEngine {
+
+    public static final int CHUNK = 65_536;
+
+    public enum Status { SUKSES, FORMAT_SALAH, MENU_TIDAK_ADA, PESANAN_KOSONG, WALLET_TIDAK_ADA, VERIFIKASI_GAGAL, SALDO_KURANG, GAGAL_SIMPAN }
+
+    public static class Result {
+        public final long seq;
+        Status status;
+        ReplayOrder order;
+        Bill bill;
+        Wallet wallet;
+        WalletLedger.Reservation hold;
+        long amountToPay;
+        long couponValue;
+        String usedCoupon;
+        long balanceAfter;
+        String transactionHash;
+        String newCoupon;
+        String struk;
+        String error;
+
+        Result(long seq) { this.seq = seq; }
+
+        public Status getStatus() { return status; }
+        public long getAmountToPay() { return amountToPay; }
+        public String getTransactionHash() { return transactionHash; }
+        public String getNewCoupon() { return newCoupon; }
+        public String getStruk() { return struk; }
+    }
+
+    private final WalletLedger ledger;
+    private final CouponStore coupons;
+
+    public ReplayEngine(WalletLedger ledger, CouponStore coupons) {
+        this.ledger = ledger;
+        this.coupons = coupons;
+    }
+
+    // --=== [Process one chunk of raw lines] ===--
+    public Result[] processChunk(String[] lines, long firstSeq, int n) {
+        Result[] results = new Result[n];
+        Catalog menu = MenuCatalog.current();
+
+        // parse, menu lookup, price and password check do not touch shared state
+        IntStream.range(0, n).parallel().forEach(i -> results[i] = prepare(firstSeq + i, lines[i], menu));
+
+        // coupon + balance hold together, one order at a time in file order;
+        // neither waits for the disk, so this stays small next to the steps around it
+        for (Result r : results) {
+            if (r.status != null) continue;
+            try {
+                if (r.order.coupon != null) {
+                    long v = coupons.redeem(r.order.coupon);
+                    if (v != CouponIndex.NOT_FOUND) {
+                        r.usedCoupon = r.order.coupon; r.couponValue = v;
+                        r.amountToPay = Pricing.applyCoupon(r.amountToPay, v);
+                    }
+                }
+                r.hold = ledger.reserve(r.wallet, r.amountToPay);
+            } catch (IOException e) {
+                failed(r, e);
+                continue;
+            }
+            if (r.hold == null) {
+                r.status = Status.SALDO_KURANG;
+                giveBack(r);
+                continue;
+            }
+            r.balanceAfter = r.hold.balanceAfter;
+        }
+
+        // journal, new coupon and struk text; the journal writes of a chunk share their flushes
+        IntStream.range(0, n).parallel().forEach(i -> {
+            Result r = results[i];
+            if (r.status != null) return;
+            r.transactionHash = Payments.transactionId(r.wallet.name, r.amountToPay, r.order.ts, r.seq);
+            try {
+                ledger.commit(r.hold, r.transactionHash);
+            } catch (IOException e) {
+                failed(r, e);
+                r.transactionHash = null;
+                return;
+            }
+            r.status = Status.SUKSES;
+            r.newCoupon = Coupons.couponFor(r.transactionHash);
+            try { coupons.issue(r.newCoupon, Coupons.DEFAULT_VALUE); }
+            catch (IOException e) { Metrics.failure("io.failures.coupon", "Gagal menyimpan kupon: " + e.getMessage()); r.newCoupon = null; }
+            r.struk = Struk.render(r.bill, r.amountToPay, r.wallet.name, r.transactionHash, r.balanceAfter,
+                    r.usedCoupon, r.couponValue, r.newCoupon);
+        });
+        return results;
+    }
+
+    private void failed(Result r, IOException e) {
+        r.status = Status.GAGAL_SIMPAN;
+        r.error = e.getMessage();
+        if (r.hold != null) ledger.rollback(r.hold);
+        giveBack(r);
+    }
+
+    private void giveBack(Result r) {
+        if (r.usedCoupon == null) return;
+        try { coupons.release(r.usedCoupon); }
+        catch (IOException e) { Metrics.failure("io.failures.coupon", "Gagal mengembalikan kupon: " + e.getMessage()); }
+    }
+
+    private Result prepare(long seq, String line, Catalog menu) {
+        Result r = new Result(seq);
+        try {
+            r.order = ReplayOrder.parse(seq, line);
+        } catch (RuntimeException e) {
+            r.status = Status.FORMAT_SALAH; r.error = e.getMessage();
+            return r;
+        }
+        ReplayOrder o = r.order;
+        if (o.names.length == 0) { r.status = Status.PESANAN_KOSONG; return r; }
+
+        // unknown items are refused, as the till and the order server do
+        OrderLines lines = new OrderLines(o.names.length);
+        for (int i = 0; i < o.names.length; i++) {
+            int id = menu.find(o.names[i]);
+            if (id == Catalog.NOT_FOUND) { r.status = Status.MENU_TIDAK_ADA; r.error = o.names[i]; return r; }
+            lines.add(id, o.qty[i]);
+        }
+        r.bill = new Bill(lines, menu);
+        r.amountToPay = r.bill.amountToPay();
+
+        r.wallet = ledger.wallet(o.wallet);
+        if (r.wallet == null) { r.status = Status.WALLET_TIDAK_ADA; return r; }
+        if (o.password == null || !r.wallet.verify(o.password)) { r.status = Status.VERIFIKASI_GAGAL; return r; }
+        return r;
+    }
+
+    // --=== [Stream a whole file] ===--
+    public long[] run(BufferedReader in, Writer hasil, Writer struk) throws IOException {
+        long[] perStatus = new long[Status.values().length];
+        String[] lines = new String[CHUNK];
+        long seq = 1;
+        String line;
+        int n = 0;
+        hasil.write("seq,status,total_bayar,transaksi_id,kupon_baru\n");
+        while (true) {
+            line = in.readLine();
+            if (line != null) {
+                if (line.isBlank()) continue;
+                lines[n++] = line;
+                if (n < CHUNK) continue;
+            }
+            if (n > 0) {
+                Result[] results = processChunk(lines, seq, n);
+                for (Result r : results) {
+                    perStatus[r.status.ordinal()]++;
+                    hasil.write(r.seq + "," + r.status + "," + r.amountToPay + ","
+                            + (r.transactionHash == null ? "" : r.transactionHash) + ","
+                            + (r.newCoupon == null ? "" : r.newCoupon) + "\n");
+                    if (r.status != Status.SUKSES) continue;
+                    struk.write(r.struk);
+                    struk.write("\n");
+                }
+                seq += n;
+                n = 0;
+            }
+            if (line == null) break;
+        }
+        return perStatus;
+    }
+
+    // exits with 2 on bad arguments
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args[0].startsWith("--")) usage("File pesanan belum diberikan");
+        Path input = Paths.get(args[0]);
+        Path outDir = Paths.get("replay-out");
+        File couponFile = new File("coupons.txt");
+        Path dompet = null, kupon = null;
+        for (int i = 1; i < args.length; i++) {
+            try {
+                switch (args[i]) {
+                    case "--out": outDir = Paths.get(args[++i]); break;
+                    case "--coupons": couponFile = new File(args[++i]); break;
+                    case "--dompet": dompet = Paths.get(args[++i]); break;
+                    case "--kupon": kupon = Paths.get(args[++i]); break;
+                    default: usage("Opsi tidak dikenal: " + args[i]);
+                }
+            } catch (ArrayIndexOutOfBoundsException e) {
+                usage("Opsi " + args[i - 1] + " butuh nilai");
+            }
+        }
+        Files.createDirectories(outDir);
+        Path menu = Paths.get("menu.csv");
+        if (Files.exists(menu)) MenuCatalog.load(menu);
+
+        // a fresh till per run unless pointed at existing stores
+        if (dompet == null) { dompet = outDir.resolve("dompet"); deleteTree(dompet); }
+        if (kupon == null) { kupon = outDir.resolve("kupon"); deleteTree(kupon); }
+
+        long start = System.nanoTime();
+        long[] perStatus;
+        try (WalletLedger ledger = WalletLedger.open(dompet, Wallet.defaults(), false);
+             CouponStore coupons = CouponStore.openOrImport(kupon, couponFile, false);
+             BufferedReader in = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             Writer hasil = Files.newBufferedWriter(outDir.resolve("hasil.csv"), StandardCharsets.UTF_8);
+             Writer struk = Files.newBufferedWriter(outDir.resolve("struk.txt"), StandardCharsets.UTF_8)) {
+            perStatus = new ReplayEngine(ledger, coupons).run(in, hasil, struk);
+        }
+        long ms = (System.nanoTime() - start) / 1_000_000;
+
+        long total = 0;
+        for (long c : perStatus) total += c;
+        System.out.printf("✅ Replay selesai: %,d pesanan dalam %,d ms (%s)\n", total, ms, outDir);
+        for (Status s : Status.values()) if (perStatus[s.ordinal()] > 0) System.out.printf("   %-17s: %,d\n", s, perStatus[s.ordinal()]);
+    }
+
+    private static void usage(String problem) {
+        System.out.println("❌ " + problem);
+        System.out.println("Pemakaian: ReplayEngine <orders.jsonl> [--out dir] [--coupons coupons.txt] [--dompet dir] [--kupon dir]");
+        System.exit(2);
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root)) return;
+        try (var paths = Files.walk(root)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+        }
+    }
+}
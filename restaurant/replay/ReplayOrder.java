@@ -0,0 +1,55 @@
+package restaurant.replay;
+
+import java.util.*;
+
+// --=== [One order line from a replay file] ===--
+// {"items":[{"name":"Bibimbap","qty":2},{"name":"Soju"}],"wallet":"myaccount",
+//  "password":"myaccount","coupon":"<hash>","ts":1700000000000}
+// "items" may also be a list of names with a parallel "qty" list.
+public class ReplayOrder {
+    public final long seq;
+    public final String[] names;
+    public final int[] qty;
+    public final String wallet;
+    public final String password;
+    public final String coupon;
+    public final long ts;
+
+    ReplayOrder(long seq, String[] names, int[] qty, String wallet, String password, String coupon, long ts) {
+        this.seq = seq; this.names = names; this.qty = qty;
+        this.wallet = wallet; this.password = password; this.coupon = coupon; this.ts = ts;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static ReplayOrder parse(long seq, String line) {
+        Object root = Json.parse(line);
+        if (!(root instanceof Map)) throw new IllegalArgumentException("baris bukan objek JSON");
+        Map<String, Object> m = (Map<String, Object>) root;
+
+        List<Object> items = m.get("items") instanceof List ? (List<Object>) m.get("items") : List.of();
+        List<Object> qtys = m.get("qty") instanceof List ? (List<Object>) m.get("qty") : List.of();
+        String[] names = new String[items.size()];
+        int[] qty = new int[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            Object it = items.get(i);
+            Object q = null;
+            if (it instanceof Map) {
+                Map<String, Object> im = (Map<String, Object>) it;
+                names[i] = str(im.get("name"));
+                q = im.get("qty");
+            } else {
+                names[i] = str(it);
+                if (i < qtys.size()) q = qtys.get(i);
+            }
+            int n = q instanceof Number ? ((Number) q).intValue() : 1;
+            qty[i] = n < 1 ? 1 : n;
+        }
+
+        String coupon = str(m.get("coupon"));
+        if (coupon != null && coupon.isBlank()) coupon = null;
+        long ts = m.get("ts") instanceof Number ? ((Number) m.get("ts")).longValue() : System.currentTimeMillis();
+        return new ReplayOrder(seq, names, qty, str(m.get("wallet")), str(m.get("password")), coupon == null ? null : coupon.trim(), ts);
+    }
+
+    private static String str(Object o) { return o == null ? null : o.toString(); }
+}
@@ -0,0 +1,270 @@
+package restaurant.server;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import restaurant.coupon.CouponIndex;
+import restaurant.coupon.CouponStore;
+import restaurant.kitchen.Kitchen;
+import restaurant.menu.Catalog;
+import restaurant.menu.MenuCatalog;
+import restaurant.menu.MenuItem;
+import restaurant.order.Bill;
+import restaurant.order.OrderLines;
+import restaurant.order.Pricing;
+import restaurant.payment.Checkout;
+import restaurant.payment.Wallet;
+import restaurant.payment.WalletLedger;
+import restaurant.receipt.ReceiptArchive;
+import restaurant.receipt.ReceiptJournal;
+import restaurant.replay.Json;
+import restaurant.replay.ReplayOrder;
+import restaurant.util.Metrics;
+
+// --=== [Local order API] ===--
+// One backend for the CLI, the desktop app and kitchen displays on the same
+// machine: it owns the coupon store, the wallet journal and struk.txt. Built on
+// the JDK HTTP server with one virtual thread per request. Bodies are JSON in
+// the same shape as replay orders; payment goes through Checkout.
+//   GET  /menu                                         -> menu items
+//   POST /quote  {"items":[{"name":"Soju","qty":2}],"coupon":"<hash>"}
+//   POST /pay    {"items":[...],"wallet":"myaccount","password":"...","coupon":"<hash>"}
+//   GET  /coupon?code=<hash>                           -> {"valid":true,"value":50000}
+//   GET  /struk?tx=<transaksi id>                      -> archived struk as text
+//   GET  /metrics                                      -> counters and latencies as text
+//   java -cp class restaurant.server.OrderServer [--port 8080] [--bind 127.0.0.1]
+public class OrderServer implements Closeable {
+    public static final int DEFAULT_PORT = 8080;
+
+    // headers and body go out as two writes; without TCP_NODELAY every
+    // keep-alive reply waits on the client's delayed ACK (~1k req/s cap)
+    static {
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer http;
+    private final ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor();
+    private final CouponStore coupons;
+    private final WalletLedger ledger;
+    private final ReceiptJournal receipts;
+    private final ReceiptArchive archive;   // null = no /struk lookup
+    private final Kitchen kitchen;          // null = no kitchen tickets
+    private final Checkout checkout;
+
+    public OrderServer(InetSocketAddress addr, CouponStore coupons, WalletLedger ledger, ReceiptJournal receipts) throws IOException {
+        this(addr, coupons, ledger, receipts, null);
+    }
+
+    public OrderServer(InetSocketAddress addr, CouponStore coupons, WalletLedger ledger, ReceiptJournal receipts,
+                       ReceiptArchive archive) throws IOException {
+        this(addr, coupons, ledger, receipts, archive, null);
+    }
+
+    public OrderServer(InetSocketAddress addr, CouponStore coupons, WalletLedger ledger, ReceiptJournal receipts,
+                       ReceiptArchive archive, Kitchen kitchen) throws IOException {
+        this.coupons = coupons; this.ledger = ledger; this.receipts = receipts; this.archive = archive; this.kitchen = kitchen;
+        this.checkout = new Checkout(ledger, coupons, receipts, archive, kitchen);
+        http = HttpServer.create(addr, 1024);
+        http.setExecutor(pool);
+        route("/menu", "GET", this::menu);
+        route("/quote", "POST", this::quote);
+        route("/pay", "POST", this::pay);
+        route("/coupon", "GET", this::coupon);
+        http.createContext("/metrics", ex -> {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            Metrics.dump(new PrintStream(buf, true, StandardCharsets.UTF_8));
+            ex.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            ex.sendResponseHeaders(200, buf.size());
+            try (OutputStream os = ex.getResponseBody()) { buf.writeTo(os); }
+        });
+        http.createContext("/struk", this::struk);
+    }
+
+    public void start() { http.start(); }
+
+    public int port() { return http.getAddress().getPort(); }
+
+    // stops accepting, gives running requests a moment, then closes the stores
+    @Override
+    public void close() throws IOException {
+        http.stop(1);
+        pool.shutdown();
+        try { pool.awaitTermination(10, TimeUnit.SECONDS); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        if (kitchen != null) kitchen.close();
+        receipts.close();
+        if (archive != null) archive.close();
+        coupons.close();
+        ledger.close();
+    }
+
+    // --=== [Routing] ===--
+    static final class Reply {
+        final int status;
+        final String json;
+        Reply(int status, String json) { this.status = status; this.json = json; }
+        static Reply ok(String json) { return new Reply(200, json); }
+        static Reply error(int status, String msg) { return new Reply(status, "{\"error\":" + Json.quote(msg) + "}"); }
+    }
+
+    interface Handler {
+        Reply handle(HttpExchange ex, String body) throws Exception;
+    }
+
+    private void route(String path, String method, Handler h) {
+        http.createContext(path, ex -> {
+            Reply r;
+            try {
+                if (!ex.getRequestMethod().equals(method)) r = Reply.error(405, "gunakan " + method);
+                else if (!ex.getRequestURI().getPath().equals(path)) r = Reply.error(404, "tidak ada: " + ex.getRequestURI().getPath());
+                else r = h.handle(ex, new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                r = Reply.error(400, e.getMessage());
+            } catch (Exception e) {
+                // the details go to the log, not to the client
+                Metrics.failure("server.failures", "Kesalahan server di " + path + ": " + e);
+                r = Reply.error(500, "kesalahan internal server");
+            }
+            byte[] out = r.json.getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            ex.sendResponseHeaders(r.status, out.length);
+            try (OutputStream os = ex.getResponseBody()) { os.write(out); }
+        });
+    }
+
+    // --=== [Endpoints] ===--
+    private Reply menu(HttpExchange ex, String body) {
+        Catalog c = MenuCatalog.current();
+        StringBuilder sb = new StringBuilder(64 * c.size()).append('[');
+        for (int id = 0; id < c.size(); id++) {
+            MenuItem m = c.item(id);
+            if (id > 0) sb.append(',');
+            sb.append("{\"id\":").append(id).append(",\"name\":").append(Json.quote(m.getNama()))
+              .append(",\"price\":").append(m.getHarga()).append(",\"category\":").append(Json.quote(m.getKategori())).append('}');
+        }
+        return Reply.ok(sb.append(']').toString());
+    }
+
+    private Reply quote(HttpExchange ex, String body) {
+        ReplayOrder o = ReplayOrder.parse(0, body);
+        Catalog c = MenuCatalog.current();
+        Bill bill = new Bill(lines(o, c), c);
+        long couponValue = 0;
+        if (o.coupon != null) {
+            long v = coupons.get(o.coupon);
+            if (v == CouponIndex.NOT_FOUND) return Reply.error(404, "kupon tidak ditemukan");
+            couponValue = v;
+        }
+        Pricing.Quote q = Pricing.quote(bill.subtotal, couponValue);
+        StringBuilder sb = new StringBuilder(256).append('{');
+        appendLines(sb, bill);
+        sb.append(",\"subtotal\":").append(q.subtotal).append(",\"discount\":").append(q.discount)
+          .append(",\"tax\":").append(q.tax).append(",\"serviceFee\":").append(q.serviceFee)
+          .append(",\"coupon\":").append(q.couponValue).append(",\"total\":").append(q.total)
+          .append(",\"promo\":").append(Json.quote(bill.promoDrink)).append('}');
+        return Reply.ok(sb.toString());
+    }
+
+    private Reply pay(HttpExchange ex, String body) throws Exception {
+        ReplayOrder o = ReplayOrder.parse(0, body);
+        Catalog c = MenuCatalog.current();
+        Checkout.Result r = checkout.pay(new Bill(lines(o, c), c), o.wallet, o.password, o.coupon, null);
+        switch (r.status) {
+            case WALLET_TIDAK_ADA: return Reply.error(404, "wallet tidak ada: " + o.wallet);
+            case VERIFIKASI_GAGAL: return Reply.error(401, "verifikasi gagal");
+            case KUPON_TIDAK_VALID: return Reply.error(409, "kupon tidak valid");
+            case SALDO_KURANG: return Reply.error(402, "saldo tidak cukup");
+            default: break;
+        }
+        StringBuilder sb = new StringBuilder(r.struk.length() + 256).append("{\"status\":\"SUKSES\",\"transaction\":").append(Json.quote(r.transactionId))
+          .append(",\"total\":").append(r.amountToPay).append(",\"balance\":").append(r.balanceAfter)
+          .append(",\"newCoupon\":").append(Json.quote(r.newCoupon)).append(",\"struk\":").append(Json.quote(r.struk)).append('}');
+        return Reply.ok(sb.toString());
+    }
+
+    private Reply coupon(HttpExchange ex, String body) {
+        String code = queryParam(ex.getRequestURI(), "code");
+        if (code == null || code.isBlank()) throw new IllegalArgumentException("parameter code wajib diisi");
+        long v = coupons.get(code.trim());
+        if (v == CouponIndex.NOT_FOUND) return Reply.ok("{\"valid\":false}");
+        return Reply.ok("{\"valid\":true,\"value\":" + v + "}");
+    }
+
+    // plain text like the printed struk; errors stay JSON like every other route
+    private void struk(HttpExchange ex) throws IOException {
+        String tx = queryParam(ex.getRequestURI(), "tx");
+        Reply err = null;
+        ReceiptArchive.Receipt r = null;
+        if (!ex.getRequestMethod().equals("GET")) err = Reply.error(405, "gunakan GET");
+        else if (archive == null) err = Reply.error(404, "arsip struk tidak aktif");
+        else if (tx == null || tx.isBlank()) err = Reply.error(400, "parameter tx wajib diisi");
+        else if ((r = archive.get(tx.trim())) == null) err = Reply.error(404, "transaksi tidak ditemukan: " + tx.trim());
+        byte[] out = (err != null ? err.json : r.render()).getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", err != null ? "application/json; charset=utf-8" : "text/plain; charset=utf-8");
+        ex.sendResponseHeaders(err != null ? err.status : 200, out.length);
+        try (OutputStream os = ex.getResponseBody()) { os.write(out); }
+    }
+
+    // --=== [Helpers] ===--
+    private static OrderLines lines(ReplayOrder o, Catalog c) {
+        if (o.names.length == 0) throw new IllegalArgumentException("pesanan kosong");
+        OrderLines lines = new OrderLines(o.names.length);
+        for (int i = 0; i < o.names.length; i++) {
+            int id = c.find(o.names[i]);
+            if (id == Catalog.NOT_FOUND) throw new IllegalArgumentException("menu tidak ditemukan: " + o.names[i]);
+            lines.add(id, o.qty[i]);
+        }
+        return lines;
+    }
+
+    private static void appendLines(StringBuilder sb, Bill bill) {
+        sb.append("\"lines\":[");
+        for (int i = 0; i < bill.orders; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"name\":").append(Json.quote(bill.names[i])).append(",\"qty\":").append(bill.qty[i])
+              .append(",\"price\":").append(bill.pricePerSlot[i]).append(",\"total\":").append(bill.slotTotal(i)).append('}');
+        }
+        sb.append(']');
+    }
+
+    private static String queryParam(URI uri, String name) {
+        String q = uri.getRawQuery();
+        if (q == null) return null;
+        for (String kv : q.split("&")) {
+            int eq = kv.indexOf('=');
+            String k = eq < 0 ? kv : kv.substring(0, eq);
+            if (k.equals(name)) return eq < 0 ? "" : java.net.URLDecoder.decode(kv.substring(eq + 1), StandardCharsets.UTF_8);
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        String bind = "127.0.0.1";
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--port")) port = Integer.parseInt(args[i + 1]);
+            else if (args[i].equals("--bind")) bind = args[i + 1];
+        }
+        Metrics.init();
+        MenuCatalog.init(Paths.get("menu.csv"), 2000);
+        CouponStore coupons = CouponStore.openOrImport(Paths.get("kupon"), new File("coupons.txt"));
+        WalletLedger ledger = WalletLedger.open(Paths.get("dompet"), Wallet.defaults());
+        ReceiptJournal receipts = ReceiptJournal.open(Paths.get("struk.txt"));
+        ReceiptArchive archive = ReceiptArchive.open(Paths.get("arsip"));
+        Kitchen kitchen = Kitchen.open(Paths.get("dapur"));
+
+        OrderServer server = new OrderServer(new InetSocketAddress(bind, port), coupons, ledger, receipts, archive, kitchen);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try { server.close(); } catch (IOException e) { System.out.println("⚠️ Gagal menutup server: " + e.getMessage()); }
+        }, "server-stop"));
+        server.start();
+        System.out.printf("🌐 Server pesanan aktif di http://%s:%d (menu, quote, pay, coupon, struk)\n", bind, server.port());
+    }
+}
@@ -0,0 +1,272 @@
+package restaurant.sim;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+import restaurant.coupon.CouponStore;
+import restaurant.kitchen.Kitchen;
+import restaurant.menu.Catalog;
+import restaurant.menu.MenuCatalog;
+import restaurant.order.Bill;
+import restaurant.order.OrderLines;
+import restaurant.payment.Checkout;
+import restaurant.payment.Wallet;
+import restaurant.payment.WalletLedger;
+import restaurant.receipt.ReceiptArchive;
+import restaurant.receipt.ReceiptJournal;
+import restaurant.replay.ReplayOrder;
+import restaurant.util.LatencyHistogram;
+
+// --=== [Traffic simulator] ===--
+// Drives the real order flow (cart -> Bill -> Checkout with coupon store,
+// wallet journal and struk journal) in-process and reports throughput plus
+// p50/p99/p999 per stage. Stores live in a scratch folder so real data is
+// never touched; wallets get a huge balance so the run never runs dry.
+//
+// Customers arrive as a Poisson process at --rate orders/s (0 = closed loop,
+// next order as soon as a slot frees up), at most --concurrency in flight.
+// "total" is measured from the scheduled arrival, so queueing is included.
+//   java -cp class restaurant.sim.TrafficSim [--orders 20000] [--rate 0] [--concurrency 64]
+//        [--items 3] [--coupon-rate 0.2] [--seed 1] [--dir sim-out]
+//   java -cp class restaurant.sim.TrafficSim --trace orders.jsonl [--speed 10] [--concurrency 64]
+// With --speed the trace's "ts" gaps are replayed (divided by speed); without it
+// trace orders arrive at --rate like synthetic ones.
+public class TrafficSim {
+
+    static final String[] WALLETS = {"myaccount", "mybank", "mysecret"};
+    static final double[] WALLET_SHARE = {0.5, 0.3, 0.2};
+
+    enum Phase { ORDER, PRICE, VERIFY, HOLD, COUPON, JOURNAL, KITCHEN, ISSUE, STRUK, PERSIST, TOTAL }
+
+    final Map<Phase, LatencyHistogram> latency = new EnumMap<>(Phase.class);
+    final AtomicLongArray outcomes = new AtomicLongArray(Checkout.Status.values().length + 1);   // last slot = error
+    final ConcurrentLinkedQueue<String> unusedCoupons = new ConcurrentLinkedQueue<>();
+    final Checkout checkout;
+    final Kitchen kitchen;      // station latency rows, null = none
+    final int concurrency;
+    final double itemsMean;
+    final double couponRate;
+
+    TrafficSim(Checkout checkout, Kitchen kitchen, int concurrency, double itemsMean, double couponRate) {
+        this.checkout = checkout; this.kitchen = kitchen; this.concurrency = concurrency;
+        this.itemsMean = itemsMean; this.couponRate = couponRate;
+        for (Phase p : Phase.values()) latency.put(p, new LatencyHistogram());
+    }
+
+    // --=== [One customer] ===--
+    // trace == null: synthetic cart drawn from the menu with the given random source
+    void order(long scheduled, ReplayOrder trace, SplittableRandom rnd) {
+        try {
+            long t = System.nanoTime();
+            Catalog menu = MenuCatalog.current();
+            OrderLines lines = new OrderLines();
+            String wallet, password, coupon;
+            if (trace == null) {
+                int n = 1 + geometric(rnd, itemsMean - 1);
+                for (int i = 0; i < n; i++) lines.add(rnd.nextInt(menu.size()), 1 + rnd.nextInt(3));
+                wallet = pickWallet(rnd); password = wallet;
+                coupon = rnd.nextDouble() < couponRate ? unusedCoupons.poll() : null;
+            } else {
+                for (int i = 0; i < trace.names.length; i++) {
+                    int id = menu.find(trace.names[i]);
+                    if (id != Catalog.NOT_FOUND) lines.add(id, trace.qty[i]);
+                }
+                wallet = trace.wallet; password = trace.password; coupon = trace.coupon;
+            }
+            if (lines.isEmpty()) { outcomes.incrementAndGet(outcomes.length() - 1); return; }
+            t = mark(Phase.ORDER, t);
+
+            Bill bill = new Bill(lines, menu);
+            mark(Phase.PRICE, t);
+
+            Checkout.Result r = checkout.pay(bill, wallet, password, coupon,
+                    (stage, nanos) -> latency.get(Phase.valueOf(stage.name())).record(nanos));
+            outcomes.incrementAndGet(r.status.ordinal());
+            if (r.newCoupon != null) unusedCoupons.offer(r.newCoupon);
+        } catch (Exception e) {
+            outcomes.incrementAndGet(outcomes.length() - 1);
+        } finally {
+            latency.get(Phase.TOTAL).record(System.nanoTime() - scheduled);
+        }
+    }
+
+    private long mark(Phase p, long since) {
+        long now = System.nanoTime();
+        latency.get(p).record(now - since);
+        return now;
+    }
+
+    static int geometric(SplittableRandom rnd, double mean) {
+        if (mean <= 0) return 0;
+        double p = 1.0 / (mean + 1);
+        return (int) Math.floor(Math.log(1 - rnd.nextDouble()) / Math.log(1 - p));
+    }
+
+    static String pickWallet(SplittableRandom rnd) {
+        double x = rnd.nextDouble();
+        for (int i = 0; i < WALLETS.length - 1; i++) { if ((x -= WALLET_SHARE[i]) < 0) return WALLETS[i]; }
+        return WALLETS[WALLETS.length - 1];
+    }
+
+    // --=== [Arrival loop] ===--
+    // Sources yield (arrival offset in ns, trace order or null); offsets < 0 mean "now".
+    interface Source {
+        boolean next(long[] offset, ReplayOrder[] order) throws IOException;
+    }
+
+    long run(Source src, long seed) throws Exception {
+        Semaphore slots = new Semaphore(concurrency);
+        SplittableRandom root = new SplittableRandom(seed);
+        long[] offset = new long[1];
+        ReplayOrder[] trace = new ReplayOrder[1];
+        long start = System.nanoTime();
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (src.next(offset, trace)) {
+                long scheduled = offset[0] < 0 ? System.nanoTime() : start + offset[0];
+                long wait;
+                while ((wait = scheduled - System.nanoTime()) > 0) LockSupport.parkNanos(wait);
+                slots.acquire();
+                if (offset[0] < 0) scheduled = System.nanoTime();
+                long at = scheduled;
+                ReplayOrder o = trace[0];
+                SplittableRandom rnd = root.split();
+                pool.execute(() -> { try { order(at, o, rnd); } finally { slots.release(); } });
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    static Source synthetic(long orders, double rate, long seed) {
+        SplittableRandom rnd = new SplittableRandom(seed ^ 0x5DEECE66DL);
+        return new Source() {
+            long sent; double at;
+            public boolean next(long[] offset, ReplayOrder[] order) {
+                if (sent++ >= orders) return false;
+                if (rate > 0) at += -Math.log(1 - rnd.nextDouble()) / rate * 1e9;
+                offset[0] = rate > 0 ? (long) at : -1;
+                order[0] = null;
+                return true;
+            }
+        };
+    }
+
+    static Source trace(BufferedReader in, double speed, double rate, long seed) {
+        SplittableRandom rnd = new SplittableRandom(seed ^ 0x5DEECE66DL);
+        return new Source() {
+            long seq; long firstTs = Long.MIN_VALUE; double at;
+            public boolean next(long[] offset, ReplayOrder[] order) throws IOException {
+                while (true) {
+                    String line = in.readLine();
+                    if (line == null) return false;
+                    if (line.isBlank()) continue;
+                    ReplayOrder o;
+                    try { o = ReplayOrder.parse(++seq, line); } catch (RuntimeException e) { continue; }
+                    if (speed > 0) {
+                        if (firstTs == Long.MIN_VALUE) firstTs = o.ts;
+                        offset[0] = (long) (Math.max(0, o.ts - firstTs) * 1e6 / speed);
+                    } else if (rate > 0) {
+                        at += -Math.log(1 - rnd.nextDouble()) / rate * 1e9;
+                        offset[0] = (long) at;
+                    } else offset[0] = -1;
+                    order[0] = o;
+                    return true;
+                }
+            }
+        };
+    }
+
+    // --=== [Report] ===--
+    void report(PrintStream out, long elapsedNanos) {
+        long done = latency.get(Phase.TOTAL).count();
+        double sec = elapsedNanos / 1e9;
+        out.printf("✅ Simulasi selesai: %,d pesanan dalam %,.0f ms (%,.0f pesanan/detik), konkurensi %d\n",
+                done, sec * 1000, done / sec, concurrency);
+        for (Checkout.Status s : Checkout.Status.values())
+            if (outcomes.get(s.ordinal()) > 0) out.printf("   %-17s: %,d\n", s, outcomes.get(s.ordinal()));
+        long err = outcomes.get(outcomes.length() - 1);
+        if (err > 0) out.printf("   %-17s: %,d\n", "GAGAL", err);
+
+        out.printf("\n%-8s %10s %10s %10s %10s %10s %10s\n", "tahap", "jumlah", "rata2 µs", "p50 µs", "p99 µs", "p999 µs", "maks µs");
+        for (Phase p : Phase.values()) {
+            LatencyHistogram h = latency.get(p);
+            if (h.count() == 0) continue;
+            row(out, p.name().toLowerCase(), h);
+        }
+        if (kitchen == null) return;
+        // payment -> station handoff, seen from the station thread
+        out.println();
+        for (Kitchen.Station s : Kitchen.Station.values())
+            if (kitchen.latency(s).count() > 0) row(out, "→" + s.name().toLowerCase(), kitchen.latency(s));
+        long spilled = kitchen.spilled();
+        if (spilled > 0) out.printf("   tiket melewati kapasitas antrean dapur: %,d\n", spilled);
+        long refused = kitchen.refused();
+        if (refused > 0) out.printf("   tiket ditolak dapur (antrean cadangan penuh): %,d\n", refused);
+    }
+
+    private static void row(PrintStream out, String name, LatencyHistogram h) {
+        out.printf("%-8s %,10d %,10.1f %,10.1f %,10.1f %,10.1f %,10.1f\n", name, h.count(),
+                h.mean() / 1e3, h.percentile(50) / 1e3, h.percentile(99) / 1e3, h.percentile(99.9) / 1e3, h.max() / 1e3);
+    }
+
+    public static void main(String[] args) throws Exception {
+        long orders = 20_000, seed = 1;
+        double rate = 0, items = 3, couponRate = 0.2, speed = 0;
+        int concurrency = 64;
+        Path trace = null, dir = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String v = args[i + 1];
+            switch (args[i]) {
+                case "--orders": orders = Long.parseLong(v); break;
+                case "--rate": rate = Double.parseDouble(v); break;
+                case "--concurrency": concurrency = Integer.parseInt(v); break;
+                case "--items": items = Double.parseDouble(v); break;
+                case "--coupon-rate": couponRate = Double.parseDouble(v); break;
+                case "--seed": seed = Long.parseLong(v); break;
+                case "--trace": trace = Paths.get(v); break;
+                case "--speed": speed = Double.parseDouble(v); break;
+                case "--dir": dir = Paths.get(v); break;
+                default:
+                    System.out.println("Opsi tidak dikenal: " + args[i]);
+                    return;
+            }
+        }
+        Path menu = Paths.get("menu.csv");
+        if (Files.exists(menu)) MenuCatalog.load(menu);
+
+        boolean scratch = dir == null;
+        if (scratch) dir = Files.createTempDirectory("kdelights-sim");
+        Wallet[] wallets = new Wallet[WALLETS.length];
+        for (int i = 0; i < wallets.length; i++) wallets[i] = new Wallet(WALLETS[i], 1_000_000_000_000_000L, WALLETS[i]);
+
+        long elapsed;
+        TrafficSim sim;
+        try (CouponStore coupons = CouponStore.open(dir.resolve("kupon"), true);
+             WalletLedger ledger = WalletLedger.open(dir.resolve("dompet"), wallets);
+             ReceiptJournal receipts = ReceiptJournal.open(dir.resolve("struk.txt"));
+             ReceiptArchive archive = ReceiptArchive.open(dir.resolve("arsip"));
+             Kitchen kitchen = Kitchen.open(dir.resolve("dapur"))) {
+            sim = new TrafficSim(new Checkout(ledger, coupons, receipts, archive, kitchen), kitchen, concurrency, items, couponRate);
+            if (trace == null) {
+                elapsed = sim.run(synthetic(orders, rate, seed), seed);
+            } else {
+                try (BufferedReader in = Files.newBufferedReader(trace, StandardCharsets.UTF_8)) {
+                    elapsed = sim.run(trace(in, speed, rate, seed), seed);
+                }
+            }
+        }
+        sim.report(System.out, elapsed);
+        if (scratch) deleteTree(dir);
+    }
+
+    static void deleteTree(Path dir) throws IOException {
+        try (Stream<Path> s = Files.walk(dir)) {
+            s.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package restaurant.util;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// --=== [Append-only file with group commit] ===--
+// append() only copies the record into a memory buffer and returns its
+// sequence number. sync(seq) makes it durable: the first caller to arrive
+// becomes the leader, writes everything buffered so far and fsyncs once,
+// while later callers wait for that (or the next) flush. Under load many
+// records share one fsync.
+//
+// write() hands the record to the file (the page cache) at once instead.
+// fsync covers the whole file, so once a record is durable, so is everything
+// any process wrote before it; callers that order their records with a
+// cross-process lock get that order on disk without holding the lock
+// through the fsync.
+//
+// A failed write or fsync fails the records it carried, and their callers get
+// the error; later records get a fresh try instead of the same error forever.
+public class GroupCommitLog implements Closeable {
+    private final FileChannel ch;
+    private final OutputStream out;
+    private final boolean fsync;
+    private final LatencyHistogram flushTime;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushed = lock.newCondition();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream(8192);   // guarded by lock
+    private long appended;   // guarded by lock
+    private long durable;    // guarded by lock
+    private long written;    // guarded by lock; handed to the file, maybe not durable
+    private boolean flushing;
+    private IOException failure;            // guarded by lock; the last failed batch,
+    private long failedFrom, failedUpTo;    // and the records it carried
+
+    public GroupCommitLog(Path file, boolean fsync) throws IOException {
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        this.ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.out = Channels.newOutputStream(ch);
+        this.fsync = fsync;
+        this.flushTime = Metrics.latency("io.flush." + file.getFileName());
+    }
+
+    public long append(byte[] record) {
+        lock.lock();
+        try {
+            pending.write(record, 0, record.length);
+            return ++appended;
+        } finally { lock.unlock(); }
+    }
+
+    public long append(String line) { return append(line.getBytes(StandardCharsets.UTF_8)); }
+
+    // Appends and writes (without fsync) everything buffered so far.
+    public long write(String line) throws IOException {
+        lock.lock();
+        try {
+            long seq = append(line);
+            writePending();
+            return seq;
+        } finally { lock.unlock(); }
+    }
+
+    // Blocks until record seq (and everything before it) is on disk.
+    public void sync(long seq) throws IOException {
+        lock.lock();
+        try {
+            while (true) {
+                if (failure != null && seq >= failedFrom && seq <= failedUpTo) throw failure;
+                if (durable >= seq) return;
+                if (flushing) { flushed.awaitUninterruptibly(); continue; }
+                flushing = true;
+                long t = System.nanoTime(), upTo = appended;
+                IOException err = null;
+                try {
+                    writePending();
+                    lock.unlock();
+                    try { if (fsync) ch.force(false); } finally { lock.lock(); }
+                } catch (IOException e) { err = e; }
+                flushing = false;
+                if (err != null) fail(err, durable + 1, upTo); else durable = upTo;
+                flushTime.record(System.nanoTime() - t);
+                flushed.signalAll();
+            }
+        } finally { lock.unlock(); }
+    }
+
+    public long appendAndSync(String line) throws IOException {
+        long seq = append(line);
+        sync(seq);
+        return seq;
+    }
+
+    // sequence number of the last record known to be durable
+    public long durable() {
+        lock.lock();
+        try { return durable; } finally { lock.unlock(); }
+    }
+
+    // caller holds lock; the write only reaches the page cache, so appenders
+    // wait for a memory copy, never for the disk
+    private void writePending() throws IOException {
+        long from = written + 1, to = appended;
+        try {
+            pending.writeTo(out);
+        } catch (IOException e) {
+            fail(e, from, to);
+            throw e;
+        } finally {
+            pending.reset();
+            written = to;
+        }
+    }
+
+    // caller holds lock
+    private void fail(IOException e, long from, long to) {
+        failure = e;
+        failedFrom = from;
+        failedUpTo = to;
+    }
+
+    @Override
+    public void close() throws IOException {
+        long last;
+        lock.lock();
+        try { last = appended; } finally { lock.unlock(); }
+        sync(last);
+        ch.close();
+    }
+}
@@ -0,0 +1,15 @@
+package restaurant.util;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// --=== [Unique ID source] ===--
+// A random per-process nonce plus a process-wide counter. Mixed into hashed
+// IDs so two sales in the same millisecond (same or other terminal) never
+// produce the same input.
+public class Ids {
+    private static final String NONCE = Long.toHexString(new SecureRandom().nextLong());
+    private static final AtomicLong COUNTER = new AtomicLong();
+
+    public static String next() { return NONCE + ":" + COUNTER.incrementAndGet(); }
+}
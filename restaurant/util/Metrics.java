@@ -0,0 +1,163 @@
+package restaurant.util;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+// --=== [Metrics registry] ===--
+// Named counters (LongAdder) and latency histograms, created on first use and
+// shared by the whole process. Hot paths keep the returned object in a static
+// field, so recording is just an add. Everything shows up over JMX under
+// restaurant:type=Counter|Latency once exportJmx() ran, and in a periodic text
+// dump when -Dkdelights.metrics.dump=<file> is set (interval:
+// -Dkdelights.metrics.intervalMs, default 60000).
+public final class Metrics {
+
+    private static final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, String> lastError = new ConcurrentHashMap<>();
+    private static volatile MBeanServer jmx;
+    private static Thread dumper;
+
+    private Metrics() { }
+
+    public static LongAdder counter(String name) {
+        LongAdder c = counters.get(name);
+        if (c != null) return c;
+        LongAdder fresh = new LongAdder();
+        c = counters.putIfAbsent(name, fresh);
+        if (c != null) return c;
+        if (jmx != null) register("Counter", name, new CounterBean(name, fresh), CounterView.class);
+        return fresh;
+    }
+
+    public static LatencyHistogram latency(String name) {
+        LatencyHistogram h = latencies.get(name);
+        if (h != null) return h;
+        LatencyHistogram fresh = new LatencyHistogram();
+        h = latencies.putIfAbsent(name, fresh);
+        if (h != null) return h;
+        if (jmx != null) register("Latency", name, new LatencyBean(fresh), LatencyView.class);
+        return fresh;
+    }
+
+    // Counts the failure, keeps the message for JMX and still tells the user.
+    public static void failure(String counter, String message) {
+        counter(counter).increment();
+        lastError.put(counter, message);
+        System.out.println("⚠️ " + message);
+    }
+
+    // --=== [Startup] ===--
+    // JMX registration starts the platform MBean server, which takes a while;
+    // it runs on its own thread so no entry point waits for it.
+    public static void init() {
+        Thread t = new Thread(Metrics::exportJmx, "metrics-jmx");
+        t.setDaemon(true);
+        t.start();
+        String file = System.getProperty("kdelights.metrics.dump");
+        if (file != null && !file.isBlank())
+            startDump(Paths.get(file), Long.getLong("kdelights.metrics.intervalMs", 60_000L));
+    }
+
+    // --=== [JMX] ===--
+    public interface CounterView {
+        long getValue();
+        String getLastError();
+    }
+
+    public interface LatencyView {
+        long getCount();
+        double getMeanMicros();
+        double getP50Micros();
+        double getP99Micros();
+        double getP999Micros();
+        double getMaxMicros();
+        void reset();
+    }
+
+    static final class CounterBean implements CounterView {
+        final String name; final LongAdder c;
+        CounterBean(String name, LongAdder c) { this.name = name; this.c = c; }
+        public long getValue() { return c.sum(); }
+        public String getLastError() { return lastError.get(name); }
+    }
+
+    static final class LatencyBean implements LatencyView {
+        final LatencyHistogram h;
+        LatencyBean(LatencyHistogram h) { this.h = h; }
+        public long getCount() { return h.count(); }
+        public double getMeanMicros() { return h.mean() / 1e3; }
+        public double getP50Micros() { return h.percentile(50) / 1e3; }
+        public double getP99Micros() { return h.percentile(99) / 1e3; }
+        public double getP999Micros() { return h.percentile(99.9) / 1e3; }
+        public double getMaxMicros() { return h.max() / 1e3; }
+        public void reset() { h.reset(); }
+    }
+
+    public static synchronized void exportJmx() {
+        if (jmx != null) return;
+        jmx = ManagementFactory.getPlatformMBeanServer();
+        // anything created from here on registers itself; catch up on the rest
+        counters.forEach((n, c) -> register("Counter", n, new CounterBean(n, c), CounterView.class));
+        latencies.forEach((n, h) -> register("Latency", n, new LatencyBean(h), LatencyView.class));
+    }
+
+    private static <T> void register(String type, String name, T bean, Class<T> view) {
+        try {
+            ObjectName on = new ObjectName("restaurant:type=" + type + ",name=" + ObjectName.quote(name));
+            if (!jmx.isRegistered(on)) jmx.registerMBean(new StandardMBean(bean, view), on);
+        } catch (InstanceAlreadyExistsException e) {
+            // registered by a racing caller
+        } catch (Exception e) {
+            System.out.println("⚠️ Metrik " + name + " tidak terdaftar di JMX: " + e.getMessage());
+        }
+    }
+
+    // --=== [Text dump] ===--
+    public static void dump(PrintStream out) {
+        out.printf("# metrik %s\n", LocalDateTime.now().withNano(0));
+        for (String n : new TreeSet<>(counters.keySet())) out.printf("counter %-28s %,d\n", n, counters.get(n).sum());
+        for (String n : new TreeSet<>(latencies.keySet())) {
+            LatencyHistogram h = latencies.get(n);
+            if (h.count() == 0) continue;
+            out.printf("latency %-28s n=%,d mean=%.1fµs p50=%.1fµs p99=%.1fµs p999=%.1fµs max=%.1fµs\n", n, h.count(),
+                    h.mean() / 1e3, h.percentile(50) / 1e3, h.percentile(99) / 1e3, h.percentile(99.9) / 1e3, h.max() / 1e3);
+        }
+    }
+
+    public static synchronized void startDump(Path file, long periodMillis) {
+        if (dumper != null) return;
+        dumper = new Thread(() -> {
+            try {
+                while (true) {
+                    Thread.sleep(periodMillis);
+                    append(file);
+                }
+            } catch (InterruptedException ignored) { }
+        }, "metrics-dump");
+        dumper.setDaemon(true);
+        dumper.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> append(file), "metrics-final"));
+    }
+
+    private static void append(Path file) {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND),
+                false, StandardCharsets.UTF_8)) {
+            dump(out);
+            out.println();
+        } catch (IOException e) {
+            System.out.println("⚠️ Gagal menulis metrik: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package restaurant.util;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// --=== [Cross-process region locks] ===--
+// Terminals on one machine share a lock file; region r is the single byte at
+// base + r, locked through the FileChannel, so two processes only wait for each
+// other when they touch the same region. A FileLock belongs to the whole JVM
+// and overlapping ones throw, so threads of this process first take an
+// in-process lock for the region. lockAll() covers every region at once
+// (compaction, bulk import) and waits for all region holders, here and in
+// other processes. Not reentrant; a caller that nests two regions must always
+// take them in the same order (the wallet ledger: wallet stripe, then revenue).
+//
+// POSIX record locks belong to the process, not the thread, so the kernel
+// would report a deadlock whenever two terminals each have one thread holding
+// a region and another waiting for the other's. Region locks therefore poll
+// with tryLock and back off instead of blocking in the kernel, lockAll() too;
+// holds are a few microseconds, so the first retries usually win.
+public final class RegionLocks {
+
+    private final FileChannel ch;
+    private final long base;
+    private final int regions;
+    private final ReentrantLock[] local;
+    private final ReentrantReadWriteLock all = new ReentrantReadWriteLock();
+    private final LatencyHistogram waitTime, holdTime;
+
+    public RegionLocks(FileChannel ch, long base, int regions, String name) {
+        this.ch = ch; this.base = base; this.regions = regions;
+        local = new ReentrantLock[regions];
+        for (int i = 0; i < regions; i++) local[i] = new ReentrantLock();
+        waitTime = Metrics.latency("lock." + name + ".wait");
+        holdTime = Metrics.latency("lock." + name + ".hold");
+    }
+
+    public int regions() { return regions; }
+
+    public final class Held implements AutoCloseable {
+        private final FileLock file;
+        private final int region;   // -1 = all
+        private final long since;
+
+        Held(FileLock file, int region, long since) { this.file = file; this.region = region; this.since = since; }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                file.release();
+            } finally {
+                if (region < 0) all.writeLock().unlock();
+                else { local[region].unlock(); all.readLock().unlock(); }
+                holdTime.record(System.nanoTime() - since);
+            }
+        }
+    }
+
+    public Held lock(int region) throws IOException {
+        long t = System.nanoTime();
+        all.readLock().lock();
+        local[region].lock();
+        FileLock f;
+        try { f = poll(base + region, 1); }
+        catch (IOException | RuntimeException e) { local[region].unlock(); all.readLock().unlock(); throw e; }
+        long now = System.nanoTime();
+        waitTime.record(now - t);
+        return new Held(f, region, now);
+    }
+
+    public Held lockAll() throws IOException {
+        long t = System.nanoTime();
+        all.writeLock().lock();
+        FileLock f;
+        try { f = poll(base, regions); }
+        catch (IOException | RuntimeException e) { all.writeLock().unlock(); throw e; }
+        long now = System.nanoTime();
+        waitTime.record(now - t);
+        return new Held(f, -1, now);
+    }
+
+    // spin briefly, then park with a doubling sleep capped at 1 ms
+    private FileLock poll(long position, long size) throws IOException {
+        FileLock f;
+        for (int spins = 0; (f = ch.tryLock(position, size, false)) == null; spins++) {
+            if (spins < 64) Thread.onSpinWait();
+            else LockSupport.parkNanos(Math.min(1_000_000L, 1_000L << Math.min(10, spins - 64)));
+        }
+        return f;
+    }
+}
@@ -0,0 +1,105 @@
+package restaurant.util;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+// --=== [Startup timeline] ===--
+// Runs startup phases inline or on their own daemon threads and records when
+// each started and finished, relative to when this object was created. Slow
+// phases (coupon store, wallet journal) go async and hand back a future that
+// acts as the readiness gate: callers await() it only when they need the data.
+// Durations also land in the startup.<phase> latency metric; with
+// -Dkdelights.startup.timeline=true the timeline is printed once all phases end.
+public final class Startup {
+
+    public interface Phase<T> {
+        T run() throws Exception;
+    }
+
+    private static final class Entry {
+        final String name; final String thread; final long start; long end = -1;
+        Entry(String name, String thread, long start) { this.name = name; this.thread = thread; this.start = start; }
+    }
+
+    private final long t0 = System.nanoTime();
+    private final List<Entry> entries = new ArrayList<>();   // guarded by this
+    private final List<CompletableFuture<?>> pending = new ArrayList<>();
+
+    public <T> T run(String name, Phase<T> phase) throws Exception {
+        Entry e = begin(name);
+        try { return phase.run(); } finally { end(e); }
+    }
+
+    public <T> CompletableFuture<T> async(String name, Phase<T> phase) {
+        CompletableFuture<T> f = new CompletableFuture<>();
+        Thread t = new Thread(() -> {
+            Entry e = begin(name);
+            T value;
+            try { value = phase.run(); }
+            catch (Throwable ex) { end(e); f.completeExceptionally(ex); return; }
+            // end is recorded before completing so waiters see a finished phase
+            end(e);
+            f.complete(value);
+        }, "startup-" + name);
+        t.setDaemon(true);
+        t.start();
+        synchronized (this) { pending.add(f); }
+        return f;
+    }
+
+    // an instant, e.g. the moment the first prompt is shown
+    public void mark(String name) {
+        Entry e = begin(name);
+        synchronized (this) { e.end = e.start; }
+    }
+
+    public long elapsedMillis() { return (System.nanoTime() - t0) / 1_000_000; }
+
+    // Waits for an async phase; I/O failures come back as IOException.
+    public static <T> T await(CompletableFuture<T> f) throws IOException {
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            Throwable c = e.getCause();
+            if (c instanceof IOException) throw (IOException) c;
+            if (c instanceof UncheckedIOException) throw ((UncheckedIOException) c).getCause();
+            if (c instanceof RuntimeException) throw (RuntimeException) c;
+            throw new IllegalStateException(c);
+        }
+    }
+
+    // Prints the timeline after every async phase so far has finished (if enabled).
+    public void reportWhenDone() {
+        if (!Boolean.getBoolean("kdelights.startup.timeline")) return;
+        CompletableFuture<?>[] all;
+        synchronized (this) { all = pending.toArray(new CompletableFuture<?>[0]); }
+        CompletableFuture.allOf(all).handle((v, ex) -> { print(System.out); return null; });
+    }
+
+    public synchronized void print(PrintStream out) {
+        StringBuilder sb = new StringBuilder("⏱ Timeline startup (ms sejak mulai):\n");
+        for (Entry e : entries) {
+            if (e.end < 0) sb.append(String.format("   %-10s %8.1f →    (jalan)  %s\n", e.name, ms(e.start), e.thread));
+            else if (e.end == e.start) sb.append(String.format("   %-10s %8.1f\n", e.name, ms(e.start)));
+            else sb.append(String.format("   %-10s %8.1f → %8.1f  (%.1f ms, %s)\n", e.name, ms(e.start), ms(e.end), ms(e.end - e.start), e.thread));
+        }
+        out.print(sb);
+    }
+
+    private double ms(long nanos) { return nanos / 1e6; }
+
+    private Entry begin(String name) {
+        Entry e = new Entry(name, Thread.currentThread().getName(), System.nanoTime() - t0);
+        synchronized (this) { entries.add(e); }
+        return e;
+    }
+
+    private void end(Entry e) {
+        long now = System.nanoTime() - t0;
+        synchronized (this) { e.end = now; }
+        Metrics.latency("startup." + e.name).record(now - e.start);
+    }
+}
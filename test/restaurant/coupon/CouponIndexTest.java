@@ -0,0 +1,137 @@
+package restaurant.coupon;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import restaurant.util.Hash;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CouponIndexTest {
+
+    static String code(int i) { return Hash.sha256("kupon-" + i); }
+
+    @Test
+    void concurrentRedeemOfOneCodeHasExactlyOneWinner() throws Exception {
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 200; round++) {
+                CouponIndex idx = new CouponIndex(16);
+                String c = code(round);
+                idx.put(c, 50_000);
+                CyclicBarrier start = new CyclicBarrier(threads);
+                List<Future<Long>> results = new ArrayList<>();
+                for (int t = 0; t < threads; t++) results.add(pool.submit(() -> { start.await(); return idx.redeem(c); }));
+                int winners = 0;
+                for (Future<Long> f : results) {
+                    long v = f.get();
+                    if (v != CouponIndex.NOT_FOUND) { assertEquals(50_000, v); winners++; }
+                }
+                assertEquals(1, winners, "round " + round);
+                assertEquals(CouponIndex.NOT_FOUND, idx.get(c));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void redeemRacingGrowSpendsEveryCouponOnce() throws Exception {
+        int live = 2_000, added = 50_000, redeemers = 4;
+        CouponIndex idx = new CouponIndex(16);
+        for (int i = 0; i < live; i++) idx.put(code(i), i + 1);
+        long before = idx.capacity();
+
+        AtomicInteger wins = new AtomicInteger();
+        long[] value = new long[live];
+        CountDownLatch go = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            try { go.await(); } catch (InterruptedException e) { return; }
+            for (int i = live; i < live + added; i++) idx.put(code(i), 7);
+        });
+        List<Thread> spenders = new ArrayList<>();
+        for (int t = 0; t < redeemers; t++) {
+            Thread s = new Thread(() -> {
+                try { go.await(); } catch (InterruptedException e) { return; }
+                for (int i = 0; i < live; i++) {
+                    long v = idx.redeem(code(i));
+                    if (v != CouponIndex.NOT_FOUND) { wins.incrementAndGet(); value[i] = v; }
+                }
+            });
+            spenders.add(s);
+        }
+        writer.start();
+        spenders.forEach(Thread::start);
+        go.countDown();
+        writer.join();
+        for (Thread s : spenders) s.join();
+
+        assertTrue(idx.capacity() > before, "the index should have grown during the test");
+        assertEquals(live, wins.get());
+        for (int i = 0; i < live; i++) {
+            assertEquals(i + 1, value[i]);
+            assertEquals(CouponIndex.NOT_FOUND, idx.get(code(i)));
+            assertEquals(CouponIndex.NOT_FOUND, idx.redeem(code(i)));
+        }
+        for (int i = live; i < live + added; i++) assertEquals(7, idx.get(code(i)));
+        assertEquals(live + added, idx.size());
+    }
+
+    @Test
+    void releaseMakesARedeemedCouponLiveAgain() {
+        CouponIndex idx = new CouponIndex(16);
+        String c = code(1);
+        idx.put(c, 25_000);
+
+        assertFalse(idx.release(c), "a live coupon cannot be released");
+        assertEquals(25_000, idx.redeem(c));
+        assertFalse(idx.contains(c));
+        assertTrue(idx.release(c));
+        assertEquals(25_000, idx.get(c));
+        assertEquals(25_000, idx.redeem(c));
+        assertFalse(idx.release(code(2)), "unknown coupon");
+        assertFalse(idx.release("bukan-hex"));
+    }
+
+    @Test
+    void snapshotRoundTrip(@TempDir Path dir) throws Exception {
+        CouponIndex idx = new CouponIndex(16);
+        for (int i = 0; i < 5_000; i++) idx.put(code(i), 1_000 + i);
+        for (int i = 0; i < 5_000; i += 3) idx.redeem(code(i));
+        Path snap = dir.resolve("kupon.snap");
+        idx.writeSnapshot(snap, 42);
+        assertEquals(42, CouponIndex.snapshotTag(snap));
+
+        CouponIndex mapped = CouponIndex.mapSnapshot(snap);
+        assertNotNull(mapped);
+        assertEquals(42, mapped.snapshotTag());
+        assertEquals(idx.size(), mapped.size());
+        for (int i = 0; i < 5_000; i++)
+            assertEquals(i % 3 == 0 ? CouponIndex.NOT_FOUND : 1_000 + i, mapped.get(code(i)), "coupon " + i);
+
+        // the mapping is copy-on-write: changes stay in memory, the file keeps the snapshot
+        assertEquals(1_001, mapped.redeem(code(1)));
+        mapped.put(code(99_999), 5);
+        CouponIndex again = CouponIndex.mapSnapshot(snap);
+        assertEquals(1_001, again.get(code(1)));
+        assertEquals(CouponIndex.NOT_FOUND, again.get(code(99_999)));
+
+        // a mapped index grows like any other
+        for (int i = 10_000; i < 20_000; i++) again.put(code(i), 3);
+        assertEquals(1_001, again.get(code(1)));
+        assertEquals(3, again.get(code(19_999)));
+
+        Path junk = dir.resolve("junk.snap");
+        Files.write(junk, new byte[100]);
+        assertNull(CouponIndex.mapSnapshot(junk));
+        assertEquals(-1, CouponIndex.snapshotTag(junk));
+    }
+}
@@ -0,0 +1,121 @@
+package restaurant.coupon;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import restaurant.util.Hash;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CouponStoreTest {
+
+    static String code(int i) { return Hash.sha256("kupon-" + i); }
+
+    static Path lastLog(Path dir) throws Exception {
+        List<Path> logs = CouponStore.logFiles(dir);
+        return logs.get(logs.size() - 1);
+    }
+
+    static void assertState(CouponStore s, int issued, int redeemedEvery) {
+        for (int i = 0; i < issued; i++) {
+            long expect = i % redeemedEvery == 0 ? CouponIndex.NOT_FOUND : 1_000 + i;
+            assertEquals(expect, s.get(code(i)), "coupon " + i);
+        }
+    }
+
+    @Test
+    void reopenAfterTornTailKeepsEveryCompleteRecord(@TempDir Path dir) throws Exception {
+        try (CouponStore s = CouponStore.open(dir, false)) {
+            for (int i = 0; i < 500; i++) assertTrue(s.issue(code(i), 1_000 + i));
+            for (int i = 0; i < 500; i += 4) assertEquals(1_000 + i, s.redeem(code(i)));
+        }
+        // a crash in the middle of the next record
+        Path log = lastLog(dir);
+        long complete = Files.size(log);
+        try (FileChannel ch = FileChannel.open(log, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer half = ByteBuffer.allocate(CouponStore.RECORD_BYTES / 2);
+            half.put(0, CouponStore.ISSUE);
+            ch.write(half);
+        }
+
+        try (CouponStore s = CouponStore.open(dir, false)) {
+            assertEquals(complete, Files.size(log), "the torn tail is cut off");
+            assertState(s, 500, 4);
+            assertEquals(500, s.size(), "redeemed coupons stay in the index");
+            // new records land after the cut, not after the garbage
+            assertTrue(s.issue(code(500), 1_500));
+            assertEquals(1_001, s.redeem(code(1)));
+        }
+        try (CouponStore s = CouponStore.open(dir, false)) {
+            assertEquals(1_500, s.get(code(500)));
+            assertEquals(CouponIndex.NOT_FOUND, s.get(code(1)));
+            assertEquals(1_002, s.get(code(2)));
+        }
+    }
+
+    @Test
+    void reopenAfterCompactReplaysSnapshotAndTail(@TempDir Path dir) throws Exception {
+        try (CouponStore s = CouponStore.open(dir, true)) {
+            for (int i = 0; i < 500; i++) s.issue(code(i), 1_000 + i);
+            for (int i = 0; i < 500; i += 4) s.redeem(code(i));
+            Path before = lastLog(dir);
+            s.compact();
+            assertTrue(Files.exists(dir.resolve("kupon.snap")));
+            assertFalse(Files.exists(before), "logs covered by the snapshot are deleted");
+            assertNotEquals(before, lastLog(dir));
+
+            // the tail after the snapshot: new coupons, a redeem and a release
+            for (int i = 500; i < 600; i++) s.issue(code(i), 1_000 + i);
+            for (int i = 500; i < 600; i += 4) s.redeem(code(i));
+            assertEquals(1_001, s.redeem(code(1)));
+            assertTrue(s.release(code(1)));
+            assertEquals(1_002, s.redeem(code(2)));
+        }
+
+        try (CouponStore s = CouponStore.open(dir, false)) {
+            for (int i = 0; i < 600; i++) {
+                long expect = i % 4 == 0 || i == 2 ? CouponIndex.NOT_FOUND : 1_000 + i;
+                assertEquals(expect, s.get(code(i)), "coupon " + i);
+            }
+            // and once more, so the second snapshot is the one replayed
+            s.compact();
+        }
+        try (CouponStore s = CouponStore.open(dir, false)) {
+            assertEquals(1_001, s.get(code(1)));
+            assertEquals(CouponIndex.NOT_FOUND, s.get(code(2)));
+            assertEquals(CouponIndex.NOT_FOUND, s.redeem(code(0)));
+            assertEquals(600, s.size());
+        }
+    }
+
+    @Test
+    void interruptedImportIsDoneAgain(@TempDir Path dir) throws Exception {
+        Path text = dir.resolve("coupons.txt"), store = dir.resolve("kupon");
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 100; i++) lines.append(code(i)).append(',').append(1_000 + i).append('\n');
+        Files.writeString(text, lines);
+        // a terminal died halfway through importing
+        try (CouponStore s = CouponStore.open(dir.resolve("kupon.import-" + ProcessHandle.current().pid()), false)) {
+            for (int i = 0; i < 10; i++) s.issue(code(i), 1_000 + i);
+        }
+        assertFalse(Files.exists(store), "nothing is in place until the import is complete");
+
+        try (CouponStore s = CouponStore.openOrImport(store, text.toFile())) {
+            assertEquals(100, s.size());
+            for (int i = 0; i < 100; i++) assertEquals(1_000 + i, s.get(code(i)), "coupon " + i);
+        }
+        assertFalse(Files.exists(dir.resolve("kupon.import-" + ProcessHandle.current().pid())));
+        // once in place it is not imported again
+        Files.writeString(text, code(100) + ",5000\n");
+        try (CouponStore s = CouponStore.openOrImport(store, text.toFile())) {
+            assertEquals(100, s.size());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package restaurant.kitchen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TicketRingTest {
+
+    static Ticket ticket(String tx) {
+        return new Ticket(Kitchen.Station.MAKANAN, tx, new String[]{"Bibimbap"}, new int[]{1}, new boolean[1], 0, System.nanoTime());
+    }
+
+    @Test
+    void ticketsComeOutInClaimOrder() throws Exception {
+        int tills = 4, each = 20_000;
+        TicketRing ring = new TicketRing(64, 1 << 20, new LongAdder());
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < tills; p++) {
+            int till = p;
+            producers.add(new Thread(() -> {
+                for (int i = 0; i < each; i++) assertTrue(ring.offer(ticket(till + ":" + i)));
+            }));
+        }
+        producers.forEach(Thread::start);
+
+        Ticket[] batch = new Ticket[Kitchen.BATCH];
+        int[] lastPerTill = new int[tills];
+        Arrays.fill(lastPerTill, -1);
+        long expect = 0;
+        while (expect < (long) tills * each) {
+            int n = ring.drain(batch, batch.length);
+            if (n == 0) { Thread.onSpinWait(); continue; }
+            for (int k = 0; k < n; k++) {
+                assertEquals(expect++, batch[k].seq(), "tickets leave in sequence order");
+                String[] f = batch[k].transactionId.split(":");
+                int till = Integer.parseInt(f[0]), i = Integer.parseInt(f[1]);
+                assertEquals(lastPerTill[till] + 1, i, "one till's tickets keep their order");
+                lastPerTill[till] = i;
+            }
+        }
+        for (Thread t : producers) t.join();
+        assertEquals(0, ring.drain(batch, batch.length));
+        assertEquals(0, ring.backlog());
+    }
+
+    @Test
+    void overflowIsCappedAndRefusesWithoutAGap() {
+        LongAdder spilled = new LongAdder();
+        TicketRing ring = new TicketRing(4, 3, spilled);
+        assertEquals(4, ring.capacity());
+        for (int i = 0; i < 7; i++) assertTrue(ring.offer(ticket("t" + i)), "ticket " + i);
+        assertEquals(3, spilled.sum());
+        assertFalse(ring.offer(ticket("penuh")));
+        assertEquals(7, ring.backlog(), "a refused ticket claims no number");
+
+        Ticket[] batch = new Ticket[16];
+        assertEquals(7, ring.drain(batch, batch.length));
+        for (int i = 0; i < 7; i++) {
+            assertEquals(i, batch[i].seq());
+            assertEquals("t" + i, batch[i].transactionId);
+        }
+        Ticket next = ticket("lagi");
+        assertTrue(ring.offer(next));
+        assertEquals(7, next.seq());
+        assertEquals(1, ring.drain(batch, batch.length));
+    }
+
+    @Test
+    void kitchenReportsRefusedTickets() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> printed = new ArrayList<>();
+        Kitchen.Sink food = (batch, n) -> {
+            try { release.await(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+            synchronized (printed) { for (int i = 0; i < n; i++) printed.add(batch[i].transactionId); }
+        };
+        Kitchen kitchen = new Kitchen(4, 0, food, (batch, n) -> { });
+        String[] names = {"Bibimbap"};
+        int[] qty = {1};
+        boolean[] free = {false}, drink = {false};
+        long refusedBefore = kitchen.refused();
+
+        assertEquals(0, kitchen.dispatch("a", names, qty, 1, free, drink));
+        // the station takes "a" and hangs in its sink
+        while (kitchen.backlog(Kitchen.Station.MAKANAN) > 0) Thread.sleep(1);
+        for (String tx : new String[]{"b", "c", "d", "e"}) assertEquals(0, kitchen.dispatch(tx, names, qty, 1, free, drink));
+        assertEquals(1, kitchen.dispatch("f", names, qty, 1, free, drink), "ring full, no overflow allowed");
+        assertEquals(refusedBefore + 1, kitchen.refused());
+
+        release.countDown();
+        kitchen.close();
+        assertEquals(List.of("a", "b", "c", "d", "e"), printed);
+    }
+}
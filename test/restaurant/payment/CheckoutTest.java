@@ -0,0 +1,87 @@
+package restaurant.payment;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import restaurant.coupon.CouponIndex;
+import restaurant.coupon.CouponStore;
+import restaurant.coupon.Coupons;
+import restaurant.kitchen.Kitchen;
+import restaurant.kitchen.Ticket;
+import restaurant.menu.Drink;
+import restaurant.menu.Food;
+import restaurant.menu.MenuItem;
+import restaurant.order.Bill;
+import restaurant.receipt.ReceiptArchive;
+import restaurant.receipt.ReceiptJournal;
+import restaurant.util.Hash;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckoutTest {
+
+    static Bill bill() {
+        return new Bill(new MenuItem[]{ new Food(0, "Bibimbap", 30_000), new Drink(4, "Soju", 35_000) }, new int[]{2, 1}, 2);
+    }
+
+    @Test
+    void bothLayoutsChargeTheSameAndKeepTheirStruk(@TempDir Path dir) throws Exception {
+        String coupon = Hash.sha256("kupon-checkout");
+        try (WalletLedger ledger = WalletLedger.open(dir.resolve("dompet"), new Wallet[]{ new Wallet("andi", 1_000_000, "andi") });
+             CouponStore coupons = CouponStore.open(dir.resolve("kupon"), false);
+             ReceiptJournal receipts = new ReceiptJournal(dir.resolve("struk.txt"), ReceiptJournal.Durability.NONE, 0);
+             ReceiptArchive archive = ReceiptArchive.open(dir.resolve("arsip"))) {
+            coupons.issue(coupon, 10_000);
+            Checkout checkout = new Checkout(ledger, coupons, receipts, archive);
+            Bill bill = bill();
+
+            Checkout.Result desktop = checkout.pay(bill, "andi", "andi", coupon, null, Checkout.Layout.DESKTOP);
+            assertEquals(Checkout.Status.SUKSES, desktop.status);
+            assertEquals(bill.amountToPay() - 10_000, desktop.amountToPay);
+            assertTrue(desktop.struk.contains("Subtotal        : Rp 95,000"), desktop.struk);
+            assertTrue(desktop.struk.contains("(hash: " + coupon + ")"));
+            assertTrue(archive.get(desktop.transactionId).desktop());
+            assertEquals(CouponIndex.NOT_FOUND, coupons.get(coupon));
+            assertEquals(Coupons.DEFAULT_VALUE, coupons.get(desktop.newCoupon));
+
+            Checkout.Result cli = checkout.pay(bill, "andi", "andi", coupon, null);
+            assertEquals(Checkout.Status.KUPON_TIDAK_VALID, cli.status, "the coupon is spent");
+            cli = checkout.pay(bill, "andi", "andi", null, null);
+            assertEquals(Checkout.Status.SUKSES, cli.status);
+            assertEquals(bill.amountToPay(), cli.amountToPay);
+            assertFalse(cli.struk.contains("Subtotal"));
+            assertFalse(archive.get(cli.transactionId).desktop());
+            assertEquals(1_000_000 - desktop.amountToPay - cli.amountToPay, ledger.wallet("andi").getBalance());
+
+            assertEquals(Checkout.Status.VERIFIKASI_GAGAL, checkout.pay(bill, "andi", "salah", null, null).status);
+            assertEquals(Checkout.Status.WALLET_TIDAK_ADA, checkout.pay(bill, "budi", "budi", null, null).status);
+        }
+    }
+
+    @Test
+    void kitchenRoutesByTheBillNotTheCurrentMenu(@TempDir Path dir) throws Exception {
+        List<Ticket> food = new ArrayList<>(), drinks = new ArrayList<>();
+        Kitchen kitchen = new Kitchen(16, (b, n) -> { synchronized (food) { food.addAll(Arrays.asList(b).subList(0, n)); } },
+                                          (b, n) -> { synchronized (drinks) { drinks.addAll(Arrays.asList(b).subList(0, n)); } });
+        try (WalletLedger ledger = WalletLedger.open(dir.resolve("dompet"), new Wallet[]{ new Wallet("andi", 1_000_000, "andi") });
+             CouponStore coupons = CouponStore.open(dir.resolve("kupon"), false);
+             ReceiptJournal receipts = new ReceiptJournal(dir.resolve("struk.txt"), ReceiptJournal.Durability.NONE, 0)) {
+            // neither item is on the current menu any more
+            Bill bill = new Bill(new MenuItem[]{ new Food(0, "Nasi Goreng", 40_000), new Drink(1, "Teh Tarik", 15_000) }, new int[]{1, 2}, 2);
+            Checkout.Result r = new Checkout(ledger, coupons, receipts, null, kitchen).pay(bill, "andi", "andi", null, null);
+            assertEquals(Checkout.Status.SUKSES, r.status);
+            assertEquals(0, r.ticketsRefused);
+        } finally {
+            kitchen.close();
+        }
+        assertEquals(1, food.size());
+        assertArrayEquals(new String[]{"Nasi Goreng"}, food.get(0).items);
+        assertEquals(1, drinks.size());
+        assertArrayEquals(new String[]{"Teh Tarik"}, drinks.get(0).items);
+    }
+}
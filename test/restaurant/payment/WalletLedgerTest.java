@@ -0,0 +1,146 @@
+package restaurant.payment;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WalletLedgerTest {
+
+    static Wallet[] seeds() {
+        return new Wallet[]{ new Wallet("andi", 1_000_000, "andi"), new Wallet("budi", 500_000, "budi") };
+    }
+
+    @Test
+    void concurrentReservesNeverOverdraw(@TempDir Path dir) throws Exception {
+        try (WalletLedger ledger = WalletLedger.open(dir, seeds())) {
+            int threads = 8;
+            ConcurrentLinkedQueue<WalletLedger.Reservation> won = new ConcurrentLinkedQueue<>();
+            CyclicBarrier start = new CyclicBarrier(threads);
+            List<Thread> ts = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Thread th = new Thread(() -> {
+                    try {
+                        Wallet w = ledger.wallet("budi");
+                        start.await();
+                        for (int k = 0; k < 20; k++) {
+                            WalletLedger.Reservation r = ledger.reserve(w, 7_000);
+                            if (r != null) won.add(r);
+                        }
+                    } catch (Exception e) { throw new RuntimeException(e); }
+                });
+                ts.add(th);
+                th.start();
+            }
+            for (Thread th : ts) th.join();
+
+            assertEquals(500_000 / 7_000, won.size());
+            assertEquals(500_000 % 7_000, ledger.wallet("budi").getBalance());
+            int n = 0;
+            for (WalletLedger.Reservation r : won) ledger.commit(r, "tx-" + n++);
+            assertEquals(500_000 % 7_000, ledger.wallet("budi").getBalance());
+            assertEquals(500_000 / 7_000 * 7_000L, ledger.revenue());
+            assertNull(ledger.reserve(ledger.wallet("budi"), 7_000));
+        }
+    }
+
+    @Test
+    void rollbackRestoresTheHold(@TempDir Path dir) throws Exception {
+        try (WalletLedger ledger = WalletLedger.open(dir, seeds())) {
+            Wallet w = ledger.wallet("andi");
+            WalletLedger.Reservation r = ledger.reserve(w, 300_000);
+            assertEquals(700_000, r.balanceAfter);
+            assertEquals(700_000, ledger.wallet("andi").getBalance());
+
+            ledger.rollback(r);
+            assertEquals(1_000_000, ledger.wallet("andi").getBalance());
+            ledger.rollback(r);
+            assertEquals(1_000_000, ledger.wallet("andi").getBalance(), "a second rollback is a no-op");
+            assertThrows(IllegalStateException.class, () -> ledger.commit(r, "tx"));
+            assertEquals(0, ledger.revenue());
+        }
+    }
+
+    @Test
+    void failedJournalSyncLeavesTheBalanceUnchanged(@TempDir Path dir) throws Exception {
+        WalletLedger ledger = WalletLedger.open(dir, seeds());
+        WalletLedger.Reservation ok = ledger.reserve(ledger.wallet("andi"), 100_000);
+        ledger.commit(ok, "tx-ok");
+
+        WalletLedger.Reservation r = ledger.reserve(ledger.wallet("andi"), 250_000);
+        ledger.journal.close();   // the next flush hits a closed file
+        assertThrows(IOException.class, () -> ledger.commit(r, "tx-gagal"));
+        assertEquals(900_000, ledger.wallet("andi").getBalance());
+        assertEquals(100_000, ledger.revenue());
+        assertThrows(IOException.class, ledger::close);
+
+        assertFalse(Files.readString(dir.resolve(WalletLedger.JOURNAL)).contains("tx-gagal"));
+        try (WalletLedger again = WalletLedger.open(dir, seeds())) {
+            assertEquals(900_000, again.wallet("andi").getBalance());
+            assertEquals(100_000, again.revenue());
+        }
+    }
+
+    // --=== [Crash: a terminal halts without closing] ===--
+    @Test
+    void reopenAfterCrashReplaysExactBalances(@TempDir Path dir) throws Exception {
+        WalletLedger.open(dir, seeds()).close();
+        // dompet.dat as of the checkpoint: what the disk may hold when the machine dies
+        Path stale = dir.resolve("stale.dat");
+        Files.copy(dir.resolve(WalletLedger.STORE), stale);
+        long journalAtCheckpoint = Files.size(dir.resolve(WalletLedger.JOURNAL));
+
+        Process p = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"), Crash.class.getName(), dir.toString())
+                .inheritIO().start();
+        assertEquals(7, p.waitFor(), "the crashing terminal should halt with 7");
+        Path crashed = dir.resolve("crashed.dat");
+        Files.copy(dir.resolve(WalletLedger.STORE), crashed);
+
+        // the process died, its page cache did not
+        try (WalletLedger ledger = WalletLedger.open(dir, seeds())) { assertBalances(ledger); }
+
+        // the machine died: dompet.dat is back at the checkpoint, the journal has the rest
+        Files.copy(stale, dir.resolve(WalletLedger.STORE), StandardCopyOption.REPLACE_EXISTING);
+        try (WalletLedger ledger = WalletLedger.open(dir, seeds())) { assertBalances(ledger); }
+
+        // the machine died before any fsync: dompet.dat has the payments, the journal lost them
+        Files.copy(crashed, dir.resolve(WalletLedger.STORE), StandardCopyOption.REPLACE_EXISTING);
+        try (FileChannel jc = FileChannel.open(dir.resolve(WalletLedger.JOURNAL), StandardOpenOption.WRITE)) {
+            jc.truncate(journalAtCheckpoint);
+        }
+        try (WalletLedger ledger = WalletLedger.open(dir, seeds())) {
+            assertEquals(1_000_000, ledger.wallet("andi").getBalance());
+            assertEquals(500_000, ledger.wallet("budi").getBalance());
+            assertEquals(0, ledger.revenue());
+        }
+    }
+
+    static void assertBalances(WalletLedger ledger) {
+        assertEquals(1_000_000 - 50 * 1_000, ledger.wallet("andi").getBalance(), "the open hold is dropped");
+        assertEquals(500_000 - 30 * 2_000, ledger.wallet("budi").getBalance());
+        assertEquals(50 * 1_000 + 30 * 2_000, ledger.revenue());
+    }
+
+    static class Crash {
+        public static void main(String[] args) throws IOException {
+            WalletLedger ledger = WalletLedger.open(Paths.get(args[0]), seeds());
+            for (int i = 0; i < 50; i++) ledger.commit(ledger.reserve(ledger.wallet("andi"), 1_000), "a-" + i);
+            for (int i = 0; i < 30; i++) ledger.commit(ledger.reserve(ledger.wallet("budi"), 2_000), "b-" + i);
+            ledger.reserve(ledger.wallet("andi"), 5_000);
+            Runtime.getRuntime().halt(7);
+        }
+    }
+}
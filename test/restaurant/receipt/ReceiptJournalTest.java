@@ -0,0 +1,43 @@
+package restaurant.receipt;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReceiptJournalTest {
+
+    @Test
+    void offsetsPointAtTheReceiptsEvenWithAnotherWriter(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("struk.txt");
+        Files.writeString(file, "struk lama\n");
+        List<String> texts = new ArrayList<>();
+        List<CompletableFuture<Long>> offsets = new ArrayList<>();
+        try (ReceiptJournal j = new ReceiptJournal(file, ReceiptJournal.Durability.BATCH, 50)) {
+            for (int i = 0; i < 300; i++) {
+                // another terminal appending to the same file now and then
+                if (i % 50 == 0) Files.writeString(file, "terminal lain " + i + "\n", StandardOpenOption.APPEND);
+                String t = "STRUK #" + i + " " + "x".repeat(i % 17);
+                texts.add(t);
+                offsets.add(j.append(t));
+                if (i % 7 == 0) offsets.get(i).get();
+            }
+            for (CompletableFuture<Long> f : offsets) f.get();
+        }
+
+        byte[] all = Files.readAllBytes(file);
+        for (int i = 0; i < texts.size(); i++) {
+            int at = (int) (long) offsets.get(i).get();
+            byte[] want = (texts.get(i) + "\n").getBytes(StandardCharsets.UTF_8);
+            assertEquals(texts.get(i) + "\n", new String(all, at, want.length, StandardCharsets.UTF_8), "struk " + i);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package restaurant.replay;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import restaurant.coupon.CouponStore;
+import restaurant.order.Bill;
+import restaurant.payment.Wallet;
+import restaurant.payment.WalletLedger;
+import restaurant.util.Hash;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplayEngineTest {
+
+    static final String COUPON = Hash.sha256("kupon-replay");
+    static final long BIBIMBAP = new Bill(new String[]{"Bibimbap"}, new int[]{1}, 1).amountToPay();
+
+    static String order(String wallet, String coupon, long ts) {
+        return "{\"items\":[{\"name\":\"Bibimbap\"}],\"wallet\":\"" + wallet + "\",\"password\":\"" + wallet + "\""
+                + (coupon == null ? "" : ",\"coupon\":\"" + coupon + "\"") + ",\"ts\":" + ts + "}";
+    }
+
+    static WalletLedger ledger(Path dir) throws Exception {
+        return WalletLedger.open(dir.resolve("dompet"), new Wallet[]{
+            new Wallet("miskin", 1_000, "miskin"),
+            new Wallet("kaya", 1_000_000, "kaya")
+        }, false);
+    }
+
+    static CouponStore coupons(Path dir) throws Exception {
+        CouponStore coupons = CouponStore.open(dir.resolve("kupon"), false);
+        coupons.issue(COUPON, 10_000);
+        return coupons;
+    }
+
+    @Test
+    void couponGivenBackOnShortBalanceIsUsableLaterInTheSameChunk(@TempDir Path dir) throws Exception {
+        String[] lines = {
+            order("miskin", COUPON, 1),
+            order("kaya", COUPON, 2),
+            order("kaya", COUPON, 3),
+            "{\"items\":[{\"name\":\"Nasi Goreng\"}],\"wallet\":\"kaya\",\"password\":\"kaya\",\"ts\":4}"
+        };
+        ReplayEngine.Result[] r;
+        try (WalletLedger ledger = ledger(dir); CouponStore coupons = coupons(dir)) {
+            r = new ReplayEngine(ledger, coupons).processChunk(lines, 1, lines.length);
+            assertEquals(1_000_000 - 2 * BIBIMBAP + 10_000, ledger.wallet("kaya").getBalance());
+            assertEquals(2 * BIBIMBAP - 10_000, ledger.revenue());
+        }
+
+        assertEquals(ReplayEngine.Status.SALDO_KURANG, r[0].getStatus());
+        assertEquals(ReplayEngine.Status.SUKSES, r[1].getStatus());
+        assertEquals(BIBIMBAP - 10_000, r[1].getAmountToPay(), "the second order gets the released coupon");
+        assertEquals(ReplayEngine.Status.SUKSES, r[2].getStatus());
+        assertEquals(BIBIMBAP, r[2].getAmountToPay(), "the coupon is spent once");
+        assertEquals(ReplayEngine.Status.MENU_TIDAK_ADA, r[3].getStatus());
+    }
+
+    @Test
+    void twoRunsProduceIdenticalOutput(@TempDir Path dir) throws Exception {
+        StringBuilder in = new StringBuilder();
+        for (int i = 0; i < 200; i++) in.append(order(i % 3 == 0 ? "miskin" : "kaya", i % 5 == 0 ? COUPON : null, 1_700_000_000_000L + i)).append('\n');
+
+        String[] first = replay(dir.resolve("a"), in.toString());
+        String[] second = replay(dir.resolve("b"), in.toString());
+        assertArrayEquals(first, second);
+        assertTrue(first[0].contains("SUKSES"));
+    }
+
+    static String[] replay(Path dir, String input) throws Exception {
+        StringWriter hasil = new StringWriter(), struk = new StringWriter();
+        try (WalletLedger ledger = ledger(dir); CouponStore coupons = coupons(dir)) {
+            new ReplayEngine(ledger, coupons).run(new BufferedReader(new StringReader(input)), hasil, struk);
+        }
+        return new String[]{hasil.toString(), struk.toString()};
+    }
+}